@@ -0,0 +1,130 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AT reply parser benchmarks.
+ * 
+ * @author Gurux Ltd.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXSMSParserBenchmark {
+    /**
+     * AT+CMGR reply.
+     */
+    private String cmgr;
+
+    /**
+     * AT+CPMS? reply.
+     */
+    private String cpms;
+
+    /**
+     * AT+CSQ reply.
+     */
+    private String csq;
+
+    /**
+     * Generate replies.
+     */
+    @Setup
+    public void setup() {
+        cmgr = getReply("CMGR");
+        cpms = "+CPMS: \"SM\",3,30,\"SM\",3,30,\"SM\",3,30";
+        csq = getReply("CSQ");
+    }
+
+    /**
+     * Get framed reply.
+     * 
+     * @param type
+     *            Reply type.
+     * @return Reply that is given to the parser.
+     */
+    private static String getReply(final String type) {
+        GXReplyFramer framer = new GXReplyFramer(null);
+        framer.append(GXSMSReplyBenchmark.getReply(type));
+        return framer.getReply();
+    }
+
+    /**
+     * Parse AT+CMGR reply.
+     * 
+     * @return Parsed message.
+     */
+    @Benchmark
+    public GXSMSMessage cmgr() {
+        return GXSMS.parseMessage(cmgr, 1, null);
+    }
+
+    /**
+     * Parse AT+CPMS? reply.
+     * 
+     * @return Memory info.
+     */
+    @Benchmark
+    public GXSMSMemoryInfo cpms() {
+        return GXSMS.parseMemoryInfo(cpms);
+    }
+
+    /**
+     * Parse AT+CSQ reply.
+     * 
+     * @return Signal quality.
+     */
+    @Benchmark
+    public GXSMSSignalQualityInfo csq() {
+        return GXSMS.parseSignalQuality(csq);
+    }
+}
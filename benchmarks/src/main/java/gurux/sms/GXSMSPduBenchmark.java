@@ -0,0 +1,149 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gurux.sms.enums.MessageCodeType;
+
+/**
+ * PDU codec benchmarks.
+ * 
+ * Messages that don't fit to one SMS are coded to concatenated segments like
+ * GXSMS does when the message is sent.
+ * 
+ * @author Gurux Ltd.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXSMSPduBenchmark {
+    /**
+     * Phone number.
+     */
+    private static final String NUMBER = "+358401234567";
+
+    /**
+     * Message code type.
+     */
+    @Param({ "BITS_7", "BITS_8", "UNICODE" })
+    private MessageCodeType type;
+
+    /**
+     * Message length in characters.
+     */
+    @Param({ "16", "70", "300" })
+    private int length;
+
+    /**
+     * Message.
+     */
+    private String message;
+
+    /**
+     * Received SMS-DELIVER PDUs as hex strings.
+     */
+    private String[] pdus;
+
+    /**
+     * Generate message and PDUs.
+     */
+    @Setup
+    public void setup() {
+        String text = "Gurux SMS benchmark {0123456789} ";
+        if (type == MessageCodeType.UNICODE) {
+            text = "Gurux SMS \u00E4\u00F6\u00E5 \u20AC \u0416\u0436 ";
+        }
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append(text);
+        }
+        sb.setLength(length);
+        message = sb.toString();
+        byte[][] tmp = GXSMSPdu.codeOctets(NUMBER, message, type, 1, false,
+                new Date());
+        pdus = new String[tmp.length];
+        for (int pos = 0; pos != tmp.length; ++pos) {
+            pdus[pos] = GXSMSPdu.toHex(tmp[pos]);
+        }
+    }
+
+    /**
+     * Code SMS-SUBMIT PDUs to hex strings that are written to the modem.
+     * 
+     * @param bh
+     *            Blackhole.
+     */
+    @Benchmark
+    public void code(final Blackhole bh) {
+        for (byte[] it : GXSMSPdu.codeOctets(NUMBER, message, type, 1,
+                false)) {
+            bh.consume(GXSMSPdu.toHex(it));
+        }
+    }
+
+    /**
+     * Decode received PDUs.
+     * 
+     * @param bh
+     *            Blackhole.
+     */
+    @Benchmark
+    public void encode(final Blackhole bh) {
+        for (String it : pdus) {
+            GXSMSMessage msg = new GXSMSMessage();
+            GXSMSPdu.encode(it, msg);
+            bh.consume(msg);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gurux.sms.enums.MessageCodeType;
+
+/**
+ * AT reply scanning benchmarks.
+ * 
+ * Reply is received in chunks and each chunk is given to the reply framer
+ * like GXSMS does when the command is sent.
+ * 
+ * @author Gurux Ltd.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXSMSReplyBenchmark {
+    /**
+     * Size of the received chunk.
+     */
+    static final int CHUNK_SIZE = 32;
+
+    /**
+     * Amount of the messages in the listing.
+     */
+    static final int LIST_SIZE = 10;
+
+    /**
+     * Reply type.
+     */
+    @Param({ "OK", "CSQ", "CMGR", "CMGL", "ERROR" })
+    private String reply;
+
+    /**
+     * Received chunks.
+     */
+    private String[] chunks;
+
+    /**
+     * Get reply of the given type.
+     * 
+     * @param type
+     *            Reply type.
+     * @return Received data.
+     */
+    static String getReply(final String type) {
+        String pdu = GXSMSPdu.toHex(GXSMSPdu.codeOctets("+358401234567",
+                "Gurux SMS benchmark message.", MessageCodeType.BITS_7, 1,
+                false, new Date(0))[0]);
+        int len = pdu.length() / 2 - 1;
+        switch (type) {
+        case "OK":
+            return "\r\nOK\r\n";
+        case "CSQ":
+            return "\r\n+CSQ: 20,0\r\n\r\nOK\r\n";
+        case "CMGR":
+            return "\r\n+CMGR: 1,," + len + "\r\n" + pdu + "\r\n\r\nOK\r\n";
+        case "CMGL":
+            StringBuilder sb = new StringBuilder();
+            for (int pos = 1; pos <= LIST_SIZE; ++pos) {
+                sb.append("\r\n+CMGL: ").append(pos).append(",1,,")
+                        .append(len).append("\r\n").append(pdu);
+            }
+            sb.append("\r\n\r\nOK\r\n");
+            return sb.toString();
+        case "ERROR":
+            return "\r\n+CMS ERROR: 321\r\n";
+        default:
+            throw new IllegalArgumentException(type);
+        }
+    }
+
+    /**
+     * Split reply to chunks.
+     */
+    @Setup
+    public void setup() {
+        String data = getReply(reply);
+        chunks = new String[(data.length() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int pos = 0; pos != chunks.length; ++pos) {
+            chunks[pos] = data.substring(pos * CHUNK_SIZE,
+                    Math.min(data.length(), (pos + 1) * CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * Scan reply after each received chunk until the final result code is
+     * found.
+     * 
+     * @param bh
+     *            Blackhole.
+     */
+    @Benchmark
+    public void scan(final Blackhole bh) {
+        GXReplyFramer framer = new GXReplyFramer(null);
+        for (String it : chunks) {
+            if (framer.append(it)) {
+                bh.consume(framer.getReply());
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.nio.charset.Charset;
+import java.nio.charset.spi.CharsetProvider;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Charset provider for the GSM 03.38 default alphabet.
+ * 
+ * Makes GSM-7 charset available with Charset.forName.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXCharsetProvider extends CharsetProvider {
+
+    @Override
+    public final Iterator<Charset> charsets() {
+        return Collections.<Charset> singleton(GXGsm7Charset.INSTANCE)
+                .iterator();
+    }
+
+    @Override
+    public final Charset charsetForName(final String charsetName) {
+        if (GXGsm7Charset.NAME.equalsIgnoreCase(charsetName)) {
+            return GXGsm7Charset.INSTANCE;
+        }
+        for (String it : GXGsm7Charset.INSTANCE.aliases()) {
+            if (it.equalsIgnoreCase(charsetName)) {
+                return GXGsm7Charset.INSTANCE;
+            }
+        }
+        return null;
+    }
+}
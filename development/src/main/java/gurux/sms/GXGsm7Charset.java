@@ -0,0 +1,348 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * GSM 03.38 default alphabet with the extension table.
+ * 
+ * Each septet is coded to one byte. Characters from the extension table are
+ * coded to two bytes where the first one is the escape character. Septets are
+ * not packed.
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXGsm7Charset extends Charset {
+    /**
+     * Canonical name of the charset.
+     */
+    public static final String NAME = "GSM-7";
+
+    /**
+     * Charset instance.
+     */
+    public static final GXGsm7Charset INSTANCE = new GXGsm7Charset();
+
+    /**
+     * Escape to the extension table.
+     */
+    static final int ESCAPE = 0x1B;
+
+    /**
+     * Question mark is used when character can't be coded.
+     */
+    static final int REPLACEMENT = 0x3F;
+
+    /**
+     * Page size of the code table.
+     */
+    private static final int PAGE_SIZE = 0x100;
+
+    /**
+     * Default alphabet.
+     */
+    // CHECKSTYLE:OFF
+    private static final char[] BASIC = ("@\u00A3$\u00A5\u00E8\u00E9\u00F9"
+            + "\u00EC\u00F2\u00C7\n\u00D8\u00F8\r\u00C5\u00E5"
+            + "\u0394_\u03A6\u0393\u039B\u03A9\u03A0\u03A8"
+            + "\u03A3\u0398\u039E\u001B\u00C6\u00E6\u00DF\u00C9"
+            + " !\"#\u00A4%&'()*+,-./0123456789:;<=>?"
+            + "\u00A1ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+            + "\u00C4\u00D6\u00D1\u00DC\u00A7"
+            + "\u00BFabcdefghijklmnopqrstuvwxyz"
+            + "\u00E4\u00F6\u00F1\u00FC\u00E0").toCharArray();
+    // CHECKSTYLE:ON
+
+    /**
+     * Extension table. Zero if septet is not used.
+     */
+    private static final char[] EXTENSION = new char[BASIC.length];
+
+    /**
+     * Code table pages. Value is septet, escaped septet or -1.
+     */
+    private static final short[][] CODES = new short[PAGE_SIZE][];
+
+    static {
+        // CHECKSTYLE:OFF
+        EXTENSION[0x0A] = '\f';
+        // Reserved for another extension table. Shown as space.
+        EXTENSION[ESCAPE] = ' ';
+        EXTENSION[0x14] = '^';
+        EXTENSION[0x28] = '{';
+        EXTENSION[0x29] = '}';
+        EXTENSION[0x2F] = '\\';
+        EXTENSION[0x3C] = '[';
+        EXTENSION[0x3D] = '~';
+        EXTENSION[0x3E] = ']';
+        EXTENSION[0x40] = '|';
+        EXTENSION[0x65] = '\u20AC';
+        // CHECKSTYLE:ON
+        for (int pos = 0; pos != BASIC.length; ++pos) {
+            if (pos != ESCAPE) {
+                setCode(BASIC[pos], pos);
+            }
+        }
+        for (int pos = 0; pos != EXTENSION.length; ++pos) {
+            if (EXTENSION[pos] != 0 && pos != ESCAPE) {
+                setCode(EXTENSION[pos], ESCAPE << 8 | pos);
+            }
+        }
+    }
+
+    /**
+     * Add character to the code table.
+     * 
+     * @param ch
+     *            Character.
+     * @param value
+     *            Septet or escaped septet.
+     */
+    private static void setCode(final char ch, final int value) {
+        short[] page = CODES[ch / PAGE_SIZE];
+        if (page == null) {
+            page = new short[PAGE_SIZE];
+            java.util.Arrays.fill(page, (short) -1);
+            CODES[ch / PAGE_SIZE] = page;
+        }
+        page[ch % PAGE_SIZE] = (short) value;
+    }
+
+    /**
+     * Constructor.
+     */
+    private GXGsm7Charset() {
+        super(NAME, new String[] { "GSM7", "GSM0338", "GSM-03.38" });
+    }
+
+    /**
+     * Get septet for the character.
+     * 
+     * @param ch
+     *            Character.
+     * @return Septet, escaped septet in two bytes or -1 if character can't be
+     *         coded.
+     */
+    static int getCode(final char ch) {
+        short[] page = CODES[ch / PAGE_SIZE];
+        if (page == null) {
+            return -1;
+        }
+        return page[ch % PAGE_SIZE];
+    }
+
+    /**
+     * Is code from the extension table.
+     * 
+     * @param code
+     *            Code returned by getCode.
+     * @return True, if escape is needed.
+     */
+    static boolean isExtension(final int code) {
+        return code >= ESCAPE << 8;
+    }
+
+    /**
+     * Get character for the septet.
+     * 
+     * @param septet
+     *            Septet.
+     * @param escaped
+     *            Is septet from the extension table.
+     * @return Character.
+     */
+    static char getChar(final int septet, final boolean escaped) {
+        if (escaped && EXTENSION[septet] != 0) {
+            return EXTENSION[septet];
+        }
+        // Unknown extension is shown as a character from the default alphabet.
+        return BASIC[septet];
+    }
+
+    /**
+     * Get amount of septets needed to code the string.
+     * 
+     * @param value
+     *            String to code.
+     * @return Amount of septets or -1 if string can't be coded with the
+     *         default alphabet.
+     */
+    public static int getSeptetCount(final CharSequence value) {
+        int count = 0;
+        for (int pos = 0; pos != value.length(); ++pos) {
+            int code = getCode(value.charAt(pos));
+            if (code < 0) {
+                return -1;
+            }
+            if (isExtension(code)) {
+                count += 2;
+            } else {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check can string be coded with the default alphabet and the extension
+     * table.
+     * 
+     * @param value
+     *            String to check.
+     * @return True, if all characters can be coded with 7 bits.
+     */
+    public static boolean isEncodable(final CharSequence value) {
+        return getSeptetCount(value) != -1;
+    }
+
+    @Override
+    public boolean contains(final Charset cs) {
+        return cs instanceof GXGsm7Charset;
+    }
+
+    @Override
+    public CharsetDecoder newDecoder() {
+        return new Decoder(this);
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+        return new Encoder(this);
+    }
+
+    /**
+     * Decode septets to characters.
+     */
+    private static final class Decoder extends CharsetDecoder {
+        /**
+         * Constructor.
+         * 
+         * @param cs
+         *            Charset.
+         */
+        Decoder(final Charset cs) {
+            super(cs, 1, 1);
+        }
+
+        @Override
+        protected CoderResult decodeLoop(final ByteBuffer in,
+                final CharBuffer out) {
+            while (in.hasRemaining()) {
+                int mark = in.position();
+                int septet = in.get();
+                if (septet < 0) {
+                    in.position(mark);
+                    return CoderResult.malformedForLength(1);
+                }
+                boolean escaped = septet == ESCAPE;
+                if (escaped) {
+                    if (!in.hasRemaining()) {
+                        // Wait next septet.
+                        in.position(mark);
+                        return CoderResult.UNDERFLOW;
+                    }
+                    septet = in.get();
+                    if (septet < 0) {
+                        in.position(mark);
+                        return CoderResult.malformedForLength(2);
+                    }
+                }
+                if (!out.hasRemaining()) {
+                    in.position(mark);
+                    return CoderResult.OVERFLOW;
+                }
+                out.put(getChar(septet, escaped));
+            }
+            return CoderResult.UNDERFLOW;
+        }
+    }
+
+    /**
+     * Code characters to septets.
+     */
+    private static final class Encoder extends CharsetEncoder {
+        /**
+         * Constructor.
+         * 
+         * @param cs
+         *            Charset.
+         */
+        Encoder(final Charset cs) {
+            super(cs, 1, 2, new byte[] { REPLACEMENT });
+        }
+
+        @Override
+        public boolean canEncode(final char c) {
+            return getCode(c) != -1;
+        }
+
+        @Override
+        public boolean canEncode(final CharSequence cs) {
+            return isEncodable(cs);
+        }
+
+        @Override
+        protected CoderResult encodeLoop(final CharBuffer in,
+                final ByteBuffer out) {
+            while (in.hasRemaining()) {
+                char ch = in.get();
+                int code = getCode(ch);
+                if (code < 0) {
+                    in.position(in.position() - 1);
+                    return CoderResult.unmappableForLength(1);
+                }
+                if (isExtension(code)) {
+                    if (out.remaining() < 2) {
+                        in.position(in.position() - 1);
+                        return CoderResult.OVERFLOW;
+                    }
+                    out.put((byte) ESCAPE);
+                } else if (!out.hasRemaining()) {
+                    in.position(in.position() - 1);
+                    return CoderResult.OVERFLOW;
+                }
+                out.put((byte) code);
+            }
+            return CoderResult.UNDERFLOW;
+        }
+    }
+}
@@ -46,9 +46,9 @@ import gurux.common.GXSynchronousMediaBase;
 class GXReceiveThread extends Thread {
 
     /**
-     * Serial port handle.
+     * Transport where data is read.
      */
-    private long comPort;
+    private final IGXSMSTransport transport;
     /**
      * Parent component.
      */
@@ -63,12 +63,12 @@ class GXReceiveThread extends Thread {
      * 
      * @param parent
      *            Parent component.
-     * @param hComPort
-     *            Handle for the serial port.
+     * @param value
+     *            Transport where data is read.
      */
-    GXReceiveThread(final GXSMS parent, final long hComPort) {
-        super("GXSMS " + String.valueOf(hComPort));
-        comPort = hComPort;
+    GXReceiveThread(final GXSMS parent, final IGXSMSTransport value) {
+        super("GXSMS " + parent.getPortName());
+        transport = value;
         parentMedia = parent;
     }
 
@@ -95,19 +95,21 @@ class GXReceiveThread extends Thread {
      *            Received data from the serial port.
      */
     private void handleReceivedData(final byte[] buffer) {
-        int len = buffer.length;
+        bytesReceived += buffer.length;
+        // Unsolicited result codes are not passed to the command waiter.
+        byte[] data = parentMedia.getUrcDispatcher().handle(buffer);
+        int len = data.length;
         if (len == 0) {
             return;
         }
-        bytesReceived += len;
         int totalCount = 0;
         synchronized (parentMedia.getSyncBase().getSync()) {
-            parentMedia.getSyncBase().appendData(buffer, 0, len);
+            parentMedia.getSyncBase().appendData(data, 0, len);
             // Search end of packet if given.
             if (parentMedia.getEop() != null) {
                 if (parentMedia.getEop() instanceof Array) {
                     for (Object eop : (Object[]) parentMedia.getEop()) {
-                        totalCount = GXSynchronousMediaBase.indexOf(buffer,
+                        totalCount = GXSynchronousMediaBase.indexOf(data,
                                 GXSynchronousMediaBase.getAsByteArray(eop), 0,
                                 len);
                         if (totalCount != -1) {
@@ -115,7 +117,7 @@ class GXReceiveThread extends Thread {
                         }
                     }
                 } else {
-                    totalCount = GXSynchronousMediaBase.indexOf(buffer,
+                    totalCount = GXSynchronousMediaBase.indexOf(data,
                             GXSynchronousMediaBase.getAsByteArray(
                                     parentMedia.getEop()),
                             0, len);
@@ -131,12 +133,10 @@ class GXReceiveThread extends Thread {
     public final void run() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                byte[] buff = gurux.io.NativeCode.read(this.comPort,
-                        parentMedia.getReadTimeout(), parentMedia.getClosing());
+                byte[] buff = transport.read(parentMedia.getReadTimeout());
                 // If connection is closed.
                 if (buff.length == 0
                         && Thread.currentThread().isInterrupted()) {
-                    parentMedia.setClosing(0);
                     break;
                 }
                 handleReceivedData(buff);
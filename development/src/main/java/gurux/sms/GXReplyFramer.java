@@ -0,0 +1,272 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Modem reply framer.
+ * 
+ * Received data is given in chunks. Only new data is scanned and it is split
+ * to lines. Information lines are collected until the final result code (OK,
+ * ERROR, +CME ERROR or +CMS ERROR) or the PDU prompt is received. Echo of the
+ * command is skipped if it's received, so the framer works with and without
+ * echo.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXReplyFramer {
+    /**
+     * Reply is not completed.
+     */
+    static final int NONE = 0;
+
+    /**
+     * Command succeeded.
+     */
+    static final int OK = 1;
+
+    /**
+     * Command failed.
+     */
+    static final int ERROR = 2;
+
+    /**
+     * Modem waits the PDU.
+     */
+    static final int PROMPT = 3;
+
+    /**
+     * Information lines.
+     */
+    private final List<String> lines = new ArrayList<String>();
+
+    /**
+     * Received line.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Echo of the command or null if echo is already handled.
+     */
+    private String echo;
+
+    /**
+     * Final result.
+     */
+    private int result = NONE;
+
+    /**
+     * Final result code line.
+     */
+    private String resultCode;
+
+    /**
+     * Constructor.
+     * 
+     * @param cmd
+     *            Sent command.
+     */
+    GXReplyFramer(final String cmd) {
+        reset(cmd);
+    }
+
+    /**
+     * Reset framer for the new command.
+     * 
+     * @param cmd
+     *            Sent command.
+     */
+    void reset(final String cmd) {
+        lines.clear();
+        line.setLength(0);
+        result = NONE;
+        resultCode = null;
+        echo = null;
+        if (cmd != null) {
+            String tmp = cmd.trim();
+            if (tmp.length() != 0) {
+                echo = tmp;
+            }
+        }
+    }
+
+    /**
+     * Add received data.
+     * 
+     * @param data
+     *            Received data.
+     * @return True, if reply is completed.
+     */
+    boolean append(final CharSequence data) {
+        final int count = data.length();
+        int pos = 0;
+        while (pos != count && result == NONE) {
+            char ch = data.charAt(pos);
+            if (ch == '\r' || ch == '\n') {
+                if (line.length() != 0) {
+                    handleLine(line.toString());
+                    line.setLength(0);
+                }
+                ++pos;
+            } else {
+                int end = pos + 1;
+                while (end != count) {
+                    ch = data.charAt(end);
+                    if (ch == '\r' || ch == '\n') {
+                        break;
+                    }
+                    ++end;
+                }
+                line.append(data, pos, end);
+                pos = end;
+            }
+        }
+        // Prompt is not followed by the line feed.
+        if (result == NONE && line.length() != 0 && line.charAt(0) == '>'
+                && (line.length() == 1
+                        || line.length() == 2 && line.charAt(1) == ' ')) {
+            setResult(PROMPT, ">");
+        }
+        return result != NONE;
+    }
+
+    /**
+     * Handle received line.
+     * 
+     * @param value
+     *            Received line.
+     */
+    private void handleLine(final String value) {
+        if (echo != null) {
+            String tmp = echo;
+            echo = null;
+            // Control characters, like Ctrl-Z after the PDU, are not always
+            // echoed.
+            if (value.trim().equals(tmp)) {
+                return;
+            }
+        }
+        if (value.equals("OK")) {
+            setResult(OK, value);
+        } else if (value.equals("ERROR") || value.startsWith("+CME ERROR:")
+                || value.startsWith("+CMS ERROR:")) {
+            setResult(ERROR, value);
+        } else {
+            lines.add(value);
+        }
+    }
+
+    /**
+     * Set final result.
+     * 
+     * @param value
+     *            Final result.
+     * @param code
+     *            Final result code line.
+     */
+    private void setResult(final int value, final String code) {
+        result = value;
+        resultCode = code;
+        line.setLength(0);
+    }
+
+    /**
+     * Is reply completed.
+     * 
+     * @return True, if final result code or prompt is received.
+     */
+    boolean isCompleted() {
+        return result != NONE;
+    }
+
+    /**
+     * Get final result.
+     * 
+     * @return Final result.
+     */
+    int getResult() {
+        return result;
+    }
+
+    /**
+     * Get final result code line.
+     * 
+     * @return Final result code line or null if reply is not completed.
+     */
+    String getResultCode() {
+        return resultCode;
+    }
+
+    /**
+     * Get information lines.
+     * 
+     * @return Information lines without echo and final result code.
+     */
+    List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Get reply as a string.
+     * 
+     * Information lines are returned when command succeeds. If there are no
+     * information lines, OK is returned. Error is returned starting from
+     * "ERROR".
+     * 
+     * @return Reply.
+     */
+    String getReply() {
+        if (result == ERROR) {
+            int pos = resultCode.indexOf(GXSMSPdu.ERROR);
+            if (pos != -1) {
+                return resultCode.substring(pos);
+            }
+            return resultCode;
+        }
+        if (result == OK && !lines.isEmpty()) {
+            if (lines.size() == 1) {
+                return lines.get(0);
+            }
+            return String.join("\r\n", lines);
+        }
+        if (result == NONE) {
+            return "";
+        }
+        return resultCode;
+    }
+}
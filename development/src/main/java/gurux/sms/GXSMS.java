@@ -39,10 +39,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.JFrame;
 import javax.xml.parsers.DocumentBuilder;
@@ -71,10 +77,12 @@ import gurux.io.NativeCode;
 import gurux.io.Parity;
 import gurux.io.StopBits;
 import gurux.sms.enums.AvailableMediaSettings;
+import gurux.sms.enums.DeleteFlag;
 import gurux.sms.enums.MemoryType;
 import gurux.sms.enums.MessageCodeType;
 import gurux.sms.enums.MessageStatus;
 import gurux.sms.enums.NetworkState;
+import gurux.sms.enums.SendMode;
 
 /**
  * The GXSMS component determines methods that make the communication possible
@@ -100,6 +108,17 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      */
     static final int DEFAULT_DATA_BITS = 8;
 
+    /**
+     * End of packet that is used when modem prompts the PDU.
+     */
+    static final String PROMPT_EOP = " ";
+
+    /**
+     * Ctrl-Z ends the PDU. Sent before the first command, it cancels the
+     * PDU prompt that an earlier failed send may have left open.
+     */
+    private static final char CTRL_Z = 0x1A;
+
     /**
      * Used baud rate.
      */
@@ -146,10 +165,6 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      */
     private String phoneNumber;
 
-    /**
-     * Serial port closing handle.
-     */
-    private long closing = 0;
     /**
      * Write timeout.
      */
@@ -174,6 +189,14 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      * Serial port handle.
      */
     private int hWnd;
+    /**
+     * Transport that is used instead of the serial port.
+     */
+    private IGXSMSTransport transport;
+    /**
+     * Transport of the open connection.
+     */
+    private IGXSMSTransport link;
     /**
      * Serial port name.
      */
@@ -198,18 +221,211 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     /**
      * SMS receiver thread.
      */
-    private SMSReceiveThread smsReceiver;
+    private volatile SMSReceiveThread smsReceiver;
+
+    /**
+     * Default size of the send queue.
+     */
+    static final int DEFAULT_SEND_QUEUE_SIZE = 100;
+
+    /**
+     * Send thread.
+     */
+    private volatile GXSendThread sender;
+
+    /**
+     * Maximum amount of queued messages.
+     */
+    private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
 
     /**
      * SMS check interval in seconds.
      */
     private int checkInterval;
 
+    /**
+     * Chained status commands.
+     */
+    private static final String[] STATUS_COMMANDS =
+            {"+CSQ", "+CREG?", "+CPMS?", "^SBC?"};
+
+    /**
+     * Replies of the chained status commands.
+     */
+    private static final String[] STATUS_REPLIES =
+            {"+CSQ:", "+CREG:", "+CPMS:", "^SBC:"};
+
+    /**
+     * Capability names of the chained status commands.
+     */
+    private static final String[] STATUS_CAPABILITIES =
+            {GXSMSCapabilities.SIGNAL_QUALITY, GXSMSCapabilities.NETWORK_STATE,
+                    null, GXSMSCapabilities.BATTERY_CHARGE};
+
+    /**
+     * Status commands that the modem doesn't support.
+     */
+    private final boolean[] statusNotSupported =
+            new boolean[STATUS_COMMANDS.length];
+
+    /**
+     * Status read interval in seconds.
+     */
+    private volatile int statusInterval;
+
+    /**
+     * Status thread.
+     */
+    private volatile GXStatusThread statusReader;
+
+    /**
+     * Last read status.
+     */
+    private volatile GXSMSStatus lastStatus;
+
     /**
      * Is modem supporting direct sending.
      */
     private boolean supportDirectSend;
 
+    /**
+     * How messages are sent to the network.
+     */
+    private SendMode sendMode = SendMode.AUTOMATIC;
+
+    /**
+     * Latency of the directly sent messages.
+     */
+    private final GXSMSLatency directLatency = new GXSMSLatency();
+
+    /**
+     * Latency of the stored and forwarded messages.
+     */
+    private final GXSMSLatency storeAndForwardLatency = new GXSMSLatency();
+
+    /**
+     * Is modem supporting listing of the messages with AT+CMGL.
+     */
+    private boolean supportListing = true;
+
+    /**
+     * Delete flags of AT+CMGD that modem supports as a bit mask or -1 if not
+     * known.
+     */
+    private int deleteFlags = -1;
+
+    /**
+     * Is modem supporting keeping radio link open with AT+CMMS.
+     */
+    private boolean supportKeepLink = true;
+
+    /**
+     * Reference number of the next concatenated message.
+     */
+    private int concatenationReference;
+
+    /**
+     * Is 16 bit reference number used with concatenated messages.
+     */
+    private boolean use16BitReference;
+
+    /**
+     * Joins received concatenated messages.
+     */
+    private final GXSMSReassembler reassembler = new GXSMSReassembler();
+
+    /**
+     * Are new message indications used.
+     */
+    private boolean notifications;
+
+    /**
+     * Is the fastest baud rate negotiated when media is opened.
+     */
+    private boolean autoBaudRate;
+
+    /**
+     * Time in milliseconds that is waited after baud rate is changed.
+     */
+    private static final int BAUD_RATE_CHANGE_TIME = 100;
+
+    /**
+     * File where learned modem capabilities are saved or null if not used.
+     */
+    private String capabilityFile;
+
+    /**
+     * Capabilities of the connected modem or null if not used.
+     */
+    private volatile GXSMSCapabilities capabilities;
+
+    /**
+     * Directory of the outbound message journal or null if not used.
+     */
+    private String journalDirectory;
+
+    /**
+     * Outbound message journal or null if not used.
+     */
+    private volatile GXSMSJournal journal;
+
+    /**
+     * Store of the received messages or null if not used.
+     */
+    private volatile GXSMSInboundStore inboundStore;
+
+    /**
+     * File where processed messages are checkpointed or null if not used.
+     */
+    private String checkpointFile;
+
+    /**
+     * Checkpoint of the processed messages or null if not used.
+     */
+    private volatile GXSMSCheckpoint checkpoint;
+
+    /**
+     * Has modem accepted new message indications.
+     */
+    private boolean notificationsEnabled;
+
+    /**
+     * Has modem accepted network registration indications.
+     */
+    private volatile boolean networkNotificationsEnabled;
+
+    /**
+     * Network state that modem has indicated or null if not known.
+     */
+    private volatile NetworkState networkState;
+
+    /**
+     * Unsolicited result code dispatcher.
+     */
+    private final GXUrcDispatcher urcDispatcher = new GXUrcDispatcher(this);
+
+    /**
+     * Are status reports requested for the sent messages.
+     */
+    private boolean deliveryReports;
+
+    /**
+     * Has modem accepted status report indications.
+     */
+    private volatile boolean deliveryReportsEnabled;
+
+    /**
+     * Correlates received status reports to the sent messages.
+     */
+    private final GXSMSDeliveryTracker deliveryTracker =
+            new GXSMSDeliveryTracker();
+
+    /**
+     * Status report listeners.
+     */
+    private List<IGXSMSDeliveryListener> deliveryListeners =
+            new ArrayList<IGXSMSDeliveryListener>();
+
     /**
      * Configurable settings.
      */
@@ -234,6 +450,12 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      * Used memory type to save SMSs.
      */
     private MemoryType memory = MemoryType.UNKNOWN;
+
+    /**
+     * Occupied memory indexes.
+     */
+    private final GXSMSSlotCache slots = new GXSMSSlotCache();
+
     /**
      * SMS messages send.
      */
@@ -248,10 +470,10 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      */
     public GXSMS() {
         phoneNumber = "";
-        initialize();
         readBufferSize = DEFUALT_READ_BUFFER_SIZE;
         syncBase = new GXSynchronousMediaBase(readBufferSize);
         setConfigurableSettings(AvailableMediaSettings.ALL.getValue());
+        addDefaultUrcHandlers();
     }
 
     /**
@@ -272,10 +494,10 @@ public class GXSMS implements IGXMedia, AutoCloseable {
             final int dataBitsValue, final Parity parityValue,
             final StopBits stopBitsValue) {
         phoneNumber = "";
-        initialize();
         readBufferSize = DEFUALT_READ_BUFFER_SIZE;
         syncBase = new GXSynchronousMediaBase(readBufferSize);
         setConfigurableSettings(AvailableMediaSettings.ALL.getValue());
+        addDefaultUrcHandlers();
         setPortName(port);
         setBaudRate(baudRateValue);
         setDataBits(dataBitsValue);
@@ -293,22 +515,174 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     }
 
     /**
-     * Get handle for closing.
+     * Get unsolicited result code dispatcher.
+     * 
+     * @return Unsolicited result code dispatcher.
+     */
+    final GXUrcDispatcher getUrcDispatcher() {
+        return urcDispatcher;
+    }
+
+    /**
+     * Add handler for unsolicited result codes. Handler replaces the existing
+     * handler of the same prefix, including the default handlers.
+     * 
+     * @param prefix
+     *            Line prefix, for example "+CMTI:".
+     * @param bodyLines
+     *            Amount of lines that follow the URC line.
+     * @param handler
+     *            Handler.
+     */
+    public final void addUrcHandler(final String prefix, final int bodyLines,
+            final IGXSMSUrcHandler handler) {
+        urcDispatcher.add(prefix, bodyLines, handler);
+    }
+
+    /**
+     * Remove handler of unsolicited result codes.
+     * 
+     * @param prefix
+     *            Line prefix.
+     */
+    public final void removeUrcHandler(final String prefix) {
+        urcDispatcher.remove(prefix);
+    }
+
+    /**
+     * Add handlers for the unsolicited result codes that modem may send.
+     */
+    private void addDefaultUrcHandlers() {
+        // New message is saved: +CMTI: <mem>,<index>
+        urcDispatcher.add("+CMTI:", 0, (line, body) -> {
+            int pos = line.lastIndexOf(',');
+            int index = Integer.parseInt(line.substring(pos + 1).trim());
+            slots.set(getSlotMemory(line.substring("+CMTI:".length(), pos)),
+                    index);
+            notifyIndication(index);
+            return true;
+        });
+        // New message is delivered directly: +CMT: [<alpha>],<length>
+        urcDispatcher.add("+CMT:", 1, (line, body) -> {
+            GXSMSMessage msg = new GXSMSMessage();
+            GXSMSInboundStore store = inboundStore;
+            if (store == null) {
+                GXSMSPdu.encode(body[0], msg);
+            } else {
+                store.decode(body[0], msg, true);
+            }
+            notifyIndication(msg);
+            return true;
+        });
+        // Status report is delivered directly: +CDS: <length>
+        urcDispatcher.add("+CDS:", 1, (line, body) -> {
+            traceUrc(line);
+            SMSReceiveThread tmp = smsReceiver;
+            if (tmp != null) {
+                tmp.addReport(GXSMSPdu.decodeStatusReport(body[0]));
+            }
+            return true;
+        });
+        // Status report is saved: +CDSI: <mem>,<index>
+        urcDispatcher.add("+CDSI:", 0, (line, body) -> {
+            traceUrc(line);
+            int pos = line.lastIndexOf(',');
+            SMSReceiveThread tmp = smsReceiver;
+            if (tmp != null) {
+                tmp.addReportIndex(
+                        Integer.parseInt(line.substring(pos + 1).trim()));
+            }
+            return true;
+        });
+        // Network registration: +CREG: <stat>[,<lac>,<ci>]
+        urcDispatcher.add("+CREG:", 0, (line, body) -> {
+            String[] tmp = line.substring("+CREG:".length()).split(",");
+            String stat = tmp[0].trim();
+            // CHECKSTYLE:OFF
+            if (stat.length() == 0 || !Character.isDigit(stat.charAt(0))
+                    || tmp.length != 1 && !(tmp.length == 3
+                            && tmp[1].trim().startsWith("\""))) {
+                // CHECKSTYLE:ON
+                // This is reply to AT+CREG? or AT+CREG=?
+                return false;
+            }
+            networkState = NetworkState.forValue(Integer.parseInt(stat));
+            traceUrc(line);
+            return true;
+        });
+        urcDispatcher.add("RING", 0, (line, body) -> {
+            traceUrc(line);
+            return true;
+        });
+        // Modem is restarted and indications are not enabled anymore.
+        urcDispatcher.add("^SYSSTART", 0, (line, body) -> {
+            networkNotificationsEnabled = false;
+            notificationsEnabled = false;
+            deliveryReportsEnabled = false;
+            networkState = null;
+            traceUrc(line);
+            // Commands are not sent from the receive thread.
+            Thread t = new Thread(this::restarted, "GXSMS restart");
+            t.setDaemon(true);
+            t.start();
+            return true;
+        });
+    }
+
+    /**
+     * Restore modem settings after the modem is restarted. Memory is checked,
+     * because new messages were not indicated during the restart.
+     */
+    private void restarted() {
+        try {
+            synchronized (baseLock) {
+                if (!isOpen()) {
+                    return;
+                }
+                sendCommand("ATE0\r", false);
+                if (notifications || deliveryReports) {
+                    enableIndications();
+                }
+            }
+            SMSReceiveThread tmp = smsReceiver;
+            if (tmp != null) {
+                tmp.addCheck();
+            }
+        } catch (RuntimeException ex) {
+            notifyError(ex);
+        }
+    }
+
+    /**
+     * Trace received unsolicited result code.
+     * 
+     * @param line
+     *            URC line.
+     */
+    private void traceUrc(final String line) {
+        if (trace.ordinal() >= TraceLevel.INFO.ordinal()) {
+            notifyTrace(new TraceEventArgs(TraceTypes.INFO, line));
+        }
+    }
+
+    /**
+     * Get transport that is used instead of the serial port.
      * 
-     * @return Handle for closing.
+     * @return Transport or null, if serial port is used.
      */
-    final long getClosing() {
-        return closing;
+    public final IGXSMSTransport getTransport() {
+        return transport;
     }
 
     /**
-     * Set handle for closing.
+     * Set transport that is used instead of the serial port. Transport is
+     * taken into use when the media is opened next time.
      * 
      * @param value
-     *            Handle for closing.
+     *            Transport or null, if serial port is used.
      */
-    final void setClosing(final long value) {
-        closing = value;
+    public final void setTransport(final IGXSMSTransport value) {
+        transport = value;
     }
 
     /**
@@ -357,9 +731,10 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     }
 
     /**
-     * Initialize Gurux serial port library.
+     * Initialize Gurux serial port library. Library is loaded when serial port
+     * is used first time.
      */
-    static void initialize() {
+    static synchronized void initialize() {
         if (!initialized) {
             String path;
             String os = System.getProperty("os.name").toLowerCase();
@@ -400,6 +775,7 @@ public class GXSMS implements IGXMedia, AutoCloseable {
                 Files.copy(in, file.toPath(),
                         StandardCopyOption.REPLACE_EXISTING);
                 System.load(file.getAbsolutePath());
+                initialized = true;
             } catch (Exception e) {
                 throw new RuntimeException("Failed to load file. " + path
                         + "/gurux.serial.java" + e.toString());
@@ -428,108 +804,1060 @@ public class GXSMS implements IGXMedia, AutoCloseable {
         return new BaudRate[] { BaudRate.BAUD_RATE_300, BaudRate.BAUD_RATE_600,
                 BaudRate.BAUD_RATE_1800, BaudRate.BAUD_RATE_2400,
                 BaudRate.BAUD_RATE_4800, BaudRate.BAUD_RATE_9600,
-                BaudRate.BAUD_RATE_19200, BaudRate.BAUD_RATE_38400 };
+                BaudRate.BAUD_RATE_19200, BaudRate.BAUD_RATE_38400,
+                BaudRate.BAUD_RATE_57600, BaudRate.BAUD_RATE_115200 };
     }
 
     /**
-     * Get SMS check interval.
+     * Get is 16 bit reference number used with concatenated messages.
      * 
-     * @return SMS check interval in seconds.
+     * @return True, if 16 bit reference is used. False, if 8 bit reference
+     *         is used.
      */
-    public final int getSMSCheckInterval() {
-        return checkInterval;
+    public final boolean getUse16BitReference() {
+        return use16BitReference;
     }
 
     /**
-     * Set SMS check interval.
+     * Set is 16 bit reference number used with concatenated messages.
+     * 
+     * Messages that don't fit to one SMS are split to segments. Default is 8
+     * bit reference that leaves more space for the data.
      * 
      * @param value
-     *            SMS check interval in seconds.
+     *            True, if 16 bit reference is used. False, if 8 bit reference
+     *            is used.
      */
-    public final void setSMSCheckInterval(final int value) {
-        checkInterval = value;
+    public final void setUse16BitReference(final boolean value) {
+        use16BitReference = value;
     }
 
-    @Override
-    protected final void finalize() throws Throwable {
-        super.finalize();
-        if (isOpen()) {
-            close();
-        }
+    /**
+     * Get how messages are sent to the network.
+     * 
+     * @return Send mode.
+     */
+    public final SendMode getSendMode() {
+        return sendMode;
     }
 
-    @Override
-    public final TraceLevel getTrace() {
-        return trace;
+    /**
+     * Set how messages are sent to the network.
+     * 
+     * Direct sending doesn't use the modem memory. With store and forward,
+     * message is written to the memory, sent from there and removed.
+     * Automatic mode uses direct sending if the modem supports it.
+     * 
+     * @param value
+     *            Send mode.
+     */
+    public final void setSendMode(final SendMode value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid send mode.");
+        }
+        sendMode = value;
     }
 
-    @Override
-    public final void setTrace(final TraceLevel value) {
-        trace = value;
-        syncBase.setTrace(value);
+    /**
+     * Get latency of the sent messages. Latency is measured for each
+     * segment from the send command to the message reference.
+     * 
+     * @param mode
+     *            Direct or store and forward.
+     * @return Latency statistics.
+     */
+    public final GXSMSLatency getSendLatency(final SendMode mode) {
+        if (mode == SendMode.DIRECT) {
+            return directLatency;
+        }
+        if (mode == SendMode.STORE_AND_FORWARD) {
+            return storeAndForwardLatency;
+        }
+        throw new IllegalArgumentException("Invalid send mode.");
     }
 
     /**
-     * Notify that property has changed.
+     * Is message sent directly to the network.
      * 
-     * @param info
-     *            Name of changed property.
+     * @return True, if AT+CMGS is used.
      */
-    private void notifyPropertyChanged(final String info) {
-        for (IGXMediaListener listener : mediaListeners) {
-            listener.onPropertyChanged(this,
-                    new PropertyChangedEventArgs(info));
-        }
+    private boolean isDirectSend() {
+        return sendMode == SendMode.DIRECT
+                || sendMode == SendMode.AUTOMATIC && supportDirectSend;
     }
 
     /**
-     * Notify clients from error occurred.
+     * Get how many segments of incomplete concatenated messages are kept in
+     * memory.
      * 
-     * @param ex
-     *            Occurred error.
+     * @return Maximum amount of buffered segments.
      */
-    final void notifyError(final RuntimeException ex) {
-        for (IGXMediaListener listener : mediaListeners) {
-            listener.onError(this, ex);
-            if (trace.ordinal() >= TraceLevel.ERROR.ordinal()) {
-                listener.onTrace(this,
-                        new TraceEventArgs(TraceTypes.ERROR, ex));
-            }
-        }
+    public final int getReassemblyCapacity() {
+        return reassembler.getCapacity();
     }
 
     /**
-     * Notify clients from new data received.
+     * Set how many segments of incomplete concatenated messages are kept in
+     * memory. When the limit is reached, the least recently updated message
+     * is dropped.
      * 
-     * @param e
-     *            Received event argument.
+     * @param value
+     *            Maximum amount of buffered segments.
      */
-    final void notifyReceived(final ReceiveEventArgs e) {
-        for (IGXMediaListener listener : mediaListeners) {
-            listener.onReceived(this, e);
-        }
+    public final void setReassemblyCapacity(final int value) {
+        reassembler.setCapacity(value);
     }
 
     /**
-     * Notify clients from trace events.
+     * Get how long all segments of the concatenated message are waited.
      * 
-     * @param e
-     *            Trace event argument.
+     * @return Time out in seconds.
      */
-    final void notifyTrace(final TraceEventArgs e) {
-        for (IGXMediaListener listener : mediaListeners) {
-            listener.onTrace(this, e);
-        }
+    public final int getReassemblyTimeout() {
+        return reassembler.getTimeout();
     }
 
-    @Override
-    public final int getConfigurableSettings() {
-        return configurableSettings;
+    /**
+     * Set how long all segments of the concatenated message are waited.
+     * 
+     * @param value
+     *            Time out in seconds.
+     */
+    public final void setReassemblyTimeout(final int value) {
+        reassembler.setTimeout(value);
     }
 
-    @Override
-    public final void setConfigurableSettings(final int value) {
-        configurableSettings = value;
+    /**
+     * Get amount of incomplete concatenated messages dropped because
+     * reassembly capacity was exceeded.
+     * 
+     * @return Amount of dropped messages.
+     */
+    public final long getReassemblyEvictions() {
+        return reassembler.getEvictions();
+    }
+
+    /**
+     * Get amount of incomplete concatenated messages dropped because all
+     * segments were not received in time.
+     * 
+     * @return Amount of dropped messages.
+     */
+    public final long getReassemblyTimeouts() {
+        return reassembler.getTimeouts();
+    }
+
+    /**
+     * Get are status reports requested for the sent messages.
+     * 
+     * @return True, if status reports are requested.
+     */
+    public final boolean getDeliveryReports() {
+        return deliveryReports;
+    }
+
+    /**
+     * Set are status reports requested for the sent messages.
+     * 
+     * Service centre sends status report when message is delivered to the
+     * recipient or delivery has failed. Reports are received when modem
+     * supports status report indications (AT+CNMI). New value is taken into
+     * use when media is opened.
+     * 
+     * @param value
+     *            True, if status reports are requested.
+     * @see IGXSMSDeliveryListener
+     * @see sendWithReport
+     */
+    public final void setDeliveryReports(final boolean value) {
+        deliveryReports = value;
+    }
+
+    /**
+     * Get how long status report of the sent message is waited.
+     * 
+     * @return Time out in seconds.
+     */
+    public final int getDeliveryReportTimeout() {
+        return deliveryTracker.getTimeout();
+    }
+
+    /**
+     * Set how long status report of the sent message is waited.
+     * 
+     * @param value
+     *            Time out in seconds.
+     */
+    public final void setDeliveryReportTimeout(final int value) {
+        deliveryTracker.setTimeout(value);
+    }
+
+    /**
+     * Get amount of sent messages that wait status report.
+     * 
+     * @return Amount of messages.
+     */
+    public final int getPendingDeliveryReports() {
+        return deliveryTracker.getCount();
+    }
+
+    /**
+     * Add status report listener.
+     * 
+     * @param listener
+     *            Listener to add.
+     */
+    public final void addDeliveryListener(
+            final IGXSMSDeliveryListener listener) {
+        deliveryListeners.add(listener);
+    }
+
+    /**
+     * Remove status report listener.
+     * 
+     * @param listener
+     *            Listener to remove.
+     */
+    public final void removeDeliveryListener(
+            final IGXSMSDeliveryListener listener) {
+        deliveryListeners.remove(listener);
+    }
+
+    /**
+     * Has modem accepted status report indications.
+     * 
+     * @return True, if status reports are received.
+     */
+    final boolean isDeliveryReportsEnabled() {
+        return deliveryReportsEnabled;
+    }
+
+    /**
+     * Handle received status report. Listeners are notified when the final
+     * status of the sent message is known.
+     * 
+     * @param report
+     *            Received status report.
+     */
+    final void handleReport(final GXSMSDeliveryReport report) {
+        GXSMSDeliveryReport tmp;
+        // Message is added to the tracker when it's sent.
+        synchronized (baseLock) {
+            tmp = deliveryTracker.handle(report);
+        }
+        if (tmp != null) {
+            GXSMSJournal j = journal;
+            if (j != null) {
+                j.completed(tmp.getMessage());
+            }
+            for (IGXSMSDeliveryListener listener : deliveryListeners) {
+                listener.onDeliveryReport(this, tmp);
+            }
+        }
+    }
+
+    /**
+     * Read saved status report from the given index and remove it.
+     * 
+     * Report is read from the same memory where received messages are read.
+     * 
+     * @param index
+     *            Memory index.
+     * @return Status report or null, if there is no report in the index.
+     */
+    final GXSMSDeliveryReport readReport(final int index) {
+        synchronized (baseLock) {
+            String reply = sendCommand(
+                    String.format("AT+CMGR=%1$s\r", index), false);
+            String[] tmp = reply.split("\r\n");
+            if (!tmp[0].startsWith("+CMGR:") || tmp.length != 2) {
+                return null;
+            }
+            GXSMSDeliveryReport report =
+                    GXSMSPdu.decodeStatusReport(tmp[1]);
+            deleteMessage(index);
+            return report;
+        }
+    }
+
+    /**
+     * Drop sent messages whose status report is not received in time.
+     */
+    final void expireReports() {
+        deliveryTracker.expire();
+        GXSMSJournal tmp = journal;
+        if (tmp != null) {
+            // CHECKSTYLE:OFF
+            tmp.expire(deliveryTracker.getTimeout() * 1000L);
+            // CHECKSTYLE:ON
+        }
+    }
+
+    /**
+     * Get are new message indications used.
+     * 
+     * @return True, if modem informs when new message is received.
+     */
+    public final boolean getNotifications() {
+        return notifications;
+    }
+
+    /**
+     * Set are new message indications used.
+     * 
+     * If new message indications are used, received messages are read
+     * directly when modem indicates them and memory is checked only seldom.
+     * 
+     * @param value
+     *            True, if modem informs when new message is received.
+     */
+    public final void setNotifications(final boolean value) {
+        notifications = value;
+    }
+
+    /**
+     * Get file where learned modem capabilities are saved.
+     * 
+     * @return File name or null if capabilities are not saved.
+     */
+    public final String getCapabilityFile() {
+        return capabilityFile;
+    }
+
+    /**
+     * Set file where learned modem capabilities are saved.
+     * 
+     * Supported commands are probed when modem is used for the first time.
+     * Probe results are saved per modem, identified by IMEI and model, and
+     * they are used to skip the probes on later opens and status queries.
+     * Null disables the capability cache.
+     * 
+     * @param value
+     *            File name or null if capabilities are not saved.
+     */
+    public final void setCapabilityFile(final String value) {
+        capabilityFile = value;
+    }
+
+    /**
+     * Get directory of the outbound message journal.
+     * 
+     * @return Journal directory or null if journal is not used.
+     */
+    public final String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * Set directory of the outbound message journal.
+     * 
+     * Sent messages are written to the journal before they are sent. When
+     * media is opened, messages that were queued but not accepted by the
+     * modem are sent again and the sent messages wait their status reports.
+     * Messages that are queued when media is closed are also sent again when
+     * it's opened. Journal is taken into use when media is opened. Null
+     * disables the journal.
+     * 
+     * @param value
+     *            Journal directory or null if journal is not used.
+     */
+    public final void setJournalDirectory(final String value) {
+        journalDirectory = value;
+    }
+
+    /**
+     * Get store of the received messages.
+     * 
+     * @return Inbound store or null if received messages are not stored.
+     */
+    public final GXSMSInboundStore getInboundStore() {
+        return inboundStore;
+    }
+
+    /**
+     * Set store of the received messages.
+     * 
+     * Received messages are written to the store when they are read for the
+     * first time. Messages that are already stored are not decoded again.
+     * Store is opened and closed by the caller. Null disables the store.
+     * 
+     * @param value
+     *            Inbound store or null if received messages are not stored.
+     */
+    public final void setInboundStore(final GXSMSInboundStore value) {
+        inboundStore = value;
+    }
+
+    /**
+     * Get file where processed received messages are checkpointed.
+     * 
+     * @return File name or null if checkpoint is not used.
+     */
+    public final String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Set file where processed received messages are checkpointed.
+     * 
+     * Received message is checkpointed when all listeners have returned
+     * without an exception. Checkpointed messages are never delivered again,
+     * also after restart. If listener fails, message is delivered again on
+     * the next memory check. Read messages that are not checkpointed are
+     * also delivered, so messages that were read before restart are not
+     * lost. Use with {@link #setAutoDelete(boolean)} to remove processed
+     * messages from the modem. Checkpoint is taken into use when media is
+     * opened. Null disables the checkpoint.
+     * 
+     * @param value
+     *            File name or null if checkpoint is not used.
+     */
+    public final void setCheckpointFile(final String value) {
+        checkpointFile = value;
+    }
+
+    /**
+     * Get amount of unfinished messages in the journal.
+     * 
+     * @return Amount of messages that are not sent or wait status report.
+     */
+    public final int getJournalCount() {
+        GXSMSJournal tmp = journal;
+        if (tmp == null) {
+            return 0;
+        }
+        return tmp.getCount();
+    }
+
+    /**
+     * Is command supported by the modem. Learned result is used if
+     * available. Otherwise support is probed with the test command.
+     * 
+     * @param name
+     *            Capability name.
+     * @param cmd
+     *            Test command.
+     * @return True, if command is supported.
+     */
+    private boolean isSupported(final String name, final String cmd) {
+        GXSMSCapabilities caps = capabilities;
+        if (caps != null) {
+            Boolean value = caps.isSupported(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        String reply = sendCommand(cmd, false);
+        if (reply.equals("")) {
+            // Nothing is learned if modem doesn't reply.
+            return false;
+        }
+        boolean value = !reply.startsWith("ERROR");
+        if (caps != null) {
+            caps.setSupported(name, value);
+        }
+        return value;
+    }
+
+    /**
+     * Modem doesn't support the command.
+     * 
+     * @param name
+     *            Capability name.
+     */
+    private void setNotSupported(final String name) {
+        GXSMSCapabilities caps = capabilities;
+        if (caps != null) {
+            caps.setSupported(name, false);
+            GXSMSCapabilities.save(capabilityFile);
+        }
+    }
+
+    /**
+     * Get capabilities of the connected modem.
+     * 
+     * @return Capabilities or null if modem is not identified.
+     */
+    private GXSMSCapabilities getCapabilities() {
+        String imei = sendCommand("AT+CGSN\r", false);
+        String model = sendCommand("AT+CGMM\r", false);
+        if (imei.equals("") || imei.startsWith("ERROR") || model.equals("")
+                || model.startsWith("ERROR")) {
+            return null;
+        }
+        return GXSMSCapabilities.get(capabilityFile,
+                GXSMSCapabilities.getKey(imei.trim(), model.trim()));
+    }
+
+    /**
+     * Get is the fastest baud rate negotiated when media is opened.
+     * 
+     * @return True, if baud rate is negotiated.
+     */
+    public final boolean getAutoBaudRate() {
+        return autoBaudRate;
+    }
+
+    /**
+     * Set is the fastest baud rate negotiated when media is opened.
+     * 
+     * Media is opened with the configured baud rate. Baud rates that modem
+     * supports are asked with AT+IPR=? and the fastest one that the serial
+     * port also supports is taken into use. If modem doesn't answer with the
+     * new baud rate, the previous one is used. Negotiated baud rate is
+     * remembered per port and it's tried first on the next open. It's saved
+     * to the capability file if it's used, because modem keeps the baud
+     * rate over restarts. If modem doesn't answer, other baud rates of the
+     * port are tried before open fails.
+     * 
+     * @param value
+     *            True, if baud rate is negotiated.
+     */
+    public final void setAutoBaudRate(final boolean value) {
+        autoBaudRate = value;
+    }
+
+    /**
+     * Has modem accepted new message indications.
+     * 
+     * @return True, if new message indications are enabled.
+     */
+    final boolean isNotificationsEnabled() {
+        return notificationsEnabled;
+    }
+
+    /**
+     * Modem has saved new message to the given index.
+     * 
+     * @param index
+     *            Memory index.
+     */
+    final void notifyIndication(final int index) {
+        SMSReceiveThread tmp = smsReceiver;
+        if (tmp != null) {
+            tmp.addIndication(index);
+        }
+    }
+
+    /**
+     * Modem has delivered new message directly.
+     * 
+     * @param msg
+     *            Received message.
+     */
+    final void notifyIndication(final GXSMSMessage msg) {
+        SMSReceiveThread tmp = smsReceiver;
+        if (tmp != null) {
+            msg.setStatus(MessageStatus.NOT_READ);
+            tmp.addMessage(msg);
+        }
+    }
+
+    /**
+     * Get SMS check interval.
+     * 
+     * @return SMS check interval in seconds.
+     */
+    public final int getSMSCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Set SMS check interval.
+     * 
+     * @param value
+     *            SMS check interval in seconds.
+     */
+    public final void setSMSCheckInterval(final int value) {
+        checkInterval = value;
+    }
+
+    /**
+     * Get status read interval.
+     * 
+     * @return Status read interval in seconds. Zero if status is read only
+     *         when it's asked.
+     */
+    public final int getStatusInterval() {
+        return statusInterval;
+    }
+
+    /**
+     * Set status read interval. If interval is set, the status is read in
+     * the background and {@link #getLastStatus()} returns it without
+     * accessing the serial port.
+     * 
+     * @param value
+     *            Status read interval in seconds. Zero if status is read only
+     *            when it's asked.
+     */
+    public final void setStatusInterval(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid status interval.");
+        }
+        statusInterval = value;
+        synchronized (baseLock) {
+            if (value != 0 && statusReader == null && sender != null) {
+                statusReader = new GXStatusThread(this);
+                statusReader.start();
+            }
+        }
+    }
+
+    /**
+     * Get last read status.
+     * 
+     * @return Last read status or null if status is not read yet.
+     */
+    public final GXSMSStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Read signal quality, network state, memory capacity and battery charge
+     * with one chained command. Commands that the modem doesn't support are
+     * left out of the chain and their values are null.
+     * 
+     * @return Modem status.
+     */
+    public final GXSMSStatus getStatus() {
+        synchronized (baseLock) {
+            GXReplyFramer framer = null;
+            while (true) {
+                StringBuilder sb = new StringBuilder("AT");
+                for (int pos = 0; pos != STATUS_COMMANDS.length; ++pos) {
+                    if (isStatusSupported(pos)) {
+                        if (sb.length() != 2) {
+                            sb.append(';');
+                        }
+                        sb.append(STATUS_COMMANDS[pos]);
+                    }
+                }
+                if (sb.length() == 2) {
+                    framer = null;
+                    break;
+                }
+                sb.append('\r');
+                framer = sendFramed(sb.toString());
+                if (framer == null) {
+                    noReply(true);
+                }
+                if (framer.getResult() == GXReplyFramer.OK) {
+                    break;
+                }
+                // Chain is executed until the first failed command.
+                int failed = getFailedStatus(framer.getLines());
+                if (failed == -1 || !isNotSupported(framer.getReply())) {
+                    throw new RuntimeException("GetStatus failed:\r\n"
+                            + getError(framer.getReply()));
+                }
+                statusNotSupported[failed] = true;
+                if (STATUS_CAPABILITIES[failed] != null) {
+                    setNotSupported(STATUS_CAPABILITIES[failed]);
+                }
+            }
+            GXSMSSignalQualityInfo quality = null;
+            NetworkState state = null;
+            GXSMSMemoryInfo memory = null;
+            GXSMSBatteryInfo battery = null;
+            if (framer != null) {
+                // CHECKSTYLE:OFF
+                for (String it : framer.getLines()) {
+                    if (it.startsWith(STATUS_REPLIES[0])) {
+                        quality = parseSignalQuality(it);
+                    } else if (it.startsWith(STATUS_REPLIES[1])) {
+                        state = parseNetworkState(it);
+                    } else if (it.startsWith(STATUS_REPLIES[2])) {
+                        memory = parseMemoryInfo(it);
+                    } else if (it.startsWith(STATUS_REPLIES[3])) {
+                        battery = parseBatteryCharge(it);
+                    }
+                }
+                // CHECKSTYLE:ON
+            }
+            if (state != null && networkNotificationsEnabled) {
+                networkState = state;
+            }
+            if (memory != null) {
+                slots.check(getMemory(), memory.getCount());
+            }
+            GXSMSStatus status = new GXSMSStatus(System.currentTimeMillis(),
+                    quality, state, memory, battery);
+            lastStatus = status;
+            return status;
+        }
+    }
+
+    /**
+     * Is status command supported.
+     * 
+     * @param index
+     *            Status command index.
+     * @return False, if it's known that the modem doesn't support the
+     *         command.
+     */
+    private boolean isStatusSupported(final int index) {
+        if (statusNotSupported[index]) {
+            return false;
+        }
+        GXSMSCapabilities caps = capabilities;
+        return caps == null || STATUS_CAPABILITIES[index] == null
+                || !Boolean.FALSE
+                        .equals(caps.isSupported(STATUS_CAPABILITIES[index]));
+    }
+
+    /**
+     * Find status command that failed.
+     * 
+     * @param lines
+     *            Information lines before the error.
+     * @return Index of the first status command without reply or -1 if all
+     *         commands have replied.
+     */
+    private int getFailedStatus(final List<String> lines) {
+        for (int pos = 0; pos != STATUS_COMMANDS.length; ++pos) {
+            if (isStatusSupported(pos)) {
+                boolean found = false;
+                for (String it : lines) {
+                    if (it.startsWith(STATUS_REPLIES[pos])) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return pos;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Is error telling that the command is not supported. Other errors, like
+     * busy SIM, are temporary.
+     * 
+     * @param reply
+     *            Error reply.
+     * @return True, if command is not supported.
+     */
+    private static boolean isNotSupported(final String reply) {
+        String tmp = reply.toLowerCase();
+        return reply.equals("ERROR") || tmp.endsWith(": 4")
+                || tmp.contains("not supported") || tmp.contains("unknown");
+    }
+
+    @Override
+    protected final void finalize() throws Throwable {
+        super.finalize();
+        if (isOpen()) {
+            close();
+        }
+    }
+
+    @Override
+    public final TraceLevel getTrace() {
+        return trace;
+    }
+
+    @Override
+    public final void setTrace(final TraceLevel value) {
+        trace = value;
+        syncBase.setTrace(value);
+    }
+
+    /**
+     * Notify that property has changed.
+     * 
+     * @param info
+     *            Name of changed property.
+     */
+    private void notifyPropertyChanged(final String info) {
+        for (IGXMediaListener listener : mediaListeners) {
+            listener.onPropertyChanged(this,
+                    new PropertyChangedEventArgs(info));
+        }
+    }
+
+    /**
+     * Notify clients from error occurred.
+     * 
+     * @param ex
+     *            Occurred error.
+     */
+    final void notifyError(final RuntimeException ex) {
+        for (IGXMediaListener listener : mediaListeners) {
+            listener.onError(this, ex);
+            if (trace.ordinal() >= TraceLevel.ERROR.ordinal()) {
+                listener.onTrace(this,
+                        new TraceEventArgs(TraceTypes.ERROR, ex));
+            }
+        }
+    }
+
+    /**
+     * Notify clients from new data received.
+     * 
+     * @param e
+     *            Received event argument.
+     */
+    final void notifyReceived(final ReceiveEventArgs e) {
+        for (IGXMediaListener listener : mediaListeners) {
+            listener.onReceived(this, e);
+        }
+    }
+
+    /**
+     * Notify clients from received message. Segments of the concatenated
+     * message are notified when all segments are received.
+     * 
+     * @param msg
+     *            Received message.
+     */
+    final GXSMSMessage deliver(final GXSMSMessage msg) {
+        GXSMSMessage tmp = reassembler.add(msg);
+        if (tmp != null) {
+            notifyReceived(new ReceiveEventArgs(tmp, tmp.getPhoneNumber()));
+        }
+        return tmp;
+    }
+
+    /**
+     * Is received message processed before.
+     * 
+     * @param msg
+     *            Received message.
+     * @return True, if message is checkpointed.
+     */
+    final boolean isProcessed(final GXSMSMessage msg) {
+        GXSMSCheckpoint tmp = checkpoint;
+        return tmp != null && msg.getHash() != 0
+                && tmp.contains(msg.getHash());
+    }
+
+    /**
+     * Is received message delivered to the listeners.
+     * 
+     * @param msg
+     *            Received message.
+     * @return True, if message is not read or if it's read, but not
+     *         checkpointed.
+     */
+    final boolean isNew(final GXSMSMessage msg) {
+        if (msg.getStatus() == MessageStatus.NOT_READ) {
+            return true;
+        }
+        return checkpoint != null && msg.getHash() != 0
+                && msg.getStatus() == MessageStatus.READ;
+    }
+
+    /**
+     * Listeners have processed the received message. Message is
+     * checkpointed and memory index is added to the deleted indexes if auto
+     * delete is used.
+     * 
+     * @param msg
+     *            Processed message.
+     * @param deleted
+     *            Memory indexes to delete.
+     */
+    final void processed(final GXSMSMessage msg,
+            final List<Integer> deleted) {
+        GXSMSMessage[] parts = msg.getParts();
+        if (parts == null) {
+            parts = new GXSMSMessage[] {msg};
+        }
+        GXSMSCheckpoint tmp = checkpoint;
+        for (GXSMSMessage it : parts) {
+            if (tmp != null && it.getHash() != 0) {
+                tmp.processed(it.getHash());
+            }
+            // Directly delivered messages are not saved.
+            if (autoDelete && it.getIndex() > 0) {
+                deleted.add(it.getIndex());
+            }
+        }
+    }
+
+    /**
+     * Delete processed messages. Checkpoint is flushed before messages are
+     * deleted.
+     * 
+     * @param indexes
+     *            Memory indexes of the processed messages.
+     * @param allRead
+     *            Are all read messages in the memory processed. If true,
+     *            messages are deleted with one AT+CMGD=1,1 if the modem
+     *            supports the delete flag and no other read messages are
+     *            found when they are listed again.
+     */
+    final void deleteProcessed(final List<Integer> indexes,
+            final boolean allRead) {
+        GXSMSCheckpoint tmp = checkpoint;
+        if (tmp != null) {
+            tmp.flush();
+        }
+        if (indexes.isEmpty()) {
+            return;
+        }
+        synchronized (baseLock) {
+            if (allRead && indexes.size() > 1 && isAllRead(indexes)) {
+                // Delete all read messages.
+                String reply = sendCommand("AT+CMGD=1,1\r", false);
+                if (reply.equals("OK")) {
+                    // All read messages were processed. Others are found
+                    // by the consistency check.
+                    for (int it : indexes) {
+                        slots.clear(memory, it);
+                    }
+                    return;
+                }
+            }
+            for (int it : indexes) {
+                String reply = deleteMessage(it);
+                if (!reply.equals("OK")) {
+                    throw new RuntimeException(String.format(
+                            "Delete failed from index %1$s.\r\n%2$s", it,
+                            reply));
+                }
+            }
+        }
+    }
+
+    /**
+     * Are the given indexes the only read messages in the memory.
+     * 
+     * Read messages are listed again, because a message that is received
+     * after the previous listing may be read with read(int). Caller holds
+     * the lock until the messages are deleted.
+     * 
+     * @param indexes
+     *            Memory indexes of the processed messages.
+     * @return True, if read messages can be deleted with the delete flag.
+     */
+    private boolean isAllRead(final List<Integer> indexes) {
+        if (!supportListing || !isDeleteFlagSupported(DeleteFlag.READ)) {
+            return false;
+        }
+        List<GXSMSMessage> messages = listMessages(1);
+        if (messages == null) {
+            return false;
+        }
+        for (GXSMSMessage it : messages) {
+            if (!indexes.contains(it.getIndex())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Is delete flag of AT+CMGD supported.
+     * 
+     * @param flag
+     *            Delete flag.
+     * @return True, if modem advertises the delete flag.
+     */
+    private boolean isDeleteFlagSupported(final DeleteFlag flag) {
+        if (deleteFlags == -1) {
+            GXSMSCapabilities caps = capabilities;
+            if (caps != null) {
+                deleteFlags = caps.getDeleteFlags();
+            }
+        }
+        if (deleteFlags == -1) {
+            String reply = sendCommand("AT+CMGD=?\r", false);
+            if (reply.equals("")) {
+                // Nothing is learned if modem doesn't reply.
+                return false;
+            }
+            deleteFlags = parseDeleteFlags(reply);
+            GXSMSCapabilities caps = capabilities;
+            if (caps != null) {
+                caps.setDeleteFlags(deleteFlags);
+            }
+        }
+        return (deleteFlags & (1 << flag.getValue())) != 0;
+    }
+
+    /**
+     * Parse supported delete flags from AT+CMGD=? reply.
+     * 
+     * Reply is "+CMGD: (list of indexes),(list of delete flags)", for
+     * example "+CMGD: (1-30),(0-4)". Delete flags are not supported if the
+     * list is missing.
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Supported delete flags as a bit mask. Bit n is set if flag n
+     *         is supported.
+     */
+    // CHECKSTYLE:OFF
+    static int parseDeleteFlags(final String reply) {
+        int start = reply.indexOf("),(");
+        if (!reply.startsWith("+CMGD:") || start == -1) {
+            return 0;
+        }
+        int end = reply.indexOf(')', start + 3);
+        if (end == -1) {
+            return 0;
+        }
+        int flags = 0;
+        for (String it : reply.substring(start + 3, end).split(",")) {
+            String[] range = it.split("-");
+            try {
+                int min = Integer.parseInt(range[0].trim());
+                int max = Integer.parseInt(range[range.length - 1].trim());
+                for (int flag = Math.max(min, 0); flag <= Math.min(max, 31);
+                        ++flag) {
+                    flags |= 1 << flag;
+                }
+            } catch (NumberFormatException ex) {
+                // Invalid value is ignored.
+                continue;
+            }
+        }
+        return flags;
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Drop concatenated messages that are not received in time. Segments of
+     * the dropped messages are handled as processed, so they are not read
+     * again and they are deleted if auto delete is used.
+     * 
+     * @param deleted
+     *            Memory indexes to delete.
+     * @return True, if segments were dropped.
+     */
+    final boolean expireSegments(final List<Integer> deleted) {
+        reassembler.expire();
+        List<GXSMSMessage> dropped = reassembler.takeDropped();
+        for (GXSMSMessage it : dropped) {
+            processed(it, deleted);
+        }
+        return !dropped.isEmpty();
+    }
+
+    /**
+     * Notify clients from trace events.
+     * 
+     * @param e
+     *            Trace event argument.
+     */
+    final void notifyTrace(final TraceEventArgs e) {
+        for (IGXMediaListener listener : mediaListeners) {
+            listener.onTrace(this, e);
+        }
+    }
+
+    @Override
+    public final int getConfigurableSettings() {
+        return configurableSettings;
+    }
+
+    @Override
+    public final void setConfigurableSettings(final int value) {
+        configurableSettings = value;
     }
 
     @Override
@@ -551,6 +1879,9 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     /**
      * Sends SMS message asynchronously.
      * 
+     * Message that doesn't fit to one SMS is split to concatenated segments
+     * that are sent back to back.
+     * 
      * @param msg
      *            SMS message to send.
      * @see IGXMediaListener#onReceived IGXMediaListener#onReceived
@@ -561,42 +1892,355 @@ public class GXSMS implements IGXMedia, AutoCloseable {
         send(msg, null);
     }
 
-    @Override
-    public final void send(final Object data, final String target) {
-        if (data instanceof GXSMSMessage) {
-            GXSMSMessage msg = (GXSMSMessage) data;
-            synchronized (baseLock) {
-                if (trace == TraceLevel.VERBOSE) {
-                    notifyTrace(new TraceEventArgs(TraceTypes.SENT,
-                            msg.getPhoneNumber() + " : " + msg.getData()));
-                }
-                // Reset last position.
-                synchronized (syncBase.getSync()) {
-                    syncBase.resetLastPosition();
-                }
-                // Use default phone number if new is not set.
-                String number = phoneNumber;
-                if (msg.getPhoneNumber() != null
-                        && !msg.getPhoneNumber().equals("")) {
-                    number = msg.getPhoneNumber();
-                }
-                if (number == null || number.equals("")) {
-                    throw new IllegalArgumentException("Invalid phone number.");
-                }
-                sendMessage(msg.getData(), number, msg.getCodeType());
-            }
-        } else if (data instanceof String) {
-            if (receiver == null || receiver.equals("")) {
-                throw new IllegalArgumentException(
-                        "Invalid receiver phone number.");
-            }
-            GXSMSMessage msg = new GXSMSMessage();
-            msg.setData(data.toString());
-            msg.setPhoneNumber(target);
-            send(msg, null);
-        } else {
-            throw new IllegalArgumentException("Invalid data to send");
+    @Override
+    public final void send(final Object data, final String target) {
+        if (data instanceof GXSMSMessage) {
+            sendMessage((GXSMSMessage) data, 0);
+            GXSMSJournal tmp = journal;
+            if (tmp != null) {
+                tmp.commit();
+            }
+        } else if (data instanceof String) {
+            if (receiver == null || receiver.equals("")) {
+                throw new IllegalArgumentException(
+                        "Invalid receiver phone number.");
+            }
+            GXSMSMessage msg = new GXSMSMessage();
+            msg.setData(data.toString());
+            msg.setPhoneNumber(target);
+            send(msg, null);
+        } else {
+            throw new IllegalArgumentException("Invalid data to send");
+        }
+    }
+
+    /**
+     * Send SMS messages back to back.
+     * 
+     * Radio link is kept open between the messages with AT+CMMS if the modem
+     * supports it. Failed message doesn't stop sending of the other messages.
+     * 
+     * @param messages
+     *            SMS messages to send.
+     * @return Result of each message in the same order as messages.
+     */
+    public final GXSMSSendResult[] send(
+            final Collection<GXSMSMessage> messages) {
+        return sendBatch(messages, null);
+    }
+
+    /**
+     * Send SMS messages back to back.
+     * 
+     * @param messages
+     *            SMS messages to send.
+     * @param ids
+     *            Journal ids of the messages or null if messages are not in
+     *            the journal yet.
+     * @return Result of each message in the same order as messages.
+     */
+    final GXSMSSendResult[] sendBatch(
+            final Collection<GXSMSMessage> messages, final long[] ids) {
+        GXSMSSendResult[] results = new GXSMSSendResult[messages.size()];
+        synchronized (baseLock) {
+            boolean keepLink = messages.size() > 1 && setKeepLink(true);
+            try {
+                int pos = 0;
+                for (GXSMSMessage it : messages) {
+                    long id = 0;
+                    if (ids != null) {
+                        id = ids[pos];
+                    }
+                    try {
+                        results[pos] = new GXSMSSendResult(it,
+                                sendMessage(it, id), null);
+                    } catch (RuntimeException ex) {
+                        results[pos] = new GXSMSSendResult(it, 0, ex);
+                    }
+                    ++pos;
+                }
+            } finally {
+                if (keepLink) {
+                    setKeepLink(false);
+                }
+            }
+        }
+        GXSMSJournal tmp = journal;
+        if (tmp != null) {
+            // Submitted messages are flushed with one commit.
+            tmp.commit();
+        }
+        return results;
+    }
+
+    /**
+     * Enable or disable keeping radio link open between sent messages.
+     * 
+     * @param enable
+     *            Is link kept open.
+     * @return True, if modem accepted the command.
+     */
+    private boolean setKeepLink(final boolean enable) {
+        if (!supportKeepLink) {
+            return false;
+        }
+        String reply;
+        if (enable) {
+            reply = sendCommand("AT+CMMS=1\r", false);
+        } else {
+            reply = sendCommand("AT+CMMS=0\r", false);
+        }
+        if (!reply.equals("OK")) {
+            supportKeepLink = false;
+            setNotSupported(GXSMSCapabilities.KEEP_LINK);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queue SMS message to be sent in the background.
+     * 
+     * Messages are sent one at the time in queued order. If the queue is
+     * full or the media is closed, the returned future is failed.
+     * 
+     * @param msg
+     *            SMS message to send.
+     * @return Completed with the message reference when the message is sent.
+     *         With concatenated message, reference of the last segment.
+     */
+    public final CompletableFuture<Integer> sendAsync(
+            final GXSMSMessage msg) {
+        GXSendThread tmp = sender;
+        if (tmp == null) {
+            CompletableFuture<Integer> future =
+                    new CompletableFuture<Integer>();
+            future.completeExceptionally(
+                    new IllegalStateException("Media is closed."));
+            return future;
+        }
+        long id = 0;
+        GXSMSJournal j = journal;
+        if (j != null) {
+            id = j.enqueue(msg, getNumber(msg));
+        }
+        return tmp.add(msg, id);
+    }
+
+    /**
+     * Queue SMS message to be sent in the background and wait status report.
+     * 
+     * Status reports must be enabled before media is opened. Returned future
+     * is completed with the final status report. With concatenated message,
+     * it's completed when all segments are delivered or the first segment
+     * fails. Future is failed with TimeoutException if report is not
+     * received in time.
+     * 
+     * @param msg
+     *            SMS message to send.
+     * @return Completed with the final status report.
+     * @see setDeliveryReports
+     * @see setDeliveryReportTimeout
+     */
+    public final CompletableFuture<GXSMSDeliveryReport> sendWithReport(
+            final GXSMSMessage msg) {
+        CompletableFuture<GXSMSDeliveryReport> future =
+                new CompletableFuture<GXSMSDeliveryReport>();
+        if (!deliveryReportsEnabled) {
+            future.completeExceptionally(new IllegalStateException(
+                    "Status reports are not enabled."));
+            return future;
+        }
+        deliveryTracker.expect(msg, future);
+        sendAsync(msg).whenComplete((reference, ex) -> {
+            if (ex != null) {
+                deliveryTracker.remove(msg);
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get amount of messages waiting in the send queue.
+     * 
+     * @return Amount of queued messages.
+     */
+    public final int getSendQueueLength() {
+        GXSendThread tmp = sender;
+        if (tmp == null) {
+            return 0;
+        }
+        return tmp.getQueueLength();
+    }
+
+    /**
+     * Get maximum amount of messages in the send queue.
+     * 
+     * @return Maximum amount of queued messages.
+     */
+    public final int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    /**
+     * Set maximum amount of messages in the send queue. New size is taken
+     * into use when media is opened.
+     * 
+     * @param value
+     *            Maximum amount of queued messages.
+     */
+    public final void setSendQueueSize(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid send queue size.");
+        }
+        sendQueueSize = value;
+    }
+
+    /**
+     * Send SMS message.
+     * 
+     * @param msg
+     *            SMS message to send.
+     * @return Message reference. With concatenated message, reference of the
+     *         last segment.
+     */
+    final int sendMessage(final GXSMSMessage msg) {
+        synchronized (baseLock) {
+            if (trace == TraceLevel.VERBOSE) {
+                notifyTrace(new TraceEventArgs(TraceTypes.SENT,
+                        msg.getPhoneNumber() + " : " + msg.getData()));
+            }
+            // Reset last position.
+            synchronized (syncBase.getSync()) {
+                syncBase.resetLastPosition();
+            }
+            String number = getNumber(msg);
+            long start = System.nanoTime();
+            boolean tracked = deliveryReportsEnabled;
+            int[] references = sendMessage(msg.getData(), number,
+                    msg.getCodeType(), tracked);
+            ++messagesSent;
+            if (tracked) {
+                deliveryTracker.add(msg, references, start);
+            }
+            return references[references.length - 1];
+        }
+    }
+
+    /**
+     * Send SMS message and update the journal.
+     * 
+     * @param msg
+     *            SMS message to send.
+     * @param id
+     *            Journal id of the message or zero if message is not in the
+     *            journal yet.
+     * @return Message reference. With concatenated message, reference of the
+     *         last segment.
+     */
+    private int sendMessage(final GXSMSMessage msg, final long id) {
+        GXSMSJournal tmp = journal;
+        if (tmp == null) {
+            return sendMessage(msg);
+        }
+        long value = id;
+        if (value == 0) {
+            value = tmp.enqueue(msg, getNumber(msg));
+        }
+        int reference;
+        try {
+            reference = sendMessage(msg);
+        } catch (IllegalArgumentException | GXSMSRejectedException ex) {
+            // Message can't be sent, so it's not sent again.
+            tmp.completed(value);
+            throw ex;
+        }
+        // If sending fails for other reason, message is left to the journal
+        // and it's sent again when media is opened.
+        tmp.submitted(value, reference, deliveryReportsEnabled);
+        return reference;
+    }
+
+    /**
+     * Remove message from the journal without sending it.
+     * 
+     * @param id
+     *            Journal id of the message.
+     */
+    final void completed(final long id) {
+        GXSMSJournal tmp = journal;
+        if (tmp != null) {
+            tmp.completed(id);
+        }
+    }
+
+    /**
+     * Get receiver phone number. Default phone number is used if message
+     * doesn't have it.
+     * 
+     * @param msg
+     *            SMS message.
+     * @return Receiver phone number.
+     */
+    private String getNumber(final GXSMSMessage msg) {
+        String number = phoneNumber;
+        if (msg.getPhoneNumber() != null
+                && !msg.getPhoneNumber().equals("")) {
+            number = msg.getPhoneNumber();
+        }
+        if (number == null || number.equals("")) {
+            throw new IllegalArgumentException("Invalid phone number.");
+        }
+        return number;
+    }
+
+    /**
+     * Open outbound message journal and queue unfinished messages.
+     */
+    private void openJournal() {
+        GXSMSJournal tmp = new GXSMSJournal(new File(journalDirectory),
+                GXSMSJournal.DEFAULT_SEGMENT_SIZE);
+        long now = System.currentTimeMillis();
+        for (GXSMSJournal.Entry it : tmp.open()) {
+            if (it.getReference() == -1) {
+                sender.replay(it.getMessage(), it.getId())
+                        .whenComplete((reference, ex) -> {
+                            // Closed media leaves the message to the journal.
+                            if (ex != null && journal == tmp) {
+                                notifyError(toRuntimeException(ex));
+                            }
+                        });
+            } else if (deliveryReportsEnabled) {
+                // CHECKSTYLE:OFF
+                deliveryTracker.add(it.getMessage(),
+                        new int[] {it.getReference()}, System.nanoTime()
+                                - (now - it.getSubmitted()) * 1000000L);
+                // CHECKSTYLE:ON
+            } else {
+                tmp.completed(it.getId());
+            }
+        }
+        journal = tmp;
+    }
+
+    /**
+     * Get failure of the future as runtime exception.
+     * 
+     * @param ex
+     *            Occurred error.
+     * @return Runtime exception.
+     */
+    private static RuntimeException toRuntimeException(final Throwable ex) {
+        Throwable tmp = ex;
+        if (tmp instanceof java.util.concurrent.CompletionException
+                && tmp.getCause() != null) {
+            tmp = tmp.getCause();
         }
+        if (tmp instanceof RuntimeException) {
+            return (RuntimeException) tmp;
+        }
+        return new RuntimeException(tmp.getMessage(), tmp);
     }
 
     /**
@@ -638,7 +2282,7 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     public final void open() throws Exception {
         close();
         try {
-            if (portName == null || portName == "") {
+            if (transport == null && (portName == null || portName == "")) {
                 throw new IllegalArgumentException(
                         "Serial port is not selected.");
             }
@@ -654,8 +2298,15 @@ public class GXSMS implements IGXMedia, AutoCloseable {
                                 + " Parity: " + getParity().toString()
                                 + " Stop Bits: " + getStopBits().toString()));
             }
-            long[] tmp = new long[1];
-            hWnd = NativeCode.openSerialPort(portName, tmp);
+            if (transport == null) {
+                GXSerialTransport serial = new GXSerialTransport();
+                serial.open(portName);
+                hWnd = serial.getHandle();
+                link = serial;
+            } else {
+                transport.open(portName);
+                link = transport;
+            }
             // If user has change values before open.
             if (baudRate != BaudRate.BAUD_RATE_9600) {
                 setBaudRate(baudRate);
@@ -669,14 +2320,20 @@ public class GXSMS implements IGXMedia, AutoCloseable {
             if (stopBits != StopBits.ONE) {
                 setStopBits(stopBits);
             }
-            closing = tmp[0];
-            receiver = new GXReceiveThread(this, hWnd);
-            setRtsEnable(true);
-            setDtrEnable(true);
+            urcDispatcher.reset();
+            receiver = new GXReceiveThread(this, link);
+            if (hWnd != 0) {
+                setRtsEnable(true);
+                setDtrEnable(true);
+            }
             receiver.start();
-            // CHECKSTYLE:OFF
-            Thread.sleep(100);
-            // CHECKSTYLE:ON
+            // Modem is given time to start if it's not known.
+            if (capabilityFile == null || !GXSMSCapabilities
+                    .isKnownPort(capabilityFile, portName)) {
+                // CHECKSTYLE:OFF
+                Thread.sleep(100);
+                // CHECKSTYLE:ON
+            }
             try {
                 // Send AT
                 synchronized (baseLock) {
@@ -686,11 +2343,13 @@ public class GXSMS implements IGXMedia, AutoCloseable {
                         }
                     }
                     String reply;
+                    boolean restored = autoBaudRate && restoreBaudRate();
                     // Send AT
                     reply = sendCommand("AT\r", false);
                     if (reply.compareToIgnoreCase("OK") != 0) {
                         reply = sendCommand("AT\r", false);
-                        if (reply.compareToIgnoreCase("OK") != 0) {
+                        if (reply.compareToIgnoreCase("OK") != 0
+                                && !(autoBaudRate && findBaudRate())) {
                             reply = sendCommand("+++", "+++", true);
                             if (reply.equals("")) {
                                 throw new RuntimeException("Invalid reply.");
@@ -701,16 +2360,43 @@ public class GXSMS implements IGXMedia, AutoCloseable {
                             }
                         }
                     }
-                    // Enable error reporting. It's OK if this fails.
-                    sendCommand("AT+CMEE\r", false);
-                    // Enable verbode error code,
-                    reply = sendCommand("AT+CMEE=2\r", false);
-                    if (!reply.equals("OK")) {
-                        // Enable numeric error codes
-                        sendCommand("AT+CMEE=1\r", false);
+                    // Disable echo so sent commands and PDUs are not
+                    // received back. Replies are parsed with and without
+                    // echo, so it's OK if modem ignores this.
+                    sendCommand("ATE0\r", false);
+                    if (autoBaudRate && !restored) {
+                        negotiateBaudRate();
+                    }
+                    if (capabilityFile != null) {
+                        capabilities = getCapabilities();
+                    }
+                    int errorMode = -1;
+                    if (capabilities != null) {
+                        errorMode = capabilities.getErrorMode();
+                    }
+                    if (errorMode == -1) {
+                        // Enable error reporting. It's OK if this fails.
+                        sendCommand("AT+CMEE\r", false);
+                        // Enable verbode error code,
+                        errorMode = 2;
+                        reply = sendCommand("AT+CMEE=2\r", false);
+                        if (!reply.equals("OK")) {
+                            // Enable numeric error codes
+                            errorMode = 1;
+                            reply = sendCommand("AT+CMEE=1\r", false);
+                            if (!reply.equals("OK")) {
+                                errorMode = 0;
+                            }
+                        }
+                        if (capabilities != null) {
+                            capabilities.setErrorMode(errorMode);
+                        }
+                    } else if (errorMode != 0) {
+                        sendCommand(String.format("AT+CMEE=%1$d\r",
+                                errorMode), false);
                     }
-                    reply = sendCommand("AT+CPIN=?\r", false);
-                    boolean pinSupported = reply.equals("OK");
+                    boolean pinSupported = isSupported(
+                            GXSMSCapabilities.PIN, "AT+CPIN=?\r");
                     // Is PIN Code supported.
                     if (pinSupported) {
                         // Check PIN-Code
@@ -743,10 +2429,43 @@ public class GXSMS implements IGXMedia, AutoCloseable {
                         }
                     }
                     // Is direct SMS sending supported.
-                    reply = sendCommand("at+cmgs=?\r", false);
-                    supportDirectSend = reply.contains("OK");
+                    supportDirectSend = isSupported(
+                            GXSMSCapabilities.DIRECT_SEND, "AT+CMGS=?\r");
+                    supportListing = true;
+                    supportKeepLink = true;
+                    deleteFlags = -1;
+                    // Memory is scanned again after reconnect.
+                    slots.reset();
+                    if (capabilities != null) {
+                        supportListing = !Boolean.FALSE.equals(capabilities
+                                .isSupported(GXSMSCapabilities.LISTING));
+                        supportKeepLink = !Boolean.FALSE.equals(capabilities
+                                .isSupported(GXSMSCapabilities.KEEP_LINK));
+                        capabilities.setPort(portName);
+                        GXSMSCapabilities.save(capabilityFile);
+                    }
+                    if (notifications || deliveryReports) {
+                        enableIndications();
+                    }
+                    if (checkpointFile != null) {
+                        GXSMSCheckpoint tmp = new GXSMSCheckpoint(
+                                checkpointFile,
+                                GXSMSCheckpoint.DEFAULT_CAPACITY);
+                        tmp.open();
+                        checkpoint = tmp;
+                    }
+                    sender = new GXSendThread(this, sendQueueSize);
+                    if (journalDirectory != null) {
+                        openJournal();
+                    }
+                    sender.start();
+                    if (statusInterval != 0) {
+                        statusReader = new GXStatusThread(this);
+                        statusReader.start();
+                    }
                     // Start SMS checker.
-                    if (checkInterval != 0) {
+                    if (checkInterval != 0 || notificationsEnabled
+                            || deliveryReportsEnabled) {
                         smsReceiver = new SMSReceiveThread(this);
                         smsReceiver.start();
                     }
@@ -762,6 +2481,231 @@ public class GXSMS implements IGXMedia, AutoCloseable {
         }
     }
 
+    /**
+     * Take remembered baud rate of the port into use.
+     * 
+     * @return True, if modem answers with the remembered baud rate.
+     * @throws InterruptedException
+     *             Media is closed.
+     */
+    private boolean restoreBaudRate() throws InterruptedException {
+        BaudRate rate = BaudRate.forValue(
+                GXSMSCapabilities.getBaudRate(capabilityFile, portName));
+        if (rate == null) {
+            return false;
+        }
+        BaudRate current = getBaudRate();
+        if (rate != current) {
+            setLinkBaudRate(rate);
+            if (!isAnswering()) {
+                // Modem is reset to the configured baud rate.
+                setLinkBaudRate(current);
+                GXSMSCapabilities.setBaudRate(capabilityFile, portName, 0);
+                return false;
+            }
+            notifyPropertyChanged("BaudRate");
+        }
+        return true;
+    }
+
+    /**
+     * Find baud rate that modem answers when it doesn't answer with the
+     * configured one. Baud rates of the port are tried from the fastest.
+     * 
+     * @return True, if modem answers.
+     * @throws InterruptedException
+     *             Media is closed.
+     */
+    private boolean findBaudRate() throws InterruptedException {
+        BaudRate current = getBaudRate();
+        BaudRate[] rates = getAvailableBaudRates(portName);
+        for (int pos = rates.length - 1; pos != -1; --pos) {
+            if (rates[pos] == current) {
+                continue;
+            }
+            setLinkBaudRate(rates[pos]);
+            if (isAnswering()) {
+                notifyPropertyChanged("BaudRate");
+                return true;
+            }
+        }
+        setLinkBaudRate(current);
+        return false;
+    }
+
+    /**
+     * Negotiate the fastest baud rate that modem and serial port support.
+     * 
+     * @throws InterruptedException
+     *             Media is closed.
+     */
+    private void negotiateBaudRate() throws InterruptedException {
+        String reply = sendCommand("AT+IPR=?\r", false);
+        if (!reply.startsWith("+IPR:")) {
+            // Modem doesn't support baud rate change.
+            return;
+        }
+        List<int[]> supported = parseBaudRates(reply);
+        BaudRate initial = getBaudRate();
+        BaudRate current = initial;
+        BaudRate[] rates = getAvailableBaudRates(portName);
+        for (int pos = rates.length - 1; pos != -1
+                && rates[pos].getValue() > current.getValue(); --pos) {
+            BaudRate it = rates[pos];
+            if (!isSupported(supported, it.getValue())) {
+                continue;
+            }
+            reply = sendCommand(
+                    String.format("AT+IPR=%1$d\r", it.getValue()), false);
+            if (!reply.equals("OK")) {
+                continue;
+            }
+            setLinkBaudRate(it);
+            if (isAnswering()) {
+                current = it;
+                break;
+            }
+            // Check failed. Return to the previous baud rate.
+            setLinkBaudRate(current);
+            if (!isAnswering()) {
+                // Modem has changed the baud rate, but it's not working.
+                setLinkBaudRate(it);
+                sendBytes(String.format("AT+IPR=%1$d\r", current.getValue())
+                        .getBytes(StandardCharsets.US_ASCII));
+                setLinkBaudRate(current);
+                if (!isAnswering()) {
+                    throw new RuntimeException(
+                            "Failed to restore baud rate " + current + ".");
+                }
+            }
+        }
+        GXSMSCapabilities.setBaudRate(capabilityFile, portName,
+                current.getValue());
+        if (current != initial) {
+            notifyPropertyChanged("BaudRate");
+        }
+    }
+
+    /**
+     * Parse supported baud rates from AT+IPR=? reply.
+     * 
+     * Reply is a list of values and ranges, for example
+     * "+IPR: (0,300,1200-115200),()".
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Supported baud rates as minimum and maximum pairs.
+     */
+    static List<int[]> parseBaudRates(final String reply) {
+        List<int[]> rates = new ArrayList<int[]>();
+        String tmp = reply.substring(reply.indexOf(':') + 1);
+        for (String it : tmp.split("[^0-9-]+")) {
+            if (it.length() == 0) {
+                continue;
+            }
+            try {
+                int pos = it.indexOf('-');
+                if (pos == -1) {
+                    int value = Integer.parseInt(it);
+                    rates.add(new int[] { value, value });
+                } else {
+                    rates.add(new int[] {
+                            Integer.parseInt(it.substring(0, pos)),
+                            Integer.parseInt(it.substring(pos + 1)) });
+                }
+            } catch (NumberFormatException ex) {
+                // Invalid value is ignored.
+                continue;
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Is baud rate supported.
+     * 
+     * @param supported
+     *            Supported baud rates as minimum and maximum pairs.
+     * @param value
+     *            Baud rate.
+     * @return True, if baud rate is supported.
+     */
+    private static boolean isSupported(final List<int[]> supported,
+            final int value) {
+        for (int[] it : supported) {
+            if (value >= it[0] && value <= it[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Change baud rate of the serial port and wait until modem is ready.
+     * 
+     * @param value
+     *            New baud rate.
+     * @throws InterruptedException
+     *             Media is closed.
+     */
+    private void setLinkBaudRate(final BaudRate value)
+            throws InterruptedException {
+        link.setBaudRate(value.getValue());
+        Thread.sleep(BAUD_RATE_CHANGE_TIME);
+    }
+
+    /**
+     * Check that modem answers to AT. Command is sent twice, because
+     * garbage may be received after the baud rate is changed.
+     * 
+     * @return True, if modem answers.
+     */
+    private boolean isAnswering() {
+        for (int pos = 0; pos != 2; ++pos) {
+            if (sendCommand("AT\r", false).equalsIgnoreCase("OK")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Enable new message and status report indications.
+     */
+    private void enableIndications() {
+        // Indicate new messages with +CMTI.
+        int mt = 0;
+        if (notifications) {
+            mt = 1;
+        }
+        String reply = "";
+        int ds = 0;
+        if (deliveryReports) {
+            // Route status reports directly with +CDS. If modem doesn't
+            // support it, reports are saved and indicated with +CDSI.
+            for (ds = 1; ds != 3; ++ds) {
+                reply = sendCommand(String.format(
+                        "AT+CNMI=2,%1$d,0,%2$d,0\r", mt, ds), false);
+                if (reply.equals("OK")) {
+                    break;
+                }
+            }
+        }
+        if (!reply.equals("OK")) {
+            ds = 0;
+            if (notifications) {
+                reply = sendCommand("AT+CNMI=2,1,0,0,0\r", false);
+            }
+        }
+        deliveryReportsEnabled = ds != 0;
+        notificationsEnabled = notifications && reply.equals("OK");
+        if (notifications) {
+            // Indicate network registration changes with +CREG.
+            reply = sendCommand("AT+CREG=1\r", false);
+            networkNotificationsEnabled = reply.equals("OK");
+        }
+    }
+
     /**
      * Write bytes to the serial port.
      * 
@@ -778,7 +2722,7 @@ public class GXSMS implements IGXMedia, AutoCloseable {
             synchronized (syncBase.getSync()) {
                 syncBase.resetLastPosition();
             }
-            NativeCode.write(hWnd, value, writeTimeout);
+            link.write(value, writeTimeout);
         }
     }
 
@@ -801,43 +2745,40 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      * @param cmd
      *            Command to send.
      * @param eop
-     *            End of packet if used.
+     *            End of packet if used. Reply is framed until the final result
+     *            code if null or until the prompt if PROMPT_EOP.
      * @param throwError
      *            Is error thrown if there is no reply.
      * @return Received reply from the modem.
      */
     private String sendCommand(final String cmd, final String eop,
             final boolean throwError) {
-        final int expectedMinimumByteCount = 5;
         ReceiveParameters<String> p =
                 new ReceiveParameters<String>(String.class);
         p.setWaitTime(commadWaitTime);
-        if (eop != null) {
-            p.setEop(eop);
-        } else {
+        if (eop == null) {
             p.setEop("\r\n");
-        }
-
-        if (p.getEop().equals("")) {
-            p.setEop(null);
-            p.setCount(cmd.length());
+        } else {
+            p.setEop(eop);
         }
         try {
             sendBytes(cmd.getBytes("ASCII"));
         } catch (UnsupportedEncodingException ex) {
             throw new RuntimeException(ex.getMessage());
         }
+        if (eop == null || eop.equals(PROMPT_EOP)) {
+            GXReplyFramer framer = frameReply(cmd, p);
+            if (framer == null) {
+                return noReply(throwError);
+            }
+            return framer.getReply();
+        }
         StringBuilder sb = new StringBuilder();
         int index = -1;
         String reply = "";
         while (index == -1) {
             if (!receive(p)) {
-                if (throwError) {
-                    throw new RuntimeException(
-                            "Failed to receive answer from the modem. "
-                                    + "Check serial port.");
-                }
-                return "";
+                return noReply(throwError);
             }
             sb.append(p.getReply());
             reply = sb.toString();
@@ -845,58 +2786,140 @@ public class GXSMS implements IGXMedia, AutoCloseable {
             if (sb.length() >= cmd.length() && reply.startsWith(cmd)) {
                 sb.delete(0, cmd.length());
                 reply = sb.toString();
-                // Remove echo and return if we are not expecting reply.
-                if (eop != null && eop.equals("")) {
-                    return "";
-                }
             }
-            if (eop != null) {
-                index = reply.lastIndexOf(eop);
-            } else if (reply.length() > expectedMinimumByteCount) {
-                index = reply.lastIndexOf("\r\nOK\r\n");
-                if (index == -1) {
-                    index = reply.lastIndexOf("ERROR:");
-                } else if (index != 0) {
-                    // If there is a message before OK show it.
-                    reply = reply.substring(0, index);
-                    index = 0;
-                }
+            index = reply.lastIndexOf(eop);
+            p.setReply(null);
+        }
+        return reply.trim();
+    }
+
+    /**
+     * Receive reply until the final result code or the prompt.
+     * 
+     * @param cmd
+     *            Sent command.
+     * @param p
+     *            Receive parameters.
+     * @return Framed reply or null if the modem didn't reply.
+     */
+    private GXReplyFramer frameReply(final String cmd,
+            final ReceiveParameters<String> p) {
+        // Only new data is scanned for the final result code.
+        GXReplyFramer framer = new GXReplyFramer(cmd);
+        while (!framer.isCompleted()) {
+            if (!receive(p)) {
+                return null;
             }
+            framer.append(p.getReply());
             p.setReply(null);
         }
-        if (index != 0 & eop == null) {
-            reply = reply.substring(0, 0) + reply.substring(0 + index);
+        return framer;
+    }
+
+    /**
+     * Send command and frame the reply.
+     * 
+     * Information lines are available also if the command fails.
+     * 
+     * @param cmd
+     *            Command to send.
+     * @return Framed reply or null if the modem didn't reply.
+     */
+    private GXReplyFramer sendFramed(final String cmd) {
+        ReceiveParameters<String> p =
+                new ReceiveParameters<String>(String.class);
+        p.setWaitTime(commadWaitTime);
+        p.setEop("\r\n");
+        try {
+            sendBytes(cmd.getBytes("ASCII"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+        return frameReply(cmd, p);
+    }
+
+    /**
+     * Handle missing reply.
+     * 
+     * @param throwError
+     *            Is error thrown.
+     * @return Empty reply.
+     */
+    private static String noReply(final boolean throwError) {
+        if (throwError) {
+            throw new RuntimeException(
+                    "Failed to receive answer from the modem. "
+                            + "Check serial port.");
         }
-        reply = reply.trim();
-        return reply;
+        return "";
     }
 
     @Override
     public final void close() {
-        if (hWnd != 0) {
+        if (link != null) {
             try {
                 notifyMediaStateChange(MediaState.CLOSING);
                 if (smsReceiver != null) {
-                    receiver.interrupt();
-                    receiver = null;
+                    smsReceiver.interrupt();
+                    smsReceiver = null;
+                }
+                if (statusReader != null) {
+                    statusReader.interrupt();
+                    statusReader = null;
+                }
+                if (checkpoint != null) {
+                    checkpoint.close();
+                    checkpoint = null;
+                }
+                if (journal != null) {
+                    // Queued and unfinished messages are left to the
+                    // journal.
+                    journal.close();
+                    journal = null;
+                }
+                if (sender != null) {
+                    // Queued messages are failed before the sender stops.
+                    sender.cancel(
+                            new IllegalStateException("Media is closed."));
+                    sender.interrupt();
+                    sender = null;
                 }
             } catch (RuntimeException ex) {
                 notifyError(ex);
                 throw ex;
             } finally {
+                if (capabilities != null) {
+                    capabilities = null;
+                    // Save capabilities learned from the status queries.
+                    try {
+                        GXSMSCapabilities.save(capabilityFile);
+                    } catch (RuntimeException ex) {
+                        notifyError(ex);
+                    }
+                }
+                notificationsEnabled = false;
+                deliveryReportsEnabled = false;
+                deliveryTracker.cancel(
+                        new IllegalStateException("Media is closed."));
+                networkNotificationsEnabled = false;
+                networkState = null;
+                Arrays.fill(statusNotSupported, false);
+                lastStatus = null;
+                slots.reset();
                 if (receiver != null) {
                     receiver.interrupt();
+                    receiver.resetBytesReceived();
                     receiver = null;
                 }
                 try {
-                    NativeCode.closeSerialPort(hWnd, closing);
+                    link.close();
                 } catch (java.lang.Exception e) {
                     // Ignore all errors on close.
                 }
+                link = null;
                 hWnd = 0;
                 notifyMediaStateChange(MediaState.CLOSED);
                 bytesSend = 0;
-                this.receiver.resetBytesReceived();
                 syncBase.resetReceivedSize();
             }
         }
@@ -908,10 +2931,10 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      * @return Used baud rate.
      */
     public final BaudRate getBaudRate() {
-        if (hWnd == 0) {
+        if (link == null) {
             return baudRate;
         }
-        return BaudRate.forValue(NativeCode.getBaudRate(hWnd));
+        return BaudRate.forValue(link.getBaudRate());
     }
 
     /**
@@ -923,10 +2946,10 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     public final void setBaudRate(final BaudRate value) {
         boolean change = getBaudRate() != value;
         if (change) {
-            if (hWnd == 0) {
+            if (link == null) {
                 baudRate = value;
             } else {
-                NativeCode.setBaudRate(hWnd, value.getValue());
+                link.setBaudRate(value.getValue());
             }
             notifyPropertyChanged("BaudRate");
         }
@@ -1175,7 +3198,7 @@ public class GXSMS implements IGXMedia, AutoCloseable {
 
     @Override
     public final boolean isOpen() {
-        return hWnd != 0;
+        return link != null;
     }
 
     /**
@@ -1352,68 +3375,206 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     }
 
     /**
-     * Sets the number of milliseconds before a time-out occurs when a write
-     * operation does not finish.
+     * Sets the number of milliseconds before a time-out occurs when a write
+     * operation does not finish.
+     * 
+     * @param value
+     *            Used time out.
+     */
+    public final void setWriteTimeout(final int value) {
+        boolean change = writeTimeout != value;
+        if (change) {
+            writeTimeout = value;
+            notifyPropertyChanged("WriteTimeout");
+        }
+    }
+
+    /**
+     * Send message. Long message is sent as concatenated segments.
+     * 
+     * @param message
+     *            Message to send.
+     * @param target
+     *            Receiver.
+     * @param type
+     *            Message code type.
+     * @param statusReport
+     *            Is status report requested.
+     * @return Message references of the segments.
+     */
+    private int[] sendMessage(final String message, final String target,
+            final MessageCodeType type, final boolean statusReport) {
+        String receiver2 = target;
+        if (receiver2 == null || receiver2.equals("")) {
+            throw new IllegalArgumentException("Invalid receiver");
+        }
+        // Remove spaces.
+        receiver2 = receiver2.replace(" ", "").replace("-", "").replace("(", "")
+                .replace(")", "").trim();
+        // Code PDUs.
+        byte[][] pdus = GXSMSPdu.codeOctets(receiver2, message, type,
+                concatenationReference, use16BitReference, statusReport);
+        if (pdus.length != 1) {
+            ++concatenationReference;
+        }
+        int[] references = new int[pdus.length];
+        for (int pos = 0; pos != pdus.length; ++pos) {
+            references[pos] = sendPdu(pdus[pos], pos == 0);
+        }
+        return references;
+    }
+
+    /**
+     * Send one SMS-SUBMIT PDU.
+     * 
+     * @param pdu
+     *            PDU to send.
+     * @param cancel
+     *            Is open PDU prompt cancelled first.
+     * @return Message reference.
+     */
+    private int sendPdu(final byte[] pdu, final boolean cancel) {
+        long start = System.nanoTime();
+        int reference;
+        if (isDirectSend()) {
+            reference = parseReference(
+                    writePdu("AT+CMGS=", pdu, "+CMGS:", cancel));
+            directLatency.add(System.nanoTime() - start);
+        } else {
+            int index = parseReference(
+                    writePdu("AT+CMGW=", pdu, "+CMGW:", cancel));
+            slots.set(memory, index);
+            try {
+                String reply = sendCommand(
+                        String.format("AT+CMSS=%1$s\r", index), false);
+                if (!reply.startsWith("+CMSS:")) {
+                    throw sendFailed(reply);
+                }
+                reference = parseReference(reply);
+            } finally {
+                // Sent or failed message is not left to the memory.
+                deleteMessage(index);
+            }
+            storeAndForwardLatency.add(System.nanoTime() - start);
+        }
+        return reference;
+    }
+
+    /**
+     * Write PDU to the modem with AT+CMGS or AT+CMGW.
+     * 
+     * The command is one write and the PDU with the terminating Ctrl-Z is
+     * another. Echo of the PDU is skipped by the reply framer, so it's not
+     * waited separately.
+     * 
+     * @param cmd
+     *            Command without the length.
+     * @param pdu
+     *            PDU to write.
+     * @param expected
+     *            Expected reply prefix.
+     * @param cancel
+     *            Is open PDU prompt cancelled first.
+     * @return Reply from the modem.
+     */
+    private String writePdu(final String cmd, final byte[] pdu,
+            final String expected, final boolean cancel) {
+        StringBuilder sb = new StringBuilder(2 * pdu.length + 2);
+        if (cancel) {
+            sb.append(CTRL_Z);
+        }
+        // Length without SMSC information.
+        sb.append(cmd).append(pdu.length - 1).append('\r');
+        String reply = sendCommand(sb.toString(), PROMPT_EOP, false);
+        if (!reply.equals(">")) {
+            throw sendFailed(reply);
+        }
+        reply = sendCommand(GXSMSPdu.toHex(pdu) + CTRL_Z, false);
+        if (!reply.startsWith(expected)) {
+            throw sendFailed(reply);
+        }
+        return reply;
+    }
+
+    /**
+     * Get error for the failed send. Send commands fail with +CMS ERROR and
+     * permanent cause is returned as GXSMSRejectedException.
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Error to throw.
+     */
+    private static RuntimeException sendFailed(final String reply) {
+        String msg = "Short message send failed.\r\n" + getError(reply);
+        int pos = reply.indexOf(GXSMSPdu.ERROR);
+        if (pos != -1) {
+            int error = parseReference(reply.substring(pos));
+            if (isPermanentError(error)) {
+                return new GXSMSRejectedException(msg, error);
+            }
+        }
+        return new RuntimeException(msg);
+    }
+
+    /**
+     * Is +CMS ERROR cause permanent. Causes are from 3GPP TS 24.011 and
+     * TS 23.040. Other causes are temporary and sending is tried again.
      * 
-     * @param value
-     *            Used time out.
+     * @param error
+     *            +CMS ERROR cause.
+     * @return True, if message can't be sent.
      */
-    public final void setWriteTimeout(final int value) {
-        boolean change = writeTimeout != value;
-        if (change) {
-            writeTimeout = value;
-            notifyPropertyChanged("WriteTimeout");
+    // CHECKSTYLE:OFF
+    private static boolean isPermanentError(final int error) {
+        // TP-PID, TP-DCS and TP-Command errors.
+        if (error >= 0x80 && error <= 0xAF) {
+            return true;
+        }
+        switch (error) {
+        case 1: // Unassigned number.
+        case 8: // Operator determined barring.
+        case 10: // Call barred.
+        case 21: // Short message transfer rejected.
+        case 29: // Facility rejected.
+        case 30: // Unknown subscriber.
+        case 50: // Requested facility not subscribed.
+        case 69: // Requested facility not implemented.
+        case 96: // Invalid mandatory information.
+        case 0xC1: // No SC subscription.
+        case 0xC3: // Invalid SME address.
+        case 0xC4: // Destination SME barred.
+        case 0xC5: // SM rejected, duplicate SM.
+        case 0xC6: // TP-VPF not supported.
+        case 0xC7: // TP-VP not supported.
+        case 304: // Invalid PDU mode parameter.
+            return true;
+        default:
+            return false;
         }
     }
+    // CHECKSTYLE:ON
 
     /**
-     * Send message.
+     * Parse message reference from +CMGS, +CMGW or +CMSS reply.
      * 
-     * @param message
-     *            Message to send.
-     * @param target
-     *            Receiver.
-     * @param type
-     *            Message code type.
+     * @param reply
+     *            Reply from the modem.
+     * @return Message reference or zero if it's not available.
      */
-    private void sendMessage(final String message, final String target,
-            final MessageCodeType type) {
-        String receiver2 = target;
-        if (receiver == null || receiver.equals("")) {
-            throw new IllegalArgumentException("Invalid receiver");
+    private static int parseReference(final String reply) {
+        int pos = reply.indexOf(':');
+        if (pos == -1) {
+            return 0;
         }
-        // Remove spaces.
-        receiver2 = receiver2.replace(" ", "").replace("-", "").replace("(", "")
-                .replace(")", "").trim();
-        // Send EOF
-        // CHECKSTYLE:OFF
-        sendBytes(new byte[] { 26 });
-        // CHECKSTYLE:ON
-        // Code PDU.
-        String data = GXSMSPdu.code(target, message, type);
-        long len = (data.length() / 2) - 1;
-        String cmd;
-        // Save SMS before send.
-        if (!supportDirectSend) {
-            cmd = String.format("AT+CMGW=%1$s\r", len);
-        } else {
-            cmd = String.format("AT+CMGS=%1$s\r", len);
-        }
-        // CHECKSTYLE:OFF
-        String reply =
-                sendCommand(cmd, new String(new char[] { (char) 0x20 }), false);
-        // CHECKSTYLE:ON
-        if (!reply.equals(">")) {
-            throw new RuntimeException("Short message send failed.");
+        String value = reply.substring(pos + 1).trim();
+        int end = 0;
+        while (end != value.length() && Character.isDigit(value.charAt(end))) {
+            ++end;
         }
-        reply = sendCommand(data, "", false);
-        // CHECKSTYLE:OFF
-        reply = sendCommand(new String(new char[] { 26 }), false);
-        // CHECKSTYLE:ON
-        if (!reply.startsWith("+CMGW:")) {
-            throw new RuntimeException(
-                    "Short message send failed.\r\n" + getError(reply));
+        if (end == 0) {
+            return 0;
         }
+        return Integer.parseInt(value.substring(0, end));
     }
 
     @Override
@@ -1746,6 +3907,9 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     private String deleteMessage(final int index) {
         String reply =
                 sendCommand(String.format("AT+CMGD=%1$s\r", index), false);
+        if (reply.equals("OK")) {
+            slots.clear(memory, index);
+        }
         return reply;
     }
 
@@ -1767,146 +3931,495 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      * Delete ALL SMS from the phone.
      */
     public final void deleteAll() {
-        GXSMSMemoryInfo info = getMemoryCapacity();
-        // If there are no messages to remove.
-        if (info.getCount() == 0) {
-            return;
-        }
+        deleteAll(DeleteFlag.ALL);
+    }
+
+    /**
+     * Delete messages from the phone.
+     * 
+     * Messages are deleted with one AT+CMGD command if the modem supports
+     * the delete flag. Otherwise occupied indexes are listed and only they
+     * are deleted.
+     * 
+     * @param flag
+     *            Which messages are deleted.
+     */
+    public final void deleteAll(final DeleteFlag flag) {
         synchronized (baseLock) {
-            for (int pos = 1; pos != info.getMaximum() + 1; ++pos) {
-                String reply = deleteMessage(pos);
+            if (isDeleteFlagSupported(flag)) {
+                String reply = sendCommand(String.format("AT+CMGD=1,%1$s\r",
+                        flag.getValue()), false);
+                if (reply.equals("OK")) {
+                    if (flag == DeleteFlag.ALL) {
+                        slots.clear(memory);
+                    } else {
+                        // Statuses of the occupied indexes are not known.
+                        slots.invalidate(memory);
+                    }
+                    return;
+                }
+            }
+            for (int it : getOccupied(flag)) {
+                String reply = deleteMessage(it);
                 if (!reply.equals("OK")) {
                     throw new RuntimeException(String.format(
-                            "Delete failed from index %1$s.\r\n%2$s", pos,
+                            "Delete failed from index %1$s.\r\n%2$s", it,
                             reply));
                 }
             }
         }
     }
 
+    /**
+     * Get occupied indexes of the messages that the delete flag selects.
+     * 
+     * @param flag
+     *            Delete flag.
+     * @return Memory indexes.
+     */
+    private List<Integer> getOccupied(final DeleteFlag flag) {
+        // Listed statuses: 1 read, 3 sent, 2 unsent and 4 all.
+        int[] statuses;
+        // CHECKSTYLE:OFF
+        switch (flag) {
+        case READ:
+            statuses = new int[] {1};
+            break;
+        case READ_AND_SENT:
+            statuses = new int[] {1, 3};
+            break;
+        case READ_AND_STORED:
+            statuses = new int[] {1, 3, 2};
+            break;
+        default:
+            statuses = new int[] {4};
+            break;
+        }
+        // CHECKSTYLE:ON
+        List<GXSMSMessage> messages = null;
+        if (supportListing) {
+            messages = new ArrayList<GXSMSMessage>();
+            for (int it : statuses) {
+                List<GXSMSMessage> tmp = listMessages(it);
+                if (tmp == null) {
+                    messages = null;
+                    break;
+                }
+                messages.addAll(tmp);
+            }
+        }
+        List<Integer> indexes = new ArrayList<Integer>();
+        if (messages == null) {
+            // Messages are read one index at the time.
+            for (GXSMSMessage it : readMessages()) {
+                if (isSelected(flag, it.getStatus())) {
+                    indexes.add(it.getIndex());
+                }
+            }
+        } else {
+            for (GXSMSMessage it : messages) {
+                indexes.add(it.getIndex());
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Does the delete flag select the message.
+     * 
+     * @param flag
+     *            Delete flag.
+     * @param status
+     *            Message status.
+     * @return True, if message is deleted.
+     */
+    private static boolean isSelected(final DeleteFlag flag,
+            final MessageStatus status) {
+        switch (flag) {
+        case READ:
+            return status == MessageStatus.READ;
+        case READ_AND_SENT:
+            return status == MessageStatus.READ
+                    || status == MessageStatus.SENT;
+        case READ_AND_STORED:
+            return status != MessageStatus.NOT_READ;
+        default:
+            return true;
+        }
+    }
+
     /**
      * Read all messages from the selected memory.
      * 
+     * Messages are listed with one AT+CMGL command. If the modem doesn't
+     * support listing, messages are read one index at the time.
+     * 
      * @return Collection of SMS messages from the device.
      */
     public final GXSMSMessage[] read() {
+        synchronized (baseLock) {
+            if (supportListing) {
+                // CHECKSTYLE:OFF
+                List<GXSMSMessage> messages = listMessages(4);
+                // CHECKSTYLE:ON
+                if (messages != null) {
+                    return messages.toArray(new GXSMSMessage[0]);
+                }
+                supportListing = false;
+                setNotSupported(GXSMSCapabilities.LISTING);
+            }
+            return readMessages();
+        }
+    }
+
+    /**
+     * List messages from the selected memory using AT+CMGL command.
+     * 
+     * @param status
+     *            Status of the listed messages or 4 for all messages.
+     * @return Collection of SMS messages or null, if the modem replied with
+     *         an error and listing is not supported. Timeout is thrown as
+     *         an exception, so a slow reply doesn't disable listing.
+     */
+    private List<GXSMSMessage> listMessages(final int status) {
+        ReceiveParameters<String> p =
+                new ReceiveParameters<String>(String.class);
+        p.setWaitTime(commadWaitTime);
+        p.setEop("\r\n");
+        // List messages in PDU mode.
+        String cmd = String.format("AT+CMGL=%1$s\r", status);
+        try {
+            sendBytes(cmd.getBytes("ASCII"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+        GXSMSListParser parser = new GXSMSListParser(inboundStore);
+        // Messages are parsed line by line as they are received.
+        while (!parser.isCompleted()) {
+            if (!receive(p)) {
+                noReply(true);
+            }
+            String line = p.getReply();
+            p.setReply(null);
+            // Remove echo.
+            if (line.startsWith(cmd)) {
+                line = line.substring(cmd.length());
+            }
+            parser.parse(line);
+        }
+        if (parser.isFailed()) {
+            return null;
+        }
+        List<GXSMSMessage> messages = parser.getMessages();
+        List<Integer> indexes = new ArrayList<Integer>(messages.size());
+        for (GXSMSMessage it : messages) {
+            indexes.add(it.getIndex());
+        }
+        indexes.addAll(parser.getReports().keySet());
+        // CHECKSTYLE:OFF
+        if (status == 4) {
+            // CHECKSTYLE:ON
+            slots.update(memory, indexes);
+        } else {
+            for (int it : indexes) {
+                slots.set(memory, it);
+            }
+        }
+        handleStoredReports(parser.getReports());
+        return messages;
+    }
+
+    /**
+     * Read message from the given index.
+     * 
+     * @param index
+     *            Memory index.
+     * @return Read message or null, if there is no message in the index.
+     */
+    public final GXSMSMessage read(final int index) {
+        synchronized (baseLock) {
+            List<GXSMSMessage> messages = new ArrayList<GXSMSMessage>(1);
+            Map<Integer, GXSMSDeliveryReport> reports =
+                    new LinkedHashMap<Integer, GXSMSDeliveryReport>();
+            readMessage(index, messages, reports);
+            handleStoredReports(reports);
+            if (messages.isEmpty()) {
+                return null;
+            }
+            return messages.get(0);
+        }
+    }
+
+    /**
+     * Parse AT+CMGR reply.
+     * 
+     * @param value
+     *            Reply from the modem.
+     * @param index
+     *            Memory index.
+     * @param store
+     *            Inbound store or null if not used.
+     * @return Parsed message or null, if there is no message in the index.
+     */
+    static GXSMSMessage parseMessage(final String value, final int index,
+            final GXSMSInboundStore store) {
         final String expectedReply = "+CMGR:";
+        if (!value.startsWith(expectedReply)) {
+            return null;
+        }
+        String reply = value.substring(expectedReply.length());
+        String[] tmp = reply.split("[,]", -1);
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setIndex(index);
+        msg.setStatus(GXSMSListParser.parseStatus(tmp[0]));
+        // If this is not a empty message
+        if (tmp.length != 1) {
+            String[] m = tmp[2].split("\r\n");
+            if (m.length != 2) {
+                return null;
+            }
+            GXSMSListParser.decode(store, m[1], msg);
+            // If this message is not read yet.
+            if (msg.getStatus() == MessageStatus.NOT_READ
+                    && msg.getPhoneNumber().equals("")) {
+                return null;
+            }
+        }
+        return msg;
+    }
+
+    /**
+     * Read all messages from the selected memory one index at the time.
+     * 
+     * If occupied indexes are known, only they are read. Memory is scanned
+     * from the first index after reconnect or if the occupied indexes don't
+     * match to the amount of messages in the memory.
+     * 
+     * @return Collection of SMS messages from the device.
+     */
+    private GXSMSMessage[] readMessages() {
         GXSMSMemoryInfo info = getMemoryCapacity();
         // If there are no messages to read.
         if (info.getCount() == 0) {
+            slots.clear(memory);
             return new GXSMSMessage[0];
         }
         java.util.ArrayList<GXSMSMessage> messages =
                 new java.util.ArrayList<GXSMSMessage>();
-        synchronized (baseLock) {
-            for (int pos = 1; pos != info.getMaximum() + 1; ++pos) {
-                String reply = sendCommand(String.format("AT+CMGR=%1$s\r", pos),
-                        false);
-                if (reply.startsWith(expectedReply)) {
-                    reply = reply.substring(0, 0)
-                            + reply.substring(0 + expectedReply.length());
-                    String[] tmp = reply.split("[,]", -1);
-                    GXSMSMessage msg = new GXSMSMessage();
-                    msg.setIndex(pos);
-                    String status = tmp[0].replace("\"", "").trim();
-                    if (status.startsWith("STO")) {
-                        if (status.contains("UNSENT")) {
-                            msg.setStatus(MessageStatus.NOT_SENT);
-                        } else if (status.contains("UNREAD")) {
-                            msg.setStatus(MessageStatus.NOT_READ);
-                        } else if (status.contains("Read")) {
-                            msg.setStatus(MessageStatus.READ);
-                        } else if (status.contains("Sent")) {
-                            msg.setStatus(MessageStatus.SENT);
-                        }
-                    } else {
-                        msg.setStatus(MessageStatus
-                                .forValue(Integer.parseInt(status)));
-                    }
-                    // If this is not a empty message
-                    if (tmp.length != 1) {
-                        String[] m = tmp[2].split("\r\n");
-                        if (m.length != 2) {
-                            continue;
-                        }
-                        GXSMSPdu.encode(m[1], msg);
-                        // If this message is not read yet.
-                        if (msg.getStatus() == MessageStatus.NOT_READ
-                                && msg.getPhoneNumber().equals("")) {
-                            continue;
-                        }
-                    }
-                    messages.add(msg);
-                    // If all messages are read.
-                    if (messages.size() == info.getCount()) {
-                        break;
-                    }
+        Map<Integer, GXSMSDeliveryReport> reports =
+                new LinkedHashMap<Integer, GXSMSDeliveryReport>();
+        int[] occupied = slots.getOccupied(memory);
+        if (occupied != null) {
+            int found = 0;
+            for (int pos : occupied) {
+                if (readMessage(pos, messages, reports)) {
+                    ++found;
+                }
+            }
+            if (found == info.getCount()) {
+                handleStoredReports(reports);
+                return messages.toArray(new GXSMSMessage[0]);
+            }
+            // Known index was empty.
+            slots.invalidate(memory);
+            messages.clear();
+            reports.clear();
+        }
+        List<Integer> indexes = new ArrayList<Integer>();
+        for (int pos = 1; pos != info.getMaximum() + 1; ++pos) {
+            if (readMessage(pos, messages, reports)) {
+                indexes.add(pos);
+                // If all messages are read.
+                if (indexes.size() == info.getCount()) {
+                    break;
                 }
             }
         }
+        slots.update(memory, indexes);
+        handleStoredReports(reports);
         return messages.toArray(new GXSMSMessage[0]);
     }
 
+    /**
+     * Read message from the given index and update occupied indexes.
+     * 
+     * @param index
+     *            Memory index.
+     * @param messages
+     *            Read message is added here.
+     * @param reports
+     *            Saved status report is added here by memory index.
+     * @return True, if the index is occupied.
+     */
+    private boolean readMessage(final int index,
+            final List<GXSMSMessage> messages,
+            final Map<Integer, GXSMSDeliveryReport> reports) {
+        String reply =
+                sendCommand(String.format("AT+CMGR=%1$s\r", index), false);
+        updateSlot(index, reply);
+        if (!reply.startsWith("+CMGR:")) {
+            return false;
+        }
+        String[] tmp = reply.split("\r\n");
+        if (tmp.length > 1 && GXSMSPdu.isStatusReport(tmp[1])) {
+            reports.put(index, GXSMSPdu.decodeStatusReport(tmp[1]));
+        } else {
+            GXSMSMessage msg = parseMessage(reply, index, inboundStore);
+            if (msg != null) {
+                messages.add(msg);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Handle status reports that are found when messages are read. Reports
+     * are saved to the memory when modem indicates them with +CDSI. They
+     * are not delivered as received messages.
+     * 
+     * @param reports
+     *            Status reports by memory index.
+     */
+    private void handleStoredReports(
+            final Map<Integer, GXSMSDeliveryReport> reports) {
+        if (!deliveryReportsEnabled) {
+            // Reports are left to the memory.
+            return;
+        }
+        for (Map.Entry<Integer, GXSMSDeliveryReport> it : reports
+                .entrySet()) {
+            handleReport(it.getValue());
+            deleteMessage(it.getKey());
+        }
+    }
+
+    /**
+     * Update occupied index from AT+CMGR reply.
+     * 
+     * @param index
+     *            Memory index.
+     * @param reply
+     *            Reply from the modem.
+     */
+    private void updateSlot(final int index, final String reply) {
+        if (reply.startsWith("+CMGR:")) {
+            slots.set(memory, index);
+        } else if (!reply.equals("")) {
+            // Index is empty or invalid. Nothing is learned on timeout.
+            slots.clear(memory, index);
+        }
+    }
+
+    /**
+     * Get memory type of the storage that the modem indicates.
+     * 
+     * @param name
+     *            Storage name, for example "SM".
+     * @return Memory type.
+     */
+    private MemoryType getSlotMemory(final String name) {
+        // Messages are read from the default storage.
+        if (memory == MemoryType.UNKNOWN) {
+            return memory;
+        }
+        return GXSMSSlotCache.getMemory(name, memory);
+    }
+
     /**
      * Returns used and maximum SMS capacity.
      * 
      * @return SMS memory info class where information is filled.
      */
     public final GXSMSMemoryInfo getMemoryCapacity() {
-        final int expectedArraySize = 9;
         synchronized (baseLock) {
-            String reply = sendCommand("AT+CPMS?\r", false);
-            // for read/delete", "for write/send" , "for receive
-            // "SM": SIM message store
-            // "ME": ME message store
-            // "MT": any of the storages associated with ME
-            if (reply.startsWith("ERROR:")) {
-                return null;
-            }
-            int ret = reply.lastIndexOf("\"SM\",");
-            if (ret == -1) {
-                throw new RuntimeException("ReadSMSCapacity failed.");
+            GXSMSMemoryInfo info =
+                    parseMemoryInfo(sendCommand("AT+CPMS?\r", false));
+            if (info != null) {
+                // Occupied indexes are scanned again on mismatch.
+                slots.check(memory, info.getCount());
             }
-            String[] results = reply.split(",");
-            if (results.length != expectedArraySize) {
-                throw new RuntimeException("ReadSMSCapacity failed.");
-            }
-            GXSMSMemoryInfo info = new GXSMSMemoryInfo();
-            info.setCount(Integer.parseInt(results[1]));
-            info.setMaximum(Integer.parseInt(results[2]));
             return info;
         }
     }
 
+    /**
+     * Parse AT+CPMS? reply.
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Memory info or null, if the modem returned an error.
+     */
+    static GXSMSMemoryInfo parseMemoryInfo(final String reply) {
+        final int expectedArraySize = 9;
+        // for read/delete", "for write/send" , "for receive
+        // "SM": SIM message store
+        // "ME": ME message store
+        // "MT": any of the storages associated with ME
+        if (reply.startsWith("ERROR:")) {
+            return null;
+        }
+        int ret = reply.lastIndexOf("\"SM\",");
+        if (ret == -1) {
+            throw new RuntimeException("ReadSMSCapacity failed.");
+        }
+        String[] results = reply.split(",");
+        if (results.length != expectedArraySize) {
+            throw new RuntimeException("ReadSMSCapacity failed.");
+        }
+        GXSMSMemoryInfo info = new GXSMSMemoryInfo();
+        info.setCount(Integer.parseInt(results[1]));
+        info.setMaximum(Integer.parseInt(results[2]));
+        return info;
+    }
+
     /**
      * Returns network state.
      * 
+     * If notifications are used, modem indicates network state changes and
+     * the modem is asked only once.
+     * 
      * @return Network state.
      */
     public final NetworkState getNetworkState() {
+        NetworkState state = networkState;
+        if (state != null && networkNotificationsEnabled) {
+            return state;
+        }
         synchronized (baseLock) {
-            String reply = sendCommand("AT+CREG=?\r", false);
-            if (reply.startsWith("ERROR")) {
+            if (!isSupported(GXSMSCapabilities.NETWORK_STATE,
+                    "AT+CREG=?\r")) {
                 return NetworkState.DENIED;
             }
-            reply = sendCommand("AT+CREG?\r", false);
-            if (reply.startsWith("ERROR:")) {
-                throw new RuntimeException(
-                        "GetNetworkState failed:\r\n" + getError(reply));
+            state = parseNetworkState(sendCommand("AT+CREG?\r", false));
+            if (networkNotificationsEnabled) {
+                networkState = state;
             }
+            return state;
+        }
+    }
 
-            int ret = reply.lastIndexOf("+CREG:");
-            if (ret == -1) {
-                throw new RuntimeException("GetNetworkState failed.");
-            }
-            String[] results = reply.split(",|:");
-            // CHECKSTYLE:OFF
-            if (results.length != 3) {
-                throw new RuntimeException("GetSignalQuality failed.");
-            }
-            // CHECKSTYLE:ON
-            return NetworkState.forValue(Integer.parseInt(results[2]));
+    /**
+     * Parse AT+CREG? reply.
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Network state.
+     */
+    static NetworkState parseNetworkState(final String reply) {
+        final int expectedArraySize = 3;
+        if (reply.startsWith("ERROR:")) {
+            throw new RuntimeException(
+                    "GetNetworkState failed:\r\n" + getError(reply));
+        }
+        int ret = reply.lastIndexOf("+CREG:");
+        if (ret == -1) {
+            throw new RuntimeException("GetNetworkState failed.");
+        }
+        String[] results = reply.split(",|:");
+        if (results.length != expectedArraySize) {
+            throw new RuntimeException("GetNetworkState failed.");
         }
+        return NetworkState.forValue(Integer.parseInt(results[2].trim()));
     }
 
     /**
@@ -1916,32 +4429,41 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      * @return Signal quality information.
      */
     public final GXSMSSignalQualityInfo getSignalQuality() {
-        final int expectedArraySize = 3;
-        GXSMSSignalQualityInfo info = new GXSMSSignalQualityInfo();
         synchronized (baseLock) {
             // If modem don't support this.
-            String reply = sendCommand("AT+CSQ=?\r", false);
-            if (reply.startsWith("ERROR")) {
-                return info;
-            }
-            reply = sendCommand("AT+CSQ\r", false);
-            if (reply.contains("ERROR:")) {
-                throw new RuntimeException(
-                        "GetSignalQuality failed:\r\n" + getError(reply));
+            if (!isSupported(GXSMSCapabilities.SIGNAL_QUALITY,
+                    "AT+CSQ=?\r")) {
+                return new GXSMSSignalQualityInfo();
             }
+            return parseSignalQuality(sendCommand("AT+CSQ\r", false));
+        }
+    }
 
-            int ret = reply.lastIndexOf("CSQ:");
-            if (ret == -1) {
-                throw new RuntimeException("GetSignalQuality failed.");
-            }
-            String[] results = reply.split(",|:");
-            if (results.length != expectedArraySize) {
-                throw new RuntimeException("GetSignalQuality failed.");
-            }
-            info.setRssi(Integer.parseInt(results[1].trim()));
-            info.setBer(Integer.parseInt(results[2].trim()));
-            return info;
+    /**
+     * Parse AT+CSQ reply.
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Signal quality information.
+     */
+    static GXSMSSignalQualityInfo parseSignalQuality(final String reply) {
+        final int expectedArraySize = 3;
+        if (reply.contains("ERROR:")) {
+            throw new RuntimeException(
+                    "GetSignalQuality failed:\r\n" + getError(reply));
         }
+        int ret = reply.lastIndexOf("CSQ:");
+        if (ret == -1) {
+            throw new RuntimeException("GetSignalQuality failed.");
+        }
+        String[] results = reply.split(",|:");
+        if (results.length != expectedArraySize) {
+            throw new RuntimeException("GetSignalQuality failed.");
+        }
+        GXSMSSignalQualityInfo info = new GXSMSSignalQualityInfo();
+        info.setRssi(Integer.parseInt(results[1].trim()));
+        info.setBer(Integer.parseInt(results[2].trim()));
+        return info;
     }
 
     /**
@@ -1951,32 +4473,41 @@ public class GXSMS implements IGXMedia, AutoCloseable {
      *         are filled. Null is returned if
      */
     public final GXSMSBatteryInfo getBatteryCharge() {
-        final int expectedArraySize = 4;
-        GXSMSBatteryInfo info = new GXSMSBatteryInfo();
         synchronized (baseLock) {
             // If modem don't support this.
-            String reply = sendCommand("AT^SBC=?\r", false);
-            if (reply.startsWith("ERROR")) {
-                return info;
-            }
-            reply = sendCommand("AT^SBC?\r", false);
-            if (reply.equals("")) {
-                throw new RuntimeException("GetBatteryCharge failed.");
+            if (!isSupported(GXSMSCapabilities.BATTERY_CHARGE,
+                    "AT^SBC=?\r")) {
+                return new GXSMSBatteryInfo();
             }
+            return parseBatteryCharge(sendCommand("AT^SBC?\r", false));
+        }
+    }
 
-            int ret = reply.lastIndexOf("SBC:");
-            if (ret == -1) {
-                throw new RuntimeException("GetBatteryCharge failed.");
-            }
-            String[] results = reply.split(",|:");
-            if (results.length != expectedArraySize) {
-                throw new RuntimeException("GetBatteryCharge failed.");
-            }
-            // CHECKSTYLE:OFF
-            info.setBatteryCapacity(Integer.parseInt(results[2]));
-            info.setAveragePowerConsumption(Integer.parseInt(results[3]));
-            // CHECKSTYLE:ON
+    /**
+     * Parse AT^SBC? reply.
+     * 
+     * @param reply
+     *            Reply from the modem.
+     * @return Battery capacity and average power consumption.
+     */
+    static GXSMSBatteryInfo parseBatteryCharge(final String reply) {
+        final int expectedArraySize = 4;
+        if (reply.equals("")) {
+            throw new RuntimeException("GetBatteryCharge failed.");
+        }
+        int ret = reply.lastIndexOf("SBC:");
+        if (ret == -1) {
+            throw new RuntimeException("GetBatteryCharge failed.");
         }
+        String[] results = reply.split(",|:");
+        if (results.length != expectedArraySize) {
+            throw new RuntimeException("GetBatteryCharge failed.");
+        }
+        GXSMSBatteryInfo info = new GXSMSBatteryInfo();
+        // CHECKSTYLE:OFF
+        info.setBatteryCapacity(Integer.parseInt(results[2].trim()));
+        info.setAveragePowerConsumption(Integer.parseInt(results[3].trim()));
+        // CHECKSTYLE:ON
         return info;
     }
 
@@ -2058,10 +4589,12 @@ public class GXSMS implements IGXMedia, AutoCloseable {
     }
 
     /**
-     * Resets sent and received message counters.
+     * Resets sent and received message counters and send latencies.
      */
     public final void resetMessageCounters() {
         setMessagesReceived(0);
         setMessagesSent(0);
+        directLatency.reset();
+        storeAndForwardLatency.reset();
     }
 }
\ No newline at end of file
@@ -0,0 +1,541 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Capabilities of one modem model.
+ * 
+ * Capabilities are learned when modem is used for the first time and they
+ * are used to skip the probe commands later. Profiles are identified by IMEI
+ * and model (AT+CGSN and AT+CGMM). Profiles are kept in memory and they can
+ * be saved to a properties file so they are available after restart. Each
+ * file has its own profiles. Working baud rates are kept by port name,
+ * because modem is identified only after it answers.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSCapabilities {
+    /**
+     * Error reporting mode (AT+CMEE).
+     */
+    static final String ERROR_MODE = "cmee";
+
+    /**
+     * Is PIN code supported (AT+CPIN).
+     */
+    static final String PIN = "cpin";
+
+    /**
+     * Is direct sending supported (AT+CMGS).
+     */
+    static final String DIRECT_SEND = "cmgs";
+
+    /**
+     * Is message listing supported (AT+CMGL).
+     */
+    static final String LISTING = "cmgl";
+
+    /**
+     * Is keeping radio link open supported (AT+CMMS).
+     */
+    static final String KEEP_LINK = "cmms";
+
+    /**
+     * Is network registration supported (AT+CREG).
+     */
+    static final String NETWORK_STATE = "creg";
+
+    /**
+     * Is signal quality supported (AT+CSQ).
+     */
+    static final String SIGNAL_QUALITY = "csq";
+
+    /**
+     * Is battery charge supported (AT^SBC).
+     */
+    static final String BATTERY_CHARGE = "sbc";
+
+    /**
+     * Supported delete flags of AT+CMGD as a bit mask.
+     */
+    static final String DELETE_FLAGS = "cmgd";
+
+    /**
+     * Prefix of the modem profiles in the file.
+     */
+    private static final String MODEM_PREFIX = "modem.";
+
+    /**
+     * Prefix of the port mappings in the file.
+     */
+    private static final String PORT_PREFIX = "port.";
+
+    /**
+     * Prefix of the working baud rates in the file.
+     */
+    private static final String BAUD_RATE_PREFIX = "baudrate.";
+
+    /**
+     * Loaded profiles by file name. Profiles that are not saved are kept
+     * with null file name.
+     */
+    private static final Map<String, Store> STORES =
+            new HashMap<String, Store>();
+
+    /**
+     * Profiles of one file.
+     */
+    private static final class Store {
+        /**
+         * Known profiles by modem key.
+         */
+        private final Map<String, GXSMSCapabilities> profiles =
+                new HashMap<String, GXSMSCapabilities>();
+
+        /**
+         * Modem key of the last modem by port name.
+         */
+        private final Map<String, String> ports =
+                new HashMap<String, String>();
+
+        /**
+         * Working baud rate by port name.
+         */
+        private final Map<String, Integer> baudRates =
+                new HashMap<String, Integer>();
+
+        /**
+         * Are profiles changed after they are saved.
+         */
+        private boolean modified;
+    }
+
+    /**
+     * Profiles where the capabilities belong.
+     */
+    private final Store store;
+
+    /**
+     * Modem key.
+     */
+    private final String key;
+
+    /**
+     * Learned values by capability name.
+     */
+    private final Map<String, String> values = new HashMap<String, String>();
+
+    /**
+     * Constructor.
+     * 
+     * @param storeValue
+     *            Profiles where the capabilities belong.
+     * @param modemKey
+     *            Modem key.
+     */
+    private GXSMSCapabilities(final Store storeValue, final String modemKey) {
+        store = storeValue;
+        key = modemKey;
+    }
+
+    /**
+     * Get modem key.
+     * 
+     * @param imei
+     *            IMEI of the modem.
+     * @param model
+     *            Model of the modem.
+     * @return Modem key.
+     */
+    static String getKey(final String imei, final String model) {
+        return imei + "/" + model;
+    }
+
+    /**
+     * Get capabilities of the modem. Empty profile is returned if modem is
+     * not known.
+     * 
+     * @param file
+     *            Properties file where profiles are saved or null.
+     * @param modemKey
+     *            Modem key.
+     * @return Capabilities.
+     */
+    static GXSMSCapabilities get(final String file, final String modemKey) {
+        Store tmp = getStore(file);
+        synchronized (tmp) {
+            GXSMSCapabilities caps = tmp.profiles.get(modemKey);
+            if (caps == null) {
+                caps = new GXSMSCapabilities(tmp, modemKey);
+                tmp.profiles.put(modemKey, caps);
+            }
+            return caps;
+        }
+    }
+
+    /**
+     * Is the modem of the port known.
+     * 
+     * @param file
+     *            Properties file where profiles are saved or null.
+     * @param port
+     *            Port name.
+     * @return True, if modem has been used with the port before.
+     */
+    static boolean isKnownPort(final String file, final String port) {
+        Store tmp = getStore(file);
+        synchronized (tmp) {
+            return tmp.ports.containsKey(String.valueOf(port));
+        }
+    }
+
+    /**
+     * Set modem of the port.
+     * 
+     * @param port
+     *            Port name.
+     */
+    void setPort(final String port) {
+        synchronized (store) {
+            if (!key.equals(store.ports.put(String.valueOf(port), key))) {
+                store.modified = true;
+            }
+        }
+    }
+
+    /**
+     * Get working baud rate of the port.
+     * 
+     * @param file
+     *            Properties file where profiles are saved or null.
+     * @param port
+     *            Port name.
+     * @return Baud rate or zero if it's not known.
+     */
+    static int getBaudRate(final String file, final String port) {
+        Store tmp = getStore(file);
+        synchronized (tmp) {
+            Integer value = tmp.baudRates.get(String.valueOf(port));
+            if (value == null) {
+                return 0;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Set working baud rate of the port.
+     * 
+     * @param file
+     *            Properties file where profiles are saved or null.
+     * @param port
+     *            Port name.
+     * @param value
+     *            Baud rate or zero if it's not known anymore.
+     */
+    static void setBaudRate(final String file, final String port,
+            final int value) {
+        Store tmp = getStore(file);
+        synchronized (tmp) {
+            Integer old;
+            if (value == 0) {
+                old = tmp.baudRates.remove(String.valueOf(port));
+            } else {
+                old = tmp.baudRates.put(String.valueOf(port), value);
+            }
+            int previous = 0;
+            if (old != null) {
+                previous = old;
+            }
+            if (previous != value) {
+                tmp.modified = true;
+            }
+        }
+    }
+
+    /**
+     * Is capability supported.
+     * 
+     * @param name
+     *            Capability name.
+     * @return True or false if capability is known, otherwise null.
+     */
+    Boolean isSupported(final String name) {
+        String value;
+        synchronized (store) {
+            value = values.get(name);
+        }
+        if (value == null) {
+            return null;
+        }
+        return Boolean.valueOf(value);
+    }
+
+    /**
+     * Set is capability supported.
+     * 
+     * @param name
+     *            Capability name.
+     * @param value
+     *            Is capability supported.
+     */
+    void setSupported(final String name, final boolean value) {
+        set(name, String.valueOf(value));
+    }
+
+    /**
+     * Get error reporting mode.
+     * 
+     * @return Error reporting mode or -1 if not known.
+     */
+    int getErrorMode() {
+        return getInt(ERROR_MODE);
+    }
+
+    /**
+     * Set error reporting mode.
+     * 
+     * @param value
+     *            Error reporting mode. 0 if error reporting is not supported.
+     */
+    void setErrorMode(final int value) {
+        set(ERROR_MODE, String.valueOf(value));
+    }
+
+    /**
+     * Get supported delete flags of AT+CMGD.
+     * 
+     * @return Delete flags as a bit mask or -1 if not known.
+     */
+    int getDeleteFlags() {
+        return getInt(DELETE_FLAGS);
+    }
+
+    /**
+     * Set supported delete flags of AT+CMGD.
+     * 
+     * @param value
+     *            Delete flags as a bit mask. Bit n is set if flag n is
+     *            supported.
+     */
+    void setDeleteFlags(final int value) {
+        set(DELETE_FLAGS, String.valueOf(value));
+    }
+
+    /**
+     * Get learned integer value.
+     * 
+     * @param name
+     *            Capability name.
+     * @return Learned value or -1 if not known.
+     */
+    private int getInt(final String name) {
+        String value;
+        synchronized (store) {
+            value = values.get(name);
+        }
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            // Value is learned again.
+            return -1;
+        }
+    }
+
+    /**
+     * Set learned value.
+     * 
+     * @param name
+     *            Capability name.
+     * @param value
+     *            Learned value.
+     */
+    private void set(final String name, final String value) {
+        synchronized (store) {
+            if (!value.equals(values.put(name, value))) {
+                store.modified = true;
+            }
+        }
+    }
+
+    /**
+     * Get profiles of the file. Profiles are loaded from the file when they
+     * are used for the first time.
+     * 
+     * @param file
+     *            Properties file or null.
+     * @return Profiles of the file.
+     */
+    private static Store getStore(final String file) {
+        synchronized (STORES) {
+            Store tmp = STORES.get(file);
+            if (tmp == null) {
+                tmp = new Store();
+                if (file != null) {
+                    load(file, tmp);
+                }
+                STORES.put(file, tmp);
+            }
+            return tmp;
+        }
+    }
+
+    /**
+     * Load profiles from the file.
+     * 
+     * @param file
+     *            Properties file.
+     * @param target
+     *            Profiles where loaded values are added.
+     */
+    private static void load(final String file, final Store target) {
+        if (!new File(file).exists()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new java.io.FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException ex) {
+            // Profiles are learned again.
+            return;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if (name.startsWith(PORT_PREFIX)) {
+                target.ports.put(name.substring(PORT_PREFIX.length()), value);
+            } else if (name.startsWith(BAUD_RATE_PREFIX)) {
+                try {
+                    target.baudRates.put(
+                            name.substring(BAUD_RATE_PREFIX.length()),
+                            Integer.valueOf(value));
+                } catch (NumberFormatException ex) {
+                    // Baud rate is negotiated again.
+                }
+            } else if (name.startsWith(MODEM_PREFIX)) {
+                int pos = name.lastIndexOf('.');
+                String modemKey = name.substring(MODEM_PREFIX.length(), pos);
+                GXSMSCapabilities caps = target.profiles.get(modemKey);
+                if (caps == null) {
+                    caps = new GXSMSCapabilities(target, modemKey);
+                    target.profiles.put(modemKey, caps);
+                }
+                caps.values.put(name.substring(pos + 1), value);
+            }
+        }
+    }
+
+    /**
+     * Save profiles of the file if they are changed.
+     * 
+     * @param file
+     *            Properties file or null.
+     */
+    static void save(final String file) {
+        if (file == null) {
+            return;
+        }
+        Store tmp = getStore(file);
+        // Profiles are written under the lock, so a concurrent change is
+        // either saved now or it marks the profiles modified again.
+        synchronized (tmp) {
+            if (!tmp.modified) {
+                return;
+            }
+            Properties properties = new Properties();
+            for (Map.Entry<String, String> it : tmp.ports.entrySet()) {
+                properties.setProperty(PORT_PREFIX + it.getKey(),
+                        it.getValue());
+            }
+            for (Map.Entry<String, Integer> it : tmp.baudRates.entrySet()) {
+                properties.setProperty(BAUD_RATE_PREFIX + it.getKey(),
+                        String.valueOf(it.getValue()));
+            }
+            for (GXSMSCapabilities caps : tmp.profiles.values()) {
+                for (Map.Entry<String, String> it : caps.values.entrySet()) {
+                    properties.setProperty(MODEM_PREFIX + caps.key + "."
+                            + it.getKey(), it.getValue());
+                }
+            }
+            write(new File(file).getAbsoluteFile(), properties);
+            tmp.modified = false;
+        }
+    }
+
+    /**
+     * Write properties to the file. File is replaced at once, so it's never
+     * partially written.
+     * 
+     * @param target
+     *            Properties file.
+     * @param properties
+     *            Saved properties.
+     */
+    private static void write(final File target,
+            final Properties properties) {
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("gxsms", ".tmp",
+                    target.getParentFile());
+            try (OutputStream out = new java.io.FileOutputStream(tmp)) {
+                properties.store(out, "GXSMS modem capabilities");
+            }
+            Files.move(tmp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Failed to save modem capabilities. " + ex.getMessage());
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+}
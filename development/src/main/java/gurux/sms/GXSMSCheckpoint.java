@@ -0,0 +1,262 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Checkpoint of the processed received messages.
+ * 
+ * PDU hashes of the processed messages are appended to the file, so a
+ * message is not delivered again after restart even if it was not deleted
+ * from the modem. Only the latest hashes are kept. When the file holds
+ * twice as many hashes, it's rewritten with the latest ones.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSCheckpoint {
+    /**
+     * Default amount of remembered hashes.
+     */
+    static final int DEFAULT_CAPACITY = 65536;
+
+    /**
+     * Size of one hash in bytes.
+     */
+    private static final int HASH_SIZE = 8;
+
+    /**
+     * Checkpoint file.
+     */
+    private final File file;
+
+    /**
+     * Amount of remembered hashes.
+     */
+    private final int capacity;
+
+    /**
+     * Processed hashes in processed order.
+     */
+    private final Set<Long> hashes = new LinkedHashSet<Long>();
+
+    /**
+     * Opened file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Amount of hashes in the file.
+     */
+    private long written;
+
+    /**
+     * Constructor.
+     * 
+     * @param name
+     *            Checkpoint file.
+     * @param size
+     *            Amount of remembered hashes.
+     */
+    GXSMSCheckpoint(final String name, final int size) {
+        file = new File(name);
+        capacity = size;
+    }
+
+    /**
+     * Open checkpoint and read processed hashes.
+     */
+    synchronized void open() {
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            // Partially written hash is dropped.
+            long size = channel.size() - channel.size() % HASH_SIZE;
+            channel.truncate(size);
+            ByteBuffer bb = ByteBuffer.allocate((int) size);
+            while (bb.hasRemaining()) {
+                if (channel.read(bb, bb.position()) == -1) {
+                    break;
+                }
+            }
+            bb.flip();
+            while (bb.hasRemaining()) {
+                add(bb.getLong());
+            }
+            written = size / HASH_SIZE;
+        } catch (IOException ex) {
+            close();
+            throw new RuntimeException(
+                    "Failed to open the checkpoint. " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Close checkpoint.
+     */
+    synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // Ignore all errors on close.
+            }
+            channel = null;
+        }
+        hashes.clear();
+    }
+
+    /**
+     * Is message already processed.
+     * 
+     * @param hash
+     *            PDU hash.
+     * @return True, if message is processed.
+     */
+    synchronized boolean contains(final long hash) {
+        return hashes.contains(hash);
+    }
+
+    /**
+     * Message is processed. Hash is written to the file, but it's flushed
+     * to the disk only in {@link #flush()}.
+     * 
+     * @param hash
+     *            PDU hash.
+     */
+    synchronized void processed(final long hash) {
+        if (channel == null || hashes.contains(hash)) {
+            return;
+        }
+        add(hash);
+        try {
+            if (written >= 2L * capacity) {
+                compact();
+            } else {
+                ByteBuffer bb = ByteBuffer.allocate(HASH_SIZE);
+                bb.putLong(hash);
+                bb.flip();
+                channel.write(bb, written * HASH_SIZE);
+                ++written;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Failed to write the checkpoint. " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Flush processed hashes to the disk.
+     */
+    synchronized void flush() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+            } catch (IOException ex) {
+                throw new RuntimeException(
+                        "Failed to flush the checkpoint. " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remember hash and forget the oldest hash if capacity is exceeded.
+     * 
+     * @param hash
+     *            PDU hash.
+     */
+    private void add(final long hash) {
+        // Hash is moved to the end.
+        hashes.remove(hash);
+        hashes.add(hash);
+        if (hashes.size() > capacity) {
+            Iterator<Long> it = hashes.iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Rewrite the file with the remembered hashes. File is replaced at once
+     * so it's never partially written.
+     * 
+     * @throws IOException
+     *             Writing failed.
+     */
+    private void compact() throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(HASH_SIZE * hashes.size());
+        for (long it : hashes) {
+            bb.putLong(it);
+        }
+        bb.flip();
+        File tmp = File.createTempFile("gxsms", ".tmp",
+                file.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel out = FileChannel.open(tmp.toPath(),
+                    StandardOpenOption.WRITE)) {
+                while (bb.hasRemaining()) {
+                    out.write(bb);
+                }
+                out.force(false);
+            }
+            channel.close();
+            channel = null;
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                written = hashes.size();
+            } finally {
+                // Old file is used if it was not replaced.
+                channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } finally {
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * SMS status report that tells is the sent message delivered.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSDeliveryReport {
+    /**
+     * Status values below this are completed transactions.
+     */
+    static final int TEMPORARY_ERROR = 0x20;
+
+    /**
+     * Status values from this are errors where SC has stopped trying.
+     */
+    static final int PERMANENT_ERROR = 0x40;
+
+    /**
+     * Message reference of the sent message.
+     */
+    private int reference;
+
+    /**
+     * Recipient phone number.
+     */
+    private String recipient;
+
+    /**
+     * Time when service center received the message.
+     */
+    private java.util.Date serviceCenterTime;
+
+    /**
+     * Time when message was delivered or delivery failed.
+     */
+    private java.util.Date dischargeTime;
+
+    /**
+     * Status of the message (TP-ST).
+     */
+    private int status;
+
+    /**
+     * Sent message.
+     */
+    private GXSMSMessage message;
+
+    /**
+     * Time in milliseconds from send to the status report.
+     */
+    private long latency;
+
+    /**
+     * Constructor.
+     */
+    GXSMSDeliveryReport() {
+
+    }
+
+    /**
+     * Get message reference of the sent message.
+     * 
+     * @return Message reference.
+     */
+    public final int getReference() {
+        return reference;
+    }
+
+    /**
+     * Set message reference of the sent message.
+     * 
+     * @param value
+     *            Message reference.
+     */
+    final void setReference(final int value) {
+        reference = value;
+    }
+
+    /**
+     * Get recipient phone number.
+     * 
+     * @return Recipient phone number.
+     */
+    public final String getRecipient() {
+        return recipient;
+    }
+
+    /**
+     * Set recipient phone number.
+     * 
+     * @param value
+     *            Recipient phone number.
+     */
+    final void setRecipient(final String value) {
+        recipient = value;
+    }
+
+    /**
+     * Get time when service center received the message.
+     * 
+     * @return Service center time stamp.
+     */
+    public final java.util.Date getServiceCenterTime() {
+        return serviceCenterTime;
+    }
+
+    /**
+     * Set time when service center received the message.
+     * 
+     * @param value
+     *            Service center time stamp.
+     */
+    final void setServiceCenterTime(final java.util.Date value) {
+        serviceCenterTime = value;
+    }
+
+    /**
+     * Get time when message was delivered or delivery failed.
+     * 
+     * @return Discharge time.
+     */
+    public final java.util.Date getDischargeTime() {
+        return dischargeTime;
+    }
+
+    /**
+     * Set time when message was delivered or delivery failed.
+     * 
+     * @param value
+     *            Discharge time.
+     */
+    final void setDischargeTime(final java.util.Date value) {
+        dischargeTime = value;
+    }
+
+    /**
+     * Get status of the message as defined in 3GPP TS 23.040 (TP-ST).
+     * 
+     * @return Status.
+     */
+    public final int getStatus() {
+        return status;
+    }
+
+    /**
+     * Set status of the message.
+     * 
+     * @param value
+     *            Status.
+     */
+    final void setStatus(final int value) {
+        status = value;
+    }
+
+    /**
+     * Is message delivered to the recipient.
+     * 
+     * @return True, if message is delivered.
+     */
+    public final boolean isDelivered() {
+        return status < TEMPORARY_ERROR;
+    }
+
+    /**
+     * Is this the final status of the message. Service center is still trying
+     * to deliver the message if the status is not final.
+     * 
+     * @return True, if the status is final.
+     */
+    public final boolean isFinal() {
+        return status < TEMPORARY_ERROR || status >= PERMANENT_ERROR;
+    }
+
+    /**
+     * Get sent message.
+     * 
+     * @return Sent message or null, if report is not for the tracked message.
+     */
+    public final GXSMSMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * Set sent message.
+     * 
+     * @param value
+     *            Sent message.
+     */
+    final void setMessage(final GXSMSMessage value) {
+        message = value;
+    }
+
+    /**
+     * Get time from send to the status report.
+     * 
+     * @return Latency in milliseconds.
+     */
+    public final long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Set time from send to the status report.
+     * 
+     * @param value
+     *            Latency in milliseconds.
+     */
+    final void setLatency(final long value) {
+        latency = value;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(reference).append(' ').append(recipient).append(' ');
+        if (isDelivered()) {
+            sb.append("Delivered");
+        } else if (isFinal()) {
+            sb.append("Failed ").append(status);
+        } else {
+            sb.append("Pending ").append(status);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,345 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class correlates received status reports to the sent messages.
+ * 
+ * Messages are indexed by the message reference (TP-MR) that modem returns
+ * when message is sent. Message reference is 8 bits so the index never holds
+ * more than 256 references. If modem reuses a reference before the report of
+ * the earlier message is received, the earlier message is dropped. Messages
+ * are also dropped when the report is not received in time.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSDeliveryTracker {
+    /**
+     * Default time out in seconds.
+     */
+    static final int DEFAULT_TIMEOUT = 86400;
+
+    /**
+     * Sent messages by message reference in sent order.
+     */
+    private final Map<Integer, Entry> messages =
+            new LinkedHashMap<Integer, Entry>();
+
+    /**
+     * Futures of the messages that are not sent yet.
+     */
+    private final Map<GXSMSMessage,
+            CompletableFuture<GXSMSDeliveryReport>> expected =
+                    new IdentityHashMap<GXSMSMessage,
+                            CompletableFuture<GXSMSDeliveryReport>>();
+
+    /**
+     * Time out in seconds.
+     */
+    private int timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Sent message that waits status reports.
+     */
+    private static final class Entry {
+        /**
+         * Sent message.
+         */
+        private final GXSMSMessage message;
+        /**
+         * Completed when final status is received. Null if not used.
+         */
+        private final CompletableFuture<GXSMSDeliveryReport> future;
+        /**
+         * Message references of the segments.
+         */
+        private final int[] references;
+        /**
+         * When message was sent in nanoseconds.
+         */
+        private final long started;
+        /**
+         * Amount of segments without final status.
+         */
+        private int remaining;
+
+        /**
+         * Constructor.
+         * 
+         * @param msg
+         *            Sent message.
+         * @param value
+         *            Completed when final status is received.
+         * @param refs
+         *            Message references of the segments.
+         * @param start
+         *            When message was sent in nanoseconds.
+         */
+        Entry(final GXSMSMessage msg,
+                final CompletableFuture<GXSMSDeliveryReport> value,
+                final int[] refs, final long start) {
+            message = msg;
+            future = value;
+            references = refs;
+            started = start;
+            remaining = refs.length;
+        }
+    }
+
+    /**
+     * Get time out in seconds.
+     * 
+     * @return Time out in seconds.
+     */
+    synchronized int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set time out in seconds.
+     * 
+     * @param value
+     *            Time out in seconds.
+     */
+    synchronized void setTimeout(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid time out.");
+        }
+        timeout = value;
+    }
+
+    /**
+     * Get amount of messages that wait status report.
+     * 
+     * @return Amount of messages.
+     */
+    synchronized int getCount() {
+        List<Entry> tmp = new ArrayList<Entry>();
+        for (Entry it : messages.values()) {
+            if (!tmp.contains(it)) {
+                tmp.add(it);
+            }
+        }
+        return tmp.size();
+    }
+
+    /**
+     * Add future that is completed when status report of the message is
+     * received.
+     * 
+     * @param msg
+     *            Message to send.
+     * @param future
+     *            Completed when final status is received.
+     */
+    synchronized void expect(final GXSMSMessage msg,
+            final CompletableFuture<GXSMSDeliveryReport> future) {
+        expected.put(msg, future);
+    }
+
+    /**
+     * Status report of the message is not expected anymore.
+     * 
+     * @param msg
+     *            Message that was not sent.
+     * @return Future of the message or null, if status report was not
+     *         expected.
+     */
+    synchronized CompletableFuture<GXSMSDeliveryReport> remove(
+            final GXSMSMessage msg) {
+        return expected.remove(msg);
+    }
+
+    /**
+     * Add sent message.
+     * 
+     * @param msg
+     *            Sent message.
+     * @param references
+     *            Message references of the segments.
+     * @param start
+     *            When sending was started in nanoseconds.
+     */
+    void add(final GXSMSMessage msg, final int[] references,
+            final long start) {
+        List<Entry> dropped = new ArrayList<Entry>();
+        synchronized (this) {
+            Entry entry =
+                    new Entry(msg, expected.remove(msg), references, start);
+            for (int it : references) {
+                // Reference is moved to the end so map stays in sent order.
+                Entry old = messages.remove(it);
+                messages.put(it, entry);
+                if (old != null && old != entry) {
+                    // Reference is reused. Report of the old message is
+                    // not received anymore.
+                    removeEntry(old);
+                    dropped.add(old);
+                }
+            }
+        }
+        for (Entry it : dropped) {
+            fail(it, new TimeoutException(
+                    "Message reference is reused before status report."));
+        }
+    }
+
+    /**
+     * Handle received status report.
+     * 
+     * @param report
+     *            Received status report.
+     * @return Final report of the sent message or null, if message is not
+     *         completed.
+     */
+    GXSMSDeliveryReport handle(final GXSMSDeliveryReport report) {
+        Entry entry;
+        synchronized (this) {
+            entry = messages.get(report.getReference());
+            if (entry == null) {
+                return null;
+            }
+            if (!report.isFinal()) {
+                // Service centre is still trying.
+                return null;
+            }
+            messages.remove(report.getReference());
+            --entry.remaining;
+            // Message is completed when all segments are delivered or when
+            // one segment has failed.
+            if (report.isDelivered() && entry.remaining != 0) {
+                return null;
+            }
+            removeEntry(entry);
+        }
+        report.setMessage(entry.message);
+        report.setLatency(
+                (System.nanoTime() - entry.started) / 1000000L);
+        if (entry.future != null) {
+            entry.future.complete(report);
+        }
+        return report;
+    }
+
+    /**
+     * Drop messages whose status report is not received in time.
+     */
+    void expire() {
+        List<Entry> dropped = new ArrayList<Entry>();
+        synchronized (this) {
+            long limit = System.nanoTime() - timeout * 1000000000L;
+            Iterator<Entry> it = messages.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                // Messages are in sent order.
+                if (entry.started - limit > 0) {
+                    break;
+                }
+                it.remove();
+                if (!dropped.contains(entry)) {
+                    dropped.add(entry);
+                }
+            }
+            for (Entry entry : dropped) {
+                removeEntry(entry);
+            }
+        }
+        for (Entry it : dropped) {
+            fail(it, new TimeoutException("Status report is not received."));
+        }
+    }
+
+    /**
+     * Fail all messages that wait status report.
+     * 
+     * @param ex
+     *            Reason why status report is not received.
+     */
+    void cancel(final RuntimeException ex) {
+        List<CompletableFuture<GXSMSDeliveryReport>> futures =
+                new ArrayList<CompletableFuture<GXSMSDeliveryReport>>();
+        synchronized (this) {
+            for (Entry it : messages.values()) {
+                if (it.future != null && !futures.contains(it.future)) {
+                    futures.add(it.future);
+                }
+            }
+            futures.addAll(expected.values());
+            messages.clear();
+            expected.clear();
+        }
+        for (CompletableFuture<GXSMSDeliveryReport> it : futures) {
+            it.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Remove all references of the message.
+     * 
+     * @param entry
+     *            Removed message.
+     */
+    private void removeEntry(final Entry entry) {
+        for (int it : entry.references) {
+            if (messages.get(it) == entry) {
+                messages.remove(it);
+            }
+        }
+    }
+
+    /**
+     * Fail the message.
+     * 
+     * @param entry
+     *            Failed message.
+     * @param ex
+     *            Reason.
+     */
+    private static void fail(final Entry entry, final Exception ex) {
+        if (entry.future != null) {
+            entry.future.completeExceptionally(ex);
+        }
+    }
+}
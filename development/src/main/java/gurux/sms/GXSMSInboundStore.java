@@ -0,0 +1,789 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import gurux.sms.enums.MessageCodeType;
+
+/**
+ * Append-only store of the received messages.
+ * 
+ * Each received PDU is decoded once and the decoded message is appended to
+ * a binary segment file. Messages are indexed in memory by receive time and
+ * sender, so range scans read only the matching records from the disk.
+ * Messages are also indexed by the hash of the PDU, so a message that is
+ * already stored is not decoded again when it's read from the modem.
+ * 
+ * <pre>
+ * try (GXSMSInboundStore store = new GXSMSInboundStore("inbound")) {
+ *     store.open();
+ *     media.setInboundStore(store);
+ *     ...
+ *     store.scan("+358401234567", from, to, msg -&gt; handle(msg));
+ * }
+ * </pre>
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSInboundStore implements AutoCloseable {
+    /**
+     * Default segment size in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Size of length and CRC.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Extension of the segment files.
+     */
+    private static final String EXTENSION = ".sms";
+
+    /**
+     * Store directory.
+     */
+    private final File directory;
+
+    /**
+     * Maximum segment size in bytes.
+     */
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Segments in written order. The last one is active.
+     */
+    private final List<FileChannel> segments = new ArrayList<FileChannel>();
+
+    /**
+     * Write position of the active segment.
+     */
+    private long position;
+
+    /**
+     * Amount of stored messages.
+     */
+    private int count;
+
+    /**
+     * Record positions by record number. Segment is in the high 32 bits.
+     */
+    private long[] positions = new long[0];
+
+    /**
+     * Receive time in seconds and record number of each record.
+     */
+    private final Keys byTime = new Keys();
+
+    /**
+     * Keys of each sender.
+     */
+    private final Map<String, Keys> bySender = new HashMap<String, Keys>();
+
+    /**
+     * PDU hashes. Zero is an empty slot.
+     */
+    private long[] hashes = new long[0];
+
+    /**
+     * Record numbers of the PDU hashes.
+     */
+    private int[] records = new int[0];
+
+    /**
+     * Sortable keys. Receive time in seconds is in the high 32 bits and
+     * record number in the low 32 bits.
+     */
+    private static final class Keys {
+        /**
+         * Keys.
+         */
+        private long[] values = new long[0];
+        /**
+         * Amount of keys.
+         */
+        private int size;
+        /**
+         * Are keys sorted.
+         */
+        private boolean sorted = true;
+
+        /**
+         * Add key.
+         * 
+         * @param value
+         *            Key.
+         */
+        void add(final long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(16, 2 * size));
+            }
+            if (size != 0 && values[size - 1] > value) {
+                sorted = false;
+            }
+            values[size] = value;
+            ++size;
+        }
+
+        /**
+         * Get keys in the given range.
+         * 
+         * @param from
+         *            First key.
+         * @param to
+         *            Key after the last key.
+         * @return Keys in the range.
+         */
+        long[] range(final long from, final long to) {
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            int start = Arrays.binarySearch(values, 0, size, from);
+            if (start < 0) {
+                start = -start - 1;
+            }
+            int end = Arrays.binarySearch(values, 0, size, to);
+            if (end < 0) {
+                end = -end - 1;
+            }
+            return Arrays.copyOfRange(values, start, Math.max(start, end));
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param dir
+     *            Store directory.
+     */
+    public GXSMSInboundStore(final String dir) {
+        directory = new File(dir);
+    }
+
+    /**
+     * Get maximum segment size.
+     * 
+     * @return Maximum segment size in bytes.
+     */
+    public final synchronized int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Set maximum segment size. When active segment is full, a new segment
+     * is started.
+     * 
+     * @param value
+     *            Maximum segment size in bytes.
+     */
+    public final synchronized void setSegmentSize(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid segment size.");
+        }
+        segmentSize = value;
+    }
+
+    /**
+     * Open store and build the index from the stored messages.
+     */
+    public final synchronized void open() {
+        close();
+        try {
+            if (!directory.isDirectory()) {
+                Files.createDirectories(directory.toPath());
+            }
+            File[] files = directory.listFiles(
+                    (dir, name) -> name.endsWith(EXTENSION));
+            // Names are zero padded, so they are in written order.
+            Arrays.sort(files);
+            for (File it : files) {
+                segments.add(FileChannel.open(it.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE));
+                position = load(segments.size() - 1);
+                // Partially written record is overwritten.
+                segments.get(segments.size() - 1).truncate(position);
+            }
+            if (segments.isEmpty()) {
+                addSegment();
+            }
+        } catch (IOException ex) {
+            close();
+            throw new RuntimeException(
+                    "Failed to open the inbound store. " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Is store open.
+     * 
+     * @return True, if store is open.
+     */
+    public final synchronized boolean isOpen() {
+        return !segments.isEmpty();
+    }
+
+    @Override
+    public final synchronized void close() {
+        for (FileChannel it : segments) {
+            try {
+                it.close();
+            } catch (IOException ex) {
+                // Ignore all errors on close.
+            }
+        }
+        segments.clear();
+        position = 0;
+        count = 0;
+        positions = new long[0];
+        byTime.values = new long[0];
+        byTime.size = 0;
+        byTime.sorted = true;
+        bySender.clear();
+        hashes = new long[0];
+        records = new int[0];
+    }
+
+    /**
+     * Get amount of stored messages.
+     * 
+     * @return Amount of stored messages.
+     */
+    public final synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Is PDU already stored.
+     * 
+     * @param pdu
+     *            PDU as hex string.
+     * @return True, if PDU is stored.
+     */
+    public final synchronized boolean contains(final String pdu) {
+        return find(GXSMSPdu.hash(pdu)) != -1;
+    }
+
+    /**
+     * Read messages that are received in the given time range. Messages
+     * are read from the disk one at the time in receive time order.
+     * 
+     * @param from
+     *            Start time. Inclusive.
+     * @param to
+     *            End time. Exclusive.
+     * @param consumer
+     *            Handles read messages.
+     */
+    public final void scan(final Date from, final Date to,
+            final Consumer<GXSMSMessage> consumer) {
+        scan(null, from, to, consumer);
+    }
+
+    /**
+     * Read messages of the sender that are received in the given time range.
+     * Messages are read from the disk one at the time in receive time order.
+     * 
+     * @param sender
+     *            Sender phone number or null for all senders.
+     * @param from
+     *            Start time. Inclusive.
+     * @param to
+     *            End time. Exclusive.
+     * @param consumer
+     *            Handles read messages.
+     */
+    public final void scan(final String sender, final Date from,
+            final Date to, final Consumer<GXSMSMessage> consumer) {
+        long[] keys;
+        long[] tmp;
+        synchronized (this) {
+            Keys index = byTime;
+            if (sender != null) {
+                index = bySender.get(sender);
+                if (index == null) {
+                    return;
+                }
+            }
+            keys = index.range(getKey(from), getKey(to));
+            // Record positions are looked up before reading.
+            tmp = new long[keys.length];
+            for (int pos = 0; pos != keys.length; ++pos) {
+                tmp[pos] = positions[(int) keys[pos]];
+            }
+        }
+        for (long it : tmp) {
+            consumer.accept(read(it));
+        }
+    }
+
+    /**
+     * Write messages of the given time range as CSV lines: receive time in
+     * UTC, sender and data. Messages are written one at the time, so the
+     * whole range is never in the memory.
+     * 
+     * @param sender
+     *            Sender phone number or null for all senders.
+     * @param from
+     *            Start time. Inclusive.
+     * @param to
+     *            End time. Exclusive.
+     * @param out
+     *            Output writer.
+     * @throws IOException
+     *             Writing failed.
+     */
+    public final void export(final String sender, final Date from,
+            final Date to, final Writer out) throws IOException {
+        SimpleDateFormat format =
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            scan(sender, from, to, msg -> {
+                try {
+                    out.write(format.format(msg.getTime()));
+                    out.write(',');
+                    out.write(quote(msg.getPhoneNumber()));
+                    out.write(',');
+                    out.write(quote(msg.getData()));
+                    out.write("\r\n");
+                } catch (IOException ex) {
+                    throw new java.io.UncheckedIOException(ex);
+                }
+            });
+        } catch (java.io.UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        out.flush();
+    }
+
+    /**
+     * Quote CSV value.
+     * 
+     * @param value
+     *            Value.
+     * @return Quoted value.
+     */
+    private static String quote(final String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Decode PDU. If PDU is already stored, stored message is used instead
+     * of decoding. Otherwise decoded received message is stored.
+     * 
+     * @param pdu
+     *            PDU as hex string.
+     * @param msg
+     *            SMS message where data is filled.
+     * @param received
+     *            Is message received. Only received messages are stored.
+     */
+    final void decode(final String pdu, final GXSMSMessage msg,
+            final boolean received) {
+        long hash = GXSMSPdu.hash(pdu);
+        long pos;
+        synchronized (this) {
+            int record = find(hash);
+            if (record == -1) {
+                pos = -1;
+            } else {
+                pos = positions[record];
+            }
+        }
+        if (pos != -1) {
+            copy(read(pos), msg);
+            msg.setHash(hash);
+            return;
+        }
+        GXSMSPdu.encode(pdu, msg);
+        if (received && !msg.getPhoneNumber().equals("")) {
+            add(hash, msg);
+        }
+    }
+
+    /**
+     * Copy stored values to the message.
+     * 
+     * @param source
+     *            Stored message.
+     * @param target
+     *            Target message.
+     */
+    private static void copy(final GXSMSMessage source,
+            final GXSMSMessage target) {
+        target.setTime(source.getTime());
+        target.setPhoneNumber(source.getPhoneNumber());
+        target.setServiceCenterNumber(source.getServiceCenterNumber());
+        target.setCodeType(source.getCodeType());
+        target.setSegmentation(source.getReference(),
+                source.getSegmentCount(), source.getSegment());
+        target.setData(source.getData());
+    }
+
+    /**
+     * Append message to the store.
+     * 
+     * @param hash
+     *            PDU hash.
+     * @param msg
+     *            Decoded message.
+     */
+    private synchronized void add(final long hash, final GXSMSMessage msg) {
+        if (segments.isEmpty() || find(hash) != -1) {
+            return;
+        }
+        byte[] phone = getBytes(msg.getPhoneNumber());
+        byte[] smsc = getBytes(msg.getServiceCenterNumber());
+        byte[] data = getBytes(msg.getData());
+        // CHECKSTYLE:OFF
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + 8 + 8 + 2
+                + phone.length + 2 + smsc.length + 1 + 4 + 4 + data.length);
+        // CHECKSTYLE:ON
+        bb.position(HEADER_SIZE);
+        bb.putLong(hash);
+        bb.putLong(msg.getTime().getTime());
+        bb.putShort((short) phone.length);
+        bb.put(phone);
+        bb.putShort((short) smsc.length);
+        bb.put(smsc);
+        bb.put((byte) msg.getCodeType().getValue());
+        bb.putShort((short) msg.getReference());
+        bb.put((byte) msg.getSegmentCount());
+        bb.put((byte) msg.getSegment());
+        bb.putInt(data.length);
+        bb.put(data);
+        CRC32 crc = new CRC32();
+        crc.update(bb.array(), HEADER_SIZE, bb.capacity() - HEADER_SIZE);
+        bb.putInt(0, bb.capacity() - HEADER_SIZE);
+        bb.putInt(4, (int) crc.getValue());
+        bb.flip();
+        try {
+            if (position != 0 && position + bb.limit() > segmentSize) {
+                addSegment();
+            }
+            FileChannel channel = segments.get(segments.size() - 1);
+            long start = position;
+            while (bb.hasRemaining()) {
+                position += channel.write(bb, position);
+            }
+            index(hash, msg.getTime().getTime(), msg.getPhoneNumber(),
+                    ((long) (segments.size() - 1) << 32) | start);
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Failed to store the message. " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Start a new segment.
+     * 
+     * @throws IOException
+     *             Segment can't be created.
+     */
+    private void addSegment() throws IOException {
+        File file = new File(directory,
+                String.format("%010d", segments.size()) + EXTENSION);
+        segments.add(FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+        position = 0;
+    }
+
+    /**
+     * Load index of the segment.
+     * 
+     * @param segment
+     *            Segment number.
+     * @return End of the valid records.
+     * @throws IOException
+     *             Reading failed.
+     */
+    private long load(final int segment) throws IOException {
+        FileChannel channel = segments.get(segment);
+        long size = channel.size();
+        long pos = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, pos);
+            int length = header.getInt(0);
+            if (length < 0 || pos + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, pos + HEADER_SIZE);
+            crc.reset();
+            crc.update(body.array());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            long hash = body.getLong(0);
+            // CHECKSTYLE:OFF
+            long time = body.getLong(8);
+            byte[] phone = new byte[body.getShort(16)];
+            body.position(18);
+            // CHECKSTYLE:ON
+            body.get(phone);
+            index(hash, time, new String(phone, StandardCharsets.UTF_8),
+                    ((long) segment << 32) | pos);
+            pos += HEADER_SIZE + length;
+        }
+        return pos;
+    }
+
+    /**
+     * Add record to the index.
+     * 
+     * @param hash
+     *            PDU hash.
+     * @param time
+     *            Receive time in milliseconds.
+     * @param sender
+     *            Sender phone number.
+     * @param pos
+     *            Record position.
+     */
+    private void index(final long hash, final long time, final String sender,
+            final long pos) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(16, 2 * count));
+        }
+        positions[count] = pos;
+        // CHECKSTYLE:OFF
+        long key = ((time / 1000) << 32) | count;
+        // CHECKSTYLE:ON
+        byTime.add(key);
+        Keys keys = bySender.get(sender);
+        if (keys == null) {
+            keys = new Keys();
+            bySender.put(sender, keys);
+        }
+        keys.add(key);
+        if (2 * (count + 1) > hashes.length) {
+            rehash(Math.max(16, 2 * hashes.length));
+        }
+        put(hash, count);
+        ++count;
+    }
+
+    /**
+     * Read stored message.
+     * 
+     * @param pos
+     *            Record position.
+     * @return Stored message.
+     */
+    private GXSMSMessage read(final long pos) {
+        FileChannel channel;
+        synchronized (this) {
+            channel = segments.get((int) (pos >>> 32));
+        }
+        long offset = pos & 0xFFFFFFFFL;
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, offset);
+            ByteBuffer bb = ByteBuffer.allocate(header.getInt(0));
+            readFully(channel, bb, offset + HEADER_SIZE);
+            bb.flip();
+            GXSMSMessage msg = new GXSMSMessage();
+            // Skip hash.
+            bb.getLong();
+            msg.setTime(new Date(bb.getLong()));
+            msg.setPhoneNumber(getString(bb, bb.getShort()));
+            String smsc = getString(bb, bb.getShort());
+            if (smsc.length() != 0) {
+                msg.setServiceCenterNumber(smsc);
+            }
+            msg.setCodeType(MessageCodeType.forValue(bb.get()));
+            int reference = bb.getShort() & 0xFFFF;
+            int segmentCount = bb.get() & 0xFF;
+            msg.setSegmentation(reference, segmentCount, bb.get() & 0xFF);
+            msg.setData(getString(bb, bb.getInt()));
+            return msg;
+        } catch (IOException ex) {
+            throw new RuntimeException(
+                    "Failed to read the message. " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Read bytes from the given position until the buffer is full.
+     * 
+     * @param channel
+     *            Segment.
+     * @param bb
+     *            Buffer.
+     * @param pos
+     *            Position.
+     * @throws IOException
+     *             Reading failed.
+     */
+    private static void readFully(final FileChannel channel,
+            final ByteBuffer bb, final long pos) throws IOException {
+        long offset = pos;
+        while (bb.hasRemaining()) {
+            int ret = channel.read(bb, offset);
+            if (ret == -1) {
+                throw new IOException("Unexpected end of the segment.");
+            }
+            offset += ret;
+        }
+    }
+
+    /**
+     * Get UTF-8 bytes of the string.
+     * 
+     * @param value
+     *            String or null.
+     * @return Bytes.
+     */
+    private static byte[] getBytes(final String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get UTF-8 string.
+     * 
+     * @param bb
+     *            Buffer.
+     * @param length
+     *            Length in bytes.
+     * @return String.
+     */
+    private static String getString(final ByteBuffer bb, final int length) {
+        byte[] tmp = new byte[length];
+        bb.get(tmp);
+        return new String(tmp, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get index key of the time.
+     * 
+     * @param value
+     *            Time.
+     * @return First key of the time.
+     */
+    private static long getKey(final Date value) {
+        // Stored times are in full seconds.
+        // CHECKSTYLE:OFF
+        return ((value.getTime() + 999) / 1000) << 32;
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Find record number of the PDU hash.
+     * 
+     * @param hash
+     *            PDU hash.
+     * @return Record number or -1 if hash is not found.
+     */
+    private int find(final long hash) {
+        if (hashes.length == 0) {
+            return -1;
+        }
+        int mask = hashes.length - 1;
+        int pos = (int) (hash ^ (hash >>> 32)) & mask;
+        while (hashes[pos] != 0) {
+            if (hashes[pos] == hash) {
+                return records[pos];
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add PDU hash.
+     * 
+     * @param hash
+     *            PDU hash.
+     * @param record
+     *            Record number.
+     */
+    private void put(final long hash, final int record) {
+        int mask = hashes.length - 1;
+        int pos = (int) (hash ^ (hash >>> 32)) & mask;
+        while (hashes[pos] != 0 && hashes[pos] != hash) {
+            pos = (pos + 1) & mask;
+        }
+        hashes[pos] = hash;
+        records[pos] = record;
+    }
+
+    /**
+     * Resize PDU hash table.
+     * 
+     * @param size
+     *            New size. Power of two.
+     */
+    private void rehash(final int size) {
+        long[] oldHashes = hashes;
+        int[] oldRecords = records;
+        hashes = new long[size];
+        records = new int[size];
+        for (int pos = 0; pos != oldHashes.length; ++pos) {
+            if (oldHashes[pos] != 0) {
+                put(oldHashes[pos], oldRecords[pos]);
+            }
+        }
+    }
+}
@@ -0,0 +1,757 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import gurux.sms.enums.MessageCodeType;
+
+/**
+ * Append-only journal of the outbound messages.
+ * 
+ * Journal is written to memory mapped segment files, so written records
+ * survive JVM crash immediately. Records are flushed to the disk with group
+ * commit: one flush covers all records that are written before it. Each
+ * message is enqueued, submitted with the message reference and completed.
+ * Messages that are not submitted are sent again when journal is opened.
+ * Submitted messages that wait status report are completed when the report
+ * is received or it's not received in time.
+ * 
+ * When active segment is full, a new segment is started and unfinished
+ * messages are copied to it. Older segments are removed after that, so
+ * journal size follows the amount of unfinished messages.
+ * 
+ * Record format is: length (4), CRC32 (4), type (1), id (8), time (8) and
+ * payload. Zero length ends the segment.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSJournal {
+    /**
+     * Default segment size in bytes.
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    /**
+     * Message is queued.
+     */
+    private static final byte ENQUEUED = 1;
+
+    /**
+     * Message is accepted by the modem.
+     */
+    private static final byte SUBMITTED = 2;
+
+    /**
+     * Message is completed.
+     */
+    private static final byte COMPLETED = 3;
+
+    /**
+     * Size of length and CRC.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Size of type, id and time.
+     */
+    private static final int BODY_HEADER_SIZE = 17;
+
+    /**
+     * Size of submitted payload.
+     */
+    private static final int SUBMITTED_SIZE = 5;
+
+    /**
+     * Extension of the segment files.
+     */
+    private static final String EXTENSION = ".journal";
+
+    /**
+     * Journal directory.
+     */
+    private final File directory;
+
+    /**
+     * Minimum segment size in bytes.
+     */
+    private final int segmentSize;
+
+    /**
+     * Segment files in written order. The last one is active.
+     */
+    private final List<File> segments = new ArrayList<File>();
+
+    /**
+     * Active segment.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Sequence number of the active segment.
+     */
+    private long sequence;
+
+    /**
+     * Next message id.
+     */
+    private long nextId = 1;
+
+    /**
+     * Amount of written bytes.
+     */
+    private long written;
+
+    /**
+     * Unfinished messages by id in enqueued order.
+     */
+    private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>();
+
+    /**
+     * Submitted messages that wait status report.
+     */
+    private final Map<GXSMSMessage, Entry> waiting =
+            new IdentityHashMap<GXSMSMessage, Entry>();
+
+    /**
+     * Synchronization object of the flush.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Amount of flushed bytes.
+     */
+    private long synced;
+
+    /**
+     * Is some thread flushing.
+     */
+    private boolean syncing;
+
+    /**
+     * Unfinished message.
+     */
+    static final class Entry {
+        /**
+         * Message id.
+         */
+        private final long id;
+        /**
+         * When message was enqueued.
+         */
+        private final long time;
+        /**
+         * Enqueued payload.
+         */
+        private final byte[] payload;
+        /**
+         * Message.
+         */
+        private final GXSMSMessage message;
+        /**
+         * Message reference or -1 if message is not submitted.
+         */
+        private int reference = -1;
+        /**
+         * When message was submitted.
+         */
+        private long submitted;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Message id.
+         * @param enqueued
+         *            When message was enqueued.
+         * @param data
+         *            Enqueued payload.
+         * @param msg
+         *            Message.
+         */
+        Entry(final long value, final long enqueued, final byte[] data,
+                final GXSMSMessage msg) {
+            id = value;
+            time = enqueued;
+            payload = data;
+            message = msg;
+        }
+
+        /**
+         * Get message id.
+         * 
+         * @return Message id.
+         */
+        long getId() {
+            return id;
+        }
+
+        /**
+         * Get message.
+         * 
+         * @return Message.
+         */
+        GXSMSMessage getMessage() {
+            return message;
+        }
+
+        /**
+         * Get message reference.
+         * 
+         * @return Message reference or -1 if message is not submitted.
+         */
+        int getReference() {
+            return reference;
+        }
+
+        /**
+         * Get submit time.
+         * 
+         * @return When message was submitted in milliseconds since epoch.
+         */
+        long getSubmitted() {
+            return submitted;
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param dir
+     *            Journal directory.
+     * @param size
+     *            Minimum segment size in bytes.
+     */
+    GXSMSJournal(final File dir, final int size) {
+        directory = dir;
+        segmentSize = size;
+    }
+
+    /**
+     * Open journal and replay written records.
+     * 
+     * @return Unfinished messages in enqueued order.
+     */
+    synchronized List<Entry> open() {
+        try {
+            if (!directory.isDirectory()) {
+                Files.createDirectories(directory.toPath());
+            }
+            File[] files = directory.listFiles(
+                    (dir, name) -> name.endsWith(EXTENSION));
+            // Names are zero padded, so they are in written order.
+            Arrays.sort(files);
+            MappedByteBuffer last = null;
+            for (File it : files) {
+                last = map(it, 0);
+                replay(last);
+                segments.add(it);
+                String name = it.getName();
+                sequence = Long.parseLong(
+                        name.substring(0, name.length() - EXTENSION.length()));
+            }
+            if (segments.size() == 1) {
+                buffer = last;
+            } else {
+                // Unfinished messages are copied to the new segment.
+                rotate(0);
+            }
+        } catch (IOException | RuntimeException ex) {
+            throw new RuntimeException(
+                    "Failed to open the message journal. " + ex.getMessage());
+        }
+        for (Entry it : entries.values()) {
+            if (it.reference != -1) {
+                waiting.put(it.message, it);
+            }
+        }
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /**
+     * Close journal.
+     */
+    void close() {
+        commit();
+        synchronized (this) {
+            buffer = null;
+            segments.clear();
+            entries.clear();
+            waiting.clear();
+        }
+    }
+
+    /**
+     * Get amount of unfinished messages.
+     * 
+     * @return Amount of unfinished messages.
+     */
+    synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * Add message to the journal. Record is flushed before return.
+     * 
+     * @param msg
+     *            Message to send.
+     * @param number
+     *            Receiver phone number.
+     * @return Message id or zero if journal is closed.
+     */
+    long enqueue(final GXSMSMessage msg, final String number) {
+        long id;
+        synchronized (this) {
+            if (buffer == null) {
+                return 0;
+            }
+            byte[] tmp = number.getBytes(StandardCharsets.UTF_8);
+            byte[] data = null;
+            int size = 2 + tmp.length + 1 + 4;
+            if (msg.getData() != null) {
+                data = msg.getData().getBytes(StandardCharsets.UTF_8);
+                size += data.length;
+            }
+            ByteBuffer bb = ByteBuffer.allocate(size);
+            bb.putShort((short) tmp.length);
+            bb.put(tmp);
+            bb.put((byte) msg.getCodeType().getValue());
+            if (data == null) {
+                bb.putInt(-1);
+            } else {
+                bb.putInt(data.length);
+                bb.put(data);
+            }
+            id = nextId;
+            ++nextId;
+            Entry entry = new Entry(id, System.currentTimeMillis(),
+                    bb.array(), msg);
+            append(ENQUEUED, id, entry.time, entry.payload);
+            entries.put(id, entry);
+        }
+        commit();
+        return id;
+    }
+
+    /**
+     * Modem has accepted the message.
+     * 
+     * @param id
+     *            Message id.
+     * @param reference
+     *            Message reference.
+     * @param report
+     *            Is status report waited.
+     */
+    synchronized void submitted(final long id, final int reference,
+            final boolean report) {
+        Entry entry = entries.get(id);
+        if (entry == null || buffer == null) {
+            return;
+        }
+        entry.reference = reference;
+        entry.submitted = System.currentTimeMillis();
+        append(SUBMITTED, id, entry.submitted,
+                getSubmitted(reference, report));
+        if (report) {
+            waiting.put(entry.message, entry);
+        } else {
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Message is completed.
+     * 
+     * @param id
+     *            Message id.
+     */
+    synchronized void completed(final long id) {
+        Entry entry = entries.get(id);
+        if (entry != null && buffer != null) {
+            append(COMPLETED, id, System.currentTimeMillis(), new byte[0]);
+            remove(entry);
+        }
+    }
+
+    /**
+     * Final status report of the message is received.
+     * 
+     * @param msg
+     *            Sent message.
+     */
+    synchronized void completed(final GXSMSMessage msg) {
+        Entry entry = waiting.get(msg);
+        if (entry != null) {
+            completed(entry.id);
+        }
+    }
+
+    /**
+     * Complete messages whose status report is not received in time.
+     * 
+     * @param timeout
+     *            Time out in milliseconds.
+     */
+    synchronized void expire(final long timeout) {
+        long limit = System.currentTimeMillis() - timeout;
+        List<Entry> expired = new ArrayList<Entry>();
+        for (Entry it : waiting.values()) {
+            if (it.submitted < limit) {
+                expired.add(it);
+            }
+        }
+        for (Entry it : expired) {
+            completed(it.id);
+        }
+    }
+
+    /**
+     * Flush written records to the disk. If other thread is flushing, the
+     * next flush covers records of all waiting threads.
+     */
+    void commit() {
+        long target;
+        synchronized (this) {
+            target = written;
+        }
+        while (true) {
+            synchronized (syncLock) {
+                while (syncing && synced < target) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (synced >= target) {
+                    return;
+                }
+                syncing = true;
+            }
+            long pos = target;
+            try {
+                MappedByteBuffer tmp;
+                synchronized (this) {
+                    tmp = buffer;
+                    pos = written;
+                }
+                if (tmp != null) {
+                    tmp.force();
+                }
+            } finally {
+                synchronized (syncLock) {
+                    syncing = false;
+                    if (pos > synced) {
+                        synced = pos;
+                    }
+                    syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove finished message.
+     * 
+     * @param entry
+     *            Finished message.
+     */
+    private void remove(final Entry entry) {
+        entries.remove(entry.id);
+        waiting.remove(entry.message);
+    }
+
+    /**
+     * Get submitted payload.
+     * 
+     * @param reference
+     *            Message reference.
+     * @param report
+     *            Is status report waited.
+     * @return Payload.
+     */
+    private static byte[] getSubmitted(final int reference,
+            final boolean report) {
+        ByteBuffer bb = ByteBuffer.allocate(SUBMITTED_SIZE);
+        bb.putInt(reference);
+        if (report) {
+            bb.put((byte) 1);
+        } else {
+            bb.put((byte) 0);
+        }
+        return bb.array();
+    }
+
+    /**
+     * Append record to the active segment.
+     * 
+     * @param type
+     *            Record type.
+     * @param id
+     *            Message id.
+     * @param time
+     *            Record time.
+     * @param payload
+     *            Payload.
+     */
+    private void append(final byte type, final long id, final long time,
+            final byte[] payload) {
+        int size = HEADER_SIZE + BODY_HEADER_SIZE + payload.length;
+        // Zero length after the record ends the segment.
+        if (buffer.remaining() < size + 4) {
+            try {
+                rotate(size);
+            } catch (IOException ex) {
+                throw new RuntimeException(
+                        "Failed to rotate the message journal. "
+                                + ex.getMessage());
+            }
+        }
+        write(type, id, time, payload);
+    }
+
+    /**
+     * Write record to the active segment.
+     * 
+     * @param type
+     *            Record type.
+     * @param id
+     *            Message id.
+     * @param time
+     *            Record time.
+     * @param payload
+     *            Payload.
+     */
+    private void write(final byte type, final long id, final long time,
+            final byte[] payload) {
+        ByteBuffer body =
+                ByteBuffer.allocate(BODY_HEADER_SIZE + payload.length);
+        body.put(type);
+        body.putLong(id);
+        body.putLong(time);
+        body.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        int start = buffer.position();
+        // Length is written last so partially written record is never
+        // replayed.
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body.array());
+        buffer.putInt(start, body.capacity());
+        written += HEADER_SIZE + body.capacity();
+    }
+
+    /**
+     * Start a new segment and copy unfinished messages to it. Older segments
+     * are removed.
+     * 
+     * @param needed
+     *            Size of the record that is written after rotation.
+     * @throws IOException
+     *             Segment can't be created.
+     */
+    private void rotate(final int needed) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        int size = needed;
+        for (Entry it : entries.values()) {
+            size += HEADER_SIZE + BODY_HEADER_SIZE + it.payload.length;
+            if (it.reference != -1) {
+                size += HEADER_SIZE + BODY_HEADER_SIZE + SUBMITTED_SIZE;
+            }
+        }
+        ++sequence;
+        File file = new File(directory,
+                String.format("%020d", sequence) + EXTENSION);
+        buffer = map(file, Math.max(segmentSize, 2 * size));
+        segments.add(file);
+        for (Entry it : entries.values()) {
+            write(ENQUEUED, it.id, it.time, it.payload);
+            if (it.reference != -1) {
+                write(SUBMITTED, it.id, it.submitted,
+                        getSubmitted(it.reference, true));
+            }
+        }
+        buffer.force();
+        // Older segments are removed in written order. If removing fails,
+        // it's tried again on the next rotation.
+        Iterator<File> it = segments.iterator();
+        while (it.hasNext()) {
+            File tmp = it.next();
+            if (tmp == file) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(tmp.toPath());
+            } catch (IOException ex) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Map segment file to the memory.
+     * 
+     * @param file
+     *            Segment file.
+     * @param size
+     *            Size of the new segment or zero to use the file size.
+     * @return Mapped segment.
+     * @throws IOException
+     *             File can't be mapped.
+     */
+    private static MappedByteBuffer map(final File file, final int size)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            long length = size;
+            if (size == 0) {
+                length = raf.length();
+            }
+            // Mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /**
+     * Replay records of the segment. Position of the buffer is left to the
+     * end of the valid records.
+     * 
+     * @param bb
+     *            Mapped segment.
+     */
+    private void replay(final ByteBuffer bb) {
+        CRC32 crc = new CRC32();
+        while (bb.remaining() >= HEADER_SIZE + BODY_HEADER_SIZE) {
+            int start = bb.position();
+            int length = bb.getInt();
+            int value = bb.getInt();
+            if (length < BODY_HEADER_SIZE || length > bb.remaining()) {
+                bb.position(start);
+                break;
+            }
+            byte[] body = new byte[length];
+            bb.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != value) {
+                // Torn write. Rest of the segment is overwritten.
+                bb.position(start);
+                break;
+            }
+            apply(ByteBuffer.wrap(body));
+            written += HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Apply replayed record.
+     * 
+     * @param body
+     *            Record body.
+     */
+    private void apply(final ByteBuffer body) {
+        byte type = body.get();
+        long id = body.getLong();
+        long time = body.getLong();
+        nextId = Math.max(nextId, id + 1);
+        Entry entry = entries.get(id);
+        if (type == ENQUEUED) {
+            // Copied record of the unfinished message is ignored.
+            if (entry == null) {
+                byte[] payload = new byte[body.remaining()];
+                body.get(payload);
+                entries.put(id,
+                        new Entry(id, time, payload, decode(payload)));
+            }
+        } else if (type == SUBMITTED) {
+            if (entry != null) {
+                int reference = body.getInt();
+                if (body.get() == 0) {
+                    entries.remove(id);
+                } else {
+                    entry.reference = reference;
+                    entry.submitted = time;
+                }
+            }
+        } else if (type == COMPLETED) {
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Decode enqueued payload.
+     * 
+     * @param payload
+     *            Enqueued payload.
+     * @return Message.
+     */
+    private static GXSMSMessage decode(final byte[] payload) {
+        ByteBuffer bb = ByteBuffer.wrap(payload);
+        byte[] tmp = new byte[bb.getShort()];
+        bb.get(tmp);
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setPhoneNumber(new String(tmp, StandardCharsets.UTF_8));
+        msg.setCodeType(MessageCodeType.forValue(bb.get()));
+        int length = bb.getInt();
+        if (length != -1) {
+            tmp = new byte[length];
+            bb.get(tmp);
+            msg.setData(new String(tmp, StandardCharsets.UTF_8));
+        }
+        return msg;
+    }
+}
@@ -0,0 +1,149 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * Latency statistics of the sent messages.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSLatency {
+    /**
+     * Amount of measured sends.
+     */
+    private long count;
+
+    /**
+     * Total time in nanoseconds.
+     */
+    private long total;
+
+    /**
+     * Minimum time in nanoseconds.
+     */
+    private long minimum;
+
+    /**
+     * Maximum time in nanoseconds.
+     */
+    private long maximum;
+
+    /**
+     * Constructor.
+     */
+    GXSMSLatency() {
+
+    }
+
+    /**
+     * Add measured send.
+     * 
+     * @param time
+     *            Time in nanoseconds.
+     */
+    final synchronized void add(final long time) {
+        if (count == 0 || time < minimum) {
+            minimum = time;
+        }
+        if (time > maximum) {
+            maximum = time;
+        }
+        total += time;
+        ++count;
+    }
+
+    /**
+     * Reset statistics.
+     */
+    final synchronized void reset() {
+        count = 0;
+        total = 0;
+        minimum = 0;
+        maximum = 0;
+    }
+
+    /**
+     * Get amount of measured sends.
+     * 
+     * @return Amount of measured sends.
+     */
+    public final synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Get average send time.
+     * 
+     * @return Average time in milliseconds.
+     */
+    public final synchronized double getAverage() {
+        if (count == 0) {
+            return 0;
+        }
+        // CHECKSTYLE:OFF
+        return total / (count * 1e6);
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Get minimum send time.
+     * 
+     * @return Minimum time in milliseconds.
+     */
+    public final synchronized double getMinimum() {
+        // CHECKSTYLE:OFF
+        return minimum / 1e6;
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Get maximum send time.
+     * 
+     * @return Maximum time in milliseconds.
+     */
+    public final synchronized double getMaximum() {
+        // CHECKSTYLE:OFF
+        return maximum / 1e6;
+        // CHECKSTYLE:ON
+    }
+
+    @Override
+    public final synchronized String toString() {
+        return String.format("%1$d sends, average %2$.1f ms, "
+                + "minimum %3$.1f ms, maximum %4$.1f ms", count,
+                getAverage(), getMinimum(), getMaximum());
+    }
+}
@@ -0,0 +1,218 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gurux.sms.enums.MessageStatus;
+
+/**
+ * This class parses AT+CMGL listing line by line as it is received from the
+ * modem.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSListParser {
+    /**
+     * Listing header.
+     */
+    static final String HEADER = "+CMGL:";
+
+    /**
+     * Parsed messages.
+     */
+    private final List<GXSMSMessage> messages = new ArrayList<GXSMSMessage>();
+
+    /**
+     * Listed status reports by memory index.
+     */
+    private final Map<Integer, GXSMSDeliveryReport> reports =
+            new LinkedHashMap<Integer, GXSMSDeliveryReport>();
+
+    /**
+     * Message which header is parsed and PDU is expected next.
+     */
+    private GXSMSMessage pending;
+
+    /**
+     * Is final result code received.
+     */
+    private boolean completed;
+
+    /**
+     * Is listing failed.
+     */
+    private boolean failed;
+
+    /**
+     * Inbound store or null if not used.
+     */
+    private final GXSMSInboundStore store;
+
+    /**
+     * Constructor.
+     * 
+     * @param inboundStore
+     *            Inbound store or null if not used.
+     */
+    GXSMSListParser(final GXSMSInboundStore inboundStore) {
+        store = inboundStore;
+    }
+
+    /**
+     * Parse one line of the listing.
+     * 
+     * @param line
+     *            Received line.
+     * @return True, if final result code is received.
+     */
+    boolean parse(final String line) {
+        String value = line.trim();
+        if (value.length() == 0) {
+            return completed;
+        }
+        if (pending != null) {
+            GXSMSMessage msg = pending;
+            pending = null;
+            if (GXSMSPdu.isStatusReport(value)) {
+                // Status report is saved when it's indicated with +CDSI.
+                reports.put(msg.getIndex(),
+                        GXSMSPdu.decodeStatusReport(value));
+                return completed;
+            }
+            decode(store, value, msg);
+            // Skip messages that are not received yet.
+            if (msg.getStatus() != MessageStatus.NOT_READ
+                    || !msg.getPhoneNumber().equals("")) {
+                messages.add(msg);
+            }
+        } else if (value.startsWith(HEADER)) {
+            // +CMGL: <index>,<stat>,[<alpha>],<length>
+            String[] tmp = value.substring(HEADER.length()).split("[,]", -1);
+            GXSMSMessage msg = new GXSMSMessage();
+            msg.setIndex(Integer.parseInt(tmp[0].trim()));
+            msg.setStatus(parseStatus(tmp[1]));
+            pending = msg;
+        } else if (value.equals("OK")) {
+            completed = true;
+        } else if (value.startsWith("ERROR") || value.contains("ERROR:")) {
+            completed = true;
+            failed = true;
+        }
+        return completed;
+    }
+
+    /**
+     * Is final result code received.
+     * 
+     * @return True, if listing is completed.
+     */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Is listing failed.
+     * 
+     * @return True, if modem rejected the listing.
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Get parsed messages.
+     * 
+     * @return Parsed messages.
+     */
+    List<GXSMSMessage> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Get listed status reports.
+     * 
+     * @return Status reports by memory index.
+     */
+    Map<Integer, GXSMSDeliveryReport> getReports() {
+        return reports;
+    }
+
+    /**
+     * Decode PDU of the listed or read message.
+     * 
+     * @param store
+     *            Inbound store or null if not used.
+     * @param pdu
+     *            PDU as hex string.
+     * @param msg
+     *            SMS message where data is filled.
+     */
+    static void decode(final GXSMSInboundStore store, final String pdu,
+            final GXSMSMessage msg) {
+        if (store == null) {
+            GXSMSPdu.encode(pdu, msg);
+        } else {
+            store.decode(pdu, msg, msg.getStatus() == MessageStatus.READ
+                    || msg.getStatus() == MessageStatus.NOT_READ);
+        }
+    }
+
+    /**
+     * Parse message status from CMGR or CMGL reply.
+     * 
+     * @param value
+     *            Status as numeric or text mode string.
+     * @return Message status.
+     */
+    static MessageStatus parseStatus(final String value) {
+        String status = value.replace("\"", "").trim();
+        if (status.startsWith("STO") || status.startsWith("REC")) {
+            if (status.contains("UNSENT")) {
+                return MessageStatus.NOT_SENT;
+            } else if (status.contains("UNREAD")) {
+                return MessageStatus.NOT_READ;
+            } else if (status.contains("READ")) {
+                return MessageStatus.READ;
+            }
+            return MessageStatus.SENT;
+        }
+        return MessageStatus.forValue(Integer.parseInt(status));
+    }
+}
@@ -77,6 +77,27 @@ public class GXSMSMessage {
      * Message status.
      */
     private MessageStatus status = MessageStatus.NOT_SENT;
+    /**
+     * Reference number of the concatenated message.
+     */
+    private int reference;
+    /**
+     * Amount of segments in the concatenated message.
+     */
+    private int segmentCount = 1;
+    /**
+     * Segment number of the concatenated message.
+     */
+    private int segment = 1;
+    /**
+     * Hash of the received PDU. Zero if message is not received.
+     */
+    private long hash;
+    /**
+     * Received segments of the joined message. Null if message is not
+     * joined.
+     */
+    private GXSMSMessage[] parts;
 
     /**
      * Get SMS data to send.
@@ -236,6 +257,95 @@ public class GXSMSMessage {
         memory = value;
     }
 
+    /**
+     * Gets reference number of the concatenated message.
+     * 
+     * This property is set only with read messages.
+     * 
+     * @return Reference number.
+     */
+    public final int getReference() {
+        return reference;
+    }
+
+    /**
+     * Gets amount of segments in the concatenated message. One, if message is
+     * not split.
+     * 
+     * This property is set only with read messages.
+     * 
+     * @return Amount of segments.
+     */
+    public final int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Gets segment number of the concatenated message starting from one.
+     * 
+     * This property is set only with read messages.
+     * 
+     * @return Segment number.
+     */
+    public final int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Sets concatenated message information.
+     * 
+     * @param referenceValue
+     *            Reference number.
+     * @param countValue
+     *            Amount of segments.
+     * @param segmentValue
+     *            Segment number.
+     */
+    final void setSegmentation(final int referenceValue, final int countValue,
+            final int segmentValue) {
+        reference = referenceValue;
+        segmentCount = countValue;
+        segment = segmentValue;
+    }
+
+    /**
+     * Get hash of the received PDU.
+     * 
+     * @return PDU hash. Zero if message is not received.
+     */
+    final long getHash() {
+        return hash;
+    }
+
+    /**
+     * Set hash of the received PDU.
+     * 
+     * @param value
+     *            PDU hash.
+     */
+    final void setHash(final long value) {
+        hash = value;
+    }
+
+    /**
+     * Get received segments of the joined message.
+     * 
+     * @return Segments or null if message is not joined.
+     */
+    final GXSMSMessage[] getParts() {
+        return parts;
+    }
+
+    /**
+     * Set received segments of the joined message.
+     * 
+     * @param value
+     *            Segments.
+     */
+    final void setParts(final GXSMSMessage[] value) {
+        parts = value;
+    }
+
     @Override
     public final String toString() {
         return getPhoneNumber() + " : " + String.valueOf(getTime()) + " : "
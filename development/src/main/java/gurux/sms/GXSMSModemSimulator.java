@@ -0,0 +1,1396 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import gurux.sms.enums.MessageCodeType;
+
+/**
+ * In-process AT modem simulator.
+ * 
+ * Simulator answers to the AT commands that GXSMS uses in PDU mode. Sent
+ * messages are collected and received messages can be added to the
+ * simulated memory. Latency and memory size can be configured and replies of
+ * single commands can be scripted.
+ * 
+ * <pre>
+ * GXSMSModemSimulator modem = new GXSMSModemSimulator();
+ * GXSMS media = new GXSMS();
+ * media.setTransport(modem);
+ * media.open();
+ * </pre>
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSModemSimulator implements IGXSMSTransport {
+    /**
+     * Default memory size.
+     */
+    static final int DEFAULT_STORAGE_SIZE = 30;
+
+    /**
+     * Ctrl-Z ends the PDU.
+     */
+    static final int CTRL_Z = 0x1A;
+
+    /**
+     * ESC cancels the PDU.
+     */
+    static final int ESC = 0x1B;
+
+    /**
+     * Stored message is received and not read.
+     */
+    static final int REC_UNREAD = 0;
+
+    /**
+     * Stored message is received and read.
+     */
+    static final int REC_READ = 1;
+
+    /**
+     * Stored message is not sent.
+     */
+    static final int STO_UNSENT = 2;
+
+    /**
+     * Stored message is sent.
+     */
+    static final int STO_SENT = 3;
+
+    /**
+     * Memory index is invalid.
+     */
+    static final int INVALID_INDEX = 321;
+
+    /**
+     * Memory is full.
+     */
+    static final int MEMORY_FULL = 322;
+
+    /**
+     * Invalid PDU mode parameter.
+     */
+    static final int INVALID_PDU = 304;
+
+    /**
+     * Operation is not supported.
+     */
+    static final int NOT_SUPPORTED = 4;
+
+    /**
+     * Short message transfer rejected. Default error when network rejects
+     * the message.
+     */
+    static final int TRANSFER_REJECTED = 21;
+
+    /**
+     * Stored message.
+     */
+    private static final class Slot {
+        /**
+         * Message status.
+         */
+        private int status;
+        /**
+         * PDU.
+         */
+        private final byte[] pdu;
+
+        /**
+         * Constructor.
+         * 
+         * @param statusValue
+         *            Message status.
+         * @param pduValue
+         *            PDU.
+         */
+        Slot(final int statusValue, final byte[] pduValue) {
+            status = statusValue;
+            pdu = pduValue;
+        }
+    }
+
+    /**
+     * Data written by the media.
+     */
+    private final BlockingQueue<byte[]> input =
+            new LinkedBlockingQueue<byte[]>();
+
+    /**
+     * Data that media reads.
+     */
+    private final BlockingQueue<byte[]> output =
+            new LinkedBlockingQueue<byte[]>();
+
+    /**
+     * Simulated memory.
+     */
+    private final TreeMap<Integer, Slot> storage = new TreeMap<Integer, Slot>();
+
+    /**
+     * Sent messages.
+     */
+    private final List<GXSMSMessage> sent = new ArrayList<GXSMSMessage>();
+
+    /**
+     * Scripted replies.
+     */
+    private final Map<String, String> replies = new HashMap<String, String>();
+
+    /**
+     * Executed commands without AT prefix in executed order.
+     */
+    private final List<String> commands = new ArrayList<String>();
+
+    /**
+     * Recipient whose messages network rejects or null.
+     */
+    private volatile String rejectedNumber;
+
+    /**
+     * +CMS ERROR cause when network rejects the message.
+     */
+    private volatile int rejectError = TRANSFER_REJECTED;
+
+    /**
+     * Received command.
+     */
+    private final StringBuilder command = new StringBuilder();
+
+    /**
+     * Replies of the chained command or null if command is not chained.
+     */
+    private StringBuilder chain;
+
+    /**
+     * Memory size.
+     */
+    private int storageSize = DEFAULT_STORAGE_SIZE;
+
+    /**
+     * Reply latency in milliseconds.
+     */
+    private volatile int latency;
+
+    /**
+     * Additional latency of the message send in milliseconds.
+     */
+    private volatile int sendLatency;
+
+    /**
+     * Received signal strength indication.
+     */
+    private volatile int rssi = 20;
+
+    /**
+     * Network registration state.
+     */
+    private volatile int networkState = 1;
+
+    /**
+     * Are network registration changes indicated with +CREG.
+     */
+    private volatile boolean networkIndications;
+
+    /**
+     * Is echo used.
+     */
+    private boolean echo = true;
+
+    /**
+     * Are new messages indicated with +CMTI.
+     */
+    private boolean indications;
+
+    /**
+     * How status reports are indicated. 0 if not at all, 1 with +CDS and 2
+     * with +CDSI.
+     */
+    private int reportMode;
+
+    /**
+     * Time in milliseconds before status report is sent.
+     */
+    private volatile int reportLatency;
+
+    /**
+     * Status of the sent status reports.
+     */
+    private volatile int reportStatus;
+
+    /**
+     * Baud rate of the serial port.
+     */
+    private int baudRate = 9600;
+
+    /**
+     * Baud rate of the modem set with AT+IPR. Zero if modem detects the baud
+     * rate.
+     */
+    private int modemBaudRate;
+
+    /**
+     * Maximum baud rate that the serial link carries.
+     */
+    private int maximumBaudRate = 115200;
+
+    /**
+     * PDU command waiting the PDU or null.
+     */
+    private String pduCommand;
+
+    /**
+     * Message reference of the last sent message.
+     */
+    private int messageReference;
+
+    /**
+     * Reference number of the concatenated received messages.
+     */
+    private int concatenationReference;
+
+    /**
+     * Modem thread.
+     */
+    private Thread thread;
+
+    /**
+     * Get memory size.
+     * 
+     * @return Amount of messages that can be stored.
+     */
+    public final int getStorageSize() {
+        return storageSize;
+    }
+
+    /**
+     * Set memory size.
+     * 
+     * @param value
+     *            Amount of messages that can be stored.
+     */
+    public final void setStorageSize(final int value) {
+        synchronized (storage) {
+            storageSize = value;
+        }
+    }
+
+    /**
+     * Get reply latency.
+     * 
+     * @return Time in milliseconds before the modem replies to the command.
+     */
+    public final int getLatency() {
+        return latency;
+    }
+
+    /**
+     * Set reply latency.
+     * 
+     * @param value
+     *            Time in milliseconds before the modem replies to the command.
+     */
+    public final void setLatency(final int value) {
+        latency = value;
+    }
+
+    /**
+     * Get message send latency.
+     * 
+     * @return Time in milliseconds that is added to the reply latency when
+     *         message is sent.
+     */
+    public final int getSendLatency() {
+        return sendLatency;
+    }
+
+    /**
+     * Set message send latency.
+     * 
+     * @param value
+     *            Time in milliseconds that is added to the reply latency when
+     *            message is sent.
+     */
+    public final void setSendLatency(final int value) {
+        sendLatency = value;
+    }
+
+    /**
+     * Get received signal strength indication.
+     * 
+     * @return Received signal strength indication.
+     */
+    public final int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Set received signal strength indication.
+     * 
+     * @param value
+     *            Received signal strength indication. 99 if not known.
+     */
+    public final void setRssi(final int value) {
+        rssi = value;
+    }
+
+    /**
+     * Get network registration state.
+     * 
+     * @return Network registration state as reported with +CREG.
+     */
+    public final int getNetworkState() {
+        return networkState;
+    }
+
+    /**
+     * Set network registration state. Change is indicated with +CREG if
+     * indications are enabled.
+     * 
+     * @param value
+     *            Network registration state as reported with +CREG.
+     */
+    public final void setNetworkState(final int value) {
+        boolean change = networkState != value;
+        networkState = value;
+        if (change && networkIndications && thread != null) {
+            reply("+CREG: " + value);
+        }
+    }
+
+    /**
+     * Get maximum baud rate that the serial link carries.
+     * 
+     * @return Maximum baud rate.
+     */
+    public final synchronized int getMaximumBaudRate() {
+        return maximumBaudRate;
+    }
+
+    /**
+     * Set maximum baud rate that the serial link carries. Modem replies are
+     * lost with faster baud rates.
+     * 
+     * @param value
+     *            Maximum baud rate.
+     */
+    public final synchronized void setMaximumBaudRate(final int value) {
+        maximumBaudRate = value;
+    }
+
+    /**
+     * Are modem replies lost, because baud rates of the serial port and the
+     * modem don't match or baud rate is too fast for the link.
+     * 
+     * @return True, if replies are lost.
+     */
+    private synchronized boolean isGarbled() {
+        return modemBaudRate != 0 && modemBaudRate != baudRate
+                || baudRate > maximumBaudRate;
+    }
+
+    /**
+     * Is echo used.
+     * 
+     * @return True, if received characters are echoed back.
+     */
+    public final synchronized boolean getEcho() {
+        return echo;
+    }
+
+    /**
+     * Get status report latency.
+     * 
+     * @return Time in milliseconds from the send to the status report.
+     */
+    public final int getReportLatency() {
+        return reportLatency;
+    }
+
+    /**
+     * Set status report latency.
+     * 
+     * @param value
+     *            Time in milliseconds from the send to the status report.
+     */
+    public final void setReportLatency(final int value) {
+        reportLatency = value;
+    }
+
+    /**
+     * Get status of the sent status reports.
+     * 
+     * @return Status (TP-ST). 0 if message is delivered.
+     */
+    public final int getReportStatus() {
+        return reportStatus;
+    }
+
+    /**
+     * Set status of the sent status reports.
+     * 
+     * @param value
+     *            Status (TP-ST). 0 if message is delivered.
+     */
+    public final void setReportStatus(final int value) {
+        reportStatus = value;
+    }
+
+    /**
+     * Set reply of the command. Scripted reply is used instead of the
+     * simulated one.
+     * 
+     * @param cmd
+     *            Command without AT prefix, for example "+CSQ".
+     * @param reply
+     *            Reply lines without leading and trailing line feeds, for
+     *            example "+CSQ: 5,0\r\n\r\nOK". Null removes the scripted
+     *            reply.
+     */
+    public final void setReply(final String cmd, final String reply) {
+        synchronized (replies) {
+            if (reply == null) {
+                replies.remove(cmd.toUpperCase());
+            } else {
+                replies.put(cmd.toUpperCase(), reply);
+            }
+        }
+    }
+
+    /**
+     * Get how many times the command is executed.
+     * 
+     * @param name
+     *            Command name without AT prefix and parameters, for example
+     *            "+CMGR".
+     * @return Amount of executed commands.
+     */
+    public final int getCommandCount(final String name) {
+        String tmp = name.toUpperCase();
+        int count = 0;
+        synchronized (commands) {
+            for (String it : commands) {
+                if (it.equals(tmp) || it.startsWith(tmp)
+                        && (it.charAt(tmp.length()) == '='
+                                || it.charAt(tmp.length()) == '?')) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get executed commands.
+     * 
+     * @return Commands without AT prefix in executed order, for example
+     *         "+CMMS=1".
+     */
+    public final String[] getCommands() {
+        synchronized (commands) {
+            return commands.toArray(new String[commands.size()]);
+        }
+    }
+
+    /**
+     * Get recipient whose messages network rejects.
+     * 
+     * @return Phone number or null if messages are not rejected.
+     */
+    public final String getRejectedNumber() {
+        return rejectedNumber;
+    }
+
+    /**
+     * Set recipient whose messages network rejects. Sending to the number
+     * fails with +CMS ERROR.
+     * 
+     * @param value
+     *            Phone number or null if messages are not rejected.
+     * @see setRejectError
+     */
+    public final void setRejectedNumber(final String value) {
+        rejectedNumber = value;
+    }
+
+    /**
+     * Get +CMS ERROR cause when network rejects the message.
+     * 
+     * @return Error cause. Default is 21, short message transfer rejected.
+     */
+    public final int getRejectError() {
+        return rejectError;
+    }
+
+    /**
+     * Set +CMS ERROR cause when network rejects the message.
+     * 
+     * @param value
+     *            Error cause. For example 21 rejects the message permanently
+     *            and 42, congestion, temporarily.
+     */
+    public final void setRejectError(final int value) {
+        rejectError = value;
+    }
+
+    /**
+     * Get sent messages.
+     * 
+     * @return Messages that are sent with AT+CMGS or AT+CMSS.
+     */
+    public final GXSMSMessage[] getSentMessages() {
+        synchronized (sent) {
+            return sent.toArray(new GXSMSMessage[sent.size()]);
+        }
+    }
+
+    /**
+     * Get amount of stored messages.
+     * 
+     * @return Amount of messages in the memory.
+     */
+    public final int getStoredCount() {
+        synchronized (storage) {
+            return storage.size();
+        }
+    }
+
+    /**
+     * Add received message to the memory. Long message is stored as
+     * concatenated segments. New message is indicated with +CMTI if
+     * indications are enabled.
+     * 
+     * @param sender
+     *            Sender phone number.
+     * @param message
+     *            Message.
+     * @param type
+     *            Code type.
+     * @return Memory index of the last segment.
+     */
+    public final int addMessage(final String sender, final String message,
+            final MessageCodeType type) {
+        return addSegments(sender, message, type, null);
+    }
+
+    /**
+     * Add segments of the received message to the memory in the given order.
+     * Segments can be missing or duplicated. New message is indicated with
+     * +CMTI if indications are enabled.
+     * 
+     * @param sender
+     *            Sender phone number.
+     * @param message
+     *            Message.
+     * @param type
+     *            Code type.
+     * @param order
+     *            Added segment numbers starting from 1 or null for all
+     *            segments in order.
+     * @return Memory index of the last added segment.
+     */
+    public final int addSegments(final String sender, final String message,
+            final MessageCodeType type, final int[] order) {
+        int reference;
+        synchronized (storage) {
+            concatenationReference = (concatenationReference + 1) & 0xFF;
+            reference = concatenationReference;
+        }
+        return addSegments(sender, message, type, reference, order);
+    }
+
+    /**
+     * Add segments of the received message to the memory with the given
+     * concatenation reference. Segments of the same message can be added
+     * with several calls, so they can be interleaved with other messages.
+     * 
+     * @param sender
+     *            Sender phone number.
+     * @param message
+     *            Message.
+     * @param type
+     *            Code type.
+     * @param reference
+     *            Concatenation reference.
+     * @param order
+     *            Added segment numbers starting from 1 or null for all
+     *            segments in order.
+     * @return Memory index of the last added segment.
+     */
+    public final int addSegments(final String sender, final String message,
+            final MessageCodeType type, final int reference,
+            final int[] order) {
+        byte[][] pdus;
+        int[] indexes;
+        synchronized (storage) {
+            pdus = GXSMSPdu.codeOctets(sender, message, type, reference,
+                    false, new java.util.Date());
+            int[] segments = order;
+            if (segments == null) {
+                segments = new int[pdus.length];
+                for (int pos = 0; pos != pdus.length; ++pos) {
+                    segments[pos] = pos + 1;
+                }
+            }
+            if (storage.size() + segments.length > storageSize) {
+                throw new IllegalStateException("Memory is full.");
+            }
+            indexes = new int[segments.length];
+            for (int pos = 0; pos != segments.length; ++pos) {
+                indexes[pos] = store(REC_UNREAD, pdus[segments[pos] - 1]);
+            }
+        }
+        boolean notify;
+        synchronized (this) {
+            notify = indications;
+        }
+        if (notify) {
+            for (int index : indexes) {
+                reply("+CMTI: \"SM\"," + index);
+            }
+        }
+        return indexes[indexes.length - 1];
+    }
+
+    /**
+     * Add status report to the memory without indicating it, as if +CDSI
+     * was lost.
+     * 
+     * @param reference
+     *            Message reference of the sent message.
+     * @param recipient
+     *            Recipient phone number.
+     * @param status
+     *            TP-ST status of the report.
+     * @return Memory index of the report.
+     */
+    public final int addStatusReport(final int reference,
+            final String recipient, final int status) {
+        java.util.Date now = new java.util.Date();
+        byte[] report = GXSMSPdu.codeStatusReport(reference, recipient, now,
+                now, status);
+        synchronized (storage) {
+            int index = store(REC_UNREAD, report);
+            if (index == -1) {
+                throw new IllegalStateException("Memory is full.");
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Add received 7 bit message to the memory.
+     * 
+     * @param sender
+     *            Sender phone number.
+     * @param message
+     *            Message.
+     * @return Memory index of the last segment.
+     */
+    public final int addMessage(final String sender, final String message) {
+        return addMessage(sender, message, MessageCodeType.BITS_7);
+    }
+
+    /**
+     * Deliver received 7 bit message directly with +CMT without saving it to
+     * the memory. Message is lost if indications are not enabled.
+     * 
+     * @param sender
+     *            Sender phone number.
+     * @param message
+     *            Message.
+     */
+    public final void addDirectMessage(final String sender,
+            final String message) {
+        byte[][] pdus;
+        synchronized (storage) {
+            concatenationReference = (concatenationReference + 1) & 0xFF;
+            pdus = GXSMSPdu.codeOctets(sender, message,
+                    MessageCodeType.BITS_7, concatenationReference, false,
+                    new java.util.Date());
+        }
+        boolean notify;
+        synchronized (this) {
+            notify = indications;
+        }
+        if (notify) {
+            for (byte[] it : pdus) {
+                reply("+CMT: ," + (it.length - 1) + "\r\n"
+                        + GXSMSPdu.toHex(it));
+            }
+        }
+    }
+
+    /**
+     * Restart the modem. Settings are reset to the defaults and the restart
+     * is indicated with ^SYSSTART. Stored messages are kept.
+     */
+    public final void restart() {
+        synchronized (this) {
+            command.setLength(0);
+            pduCommand = null;
+            echo = true;
+            indications = false;
+            networkIndications = false;
+            reportMode = 0;
+        }
+        reply("^SYSSTART");
+    }
+
+    /**
+     * Store PDU to the first free index.
+     * 
+     * @param status
+     *            Message status.
+     * @param pdu
+     *            PDU.
+     * @return Memory index or -1 if memory is full.
+     */
+    private int store(final int status, final byte[] pdu) {
+        synchronized (storage) {
+            for (int index = 1; index <= storageSize; ++index) {
+                if (!storage.containsKey(index)) {
+                    storage.put(index, new Slot(status, pdu));
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public final void open(final String port) {
+        close();
+        input.clear();
+        output.clear();
+        synchronized (this) {
+            command.setLength(0);
+            pduCommand = null;
+            echo = true;
+            indications = false;
+            networkIndications = false;
+            reportMode = 0;
+        }
+        thread = new Thread("GXSMSModemSimulator") {
+            @Override
+            public void run() {
+                process();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public final void close() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+            // Wake up the reader.
+            output.add(new byte[0]);
+        }
+    }
+
+    @Override
+    public final boolean isOpen() {
+        return thread != null;
+    }
+
+    @Override
+    public final void write(final byte[] data, final int timeout) {
+        if (thread == null) {
+            throw new IllegalStateException("Simulator is closed.");
+        }
+        input.add(data.clone());
+    }
+
+    @Override
+    public final byte[] read(final int timeout) {
+        try {
+            byte[] data;
+            if (timeout <= 0) {
+                data = output.take();
+            } else {
+                data = output.poll(timeout, TimeUnit.MILLISECONDS);
+            }
+            if (data == null || data.length == 0) {
+                return new byte[0];
+            }
+            byte[] next = output.peek();
+            if (next == null || next.length == 0) {
+                return data;
+            }
+            // Return all available data at once.
+            ByteBuffer bb = ByteBuffer.allocate(data.length + next.length);
+            bb.put(data);
+            next = output.peek();
+            while (next != null && next.length != 0
+                    && next.length <= bb.remaining()) {
+                bb.put(output.poll());
+                next = output.peek();
+            }
+            byte[] tmp = new byte[bb.position()];
+            bb.flip();
+            bb.get(tmp);
+            return tmp;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new byte[0];
+        }
+    }
+
+    @Override
+    public final synchronized int getBaudRate() {
+        return baudRate;
+    }
+
+    @Override
+    public final synchronized void setBaudRate(final int value) {
+        baudRate = value;
+    }
+
+    /**
+     * Handle written data until simulator is closed.
+     */
+    private void process() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                byte[] data = input.take();
+                for (byte it : data) {
+                    handle(it);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Simulator is closed.
+        }
+    }
+
+    /**
+     * Handle received byte.
+     * 
+     * @param value
+     *            Received byte.
+     * @throws InterruptedException
+     *             Simulator is closed.
+     */
+    private void handle(final byte value) throws InterruptedException {
+        String cmd = null;
+        boolean pdu;
+        synchronized (this) {
+            pdu = pduCommand != null;
+            if (pdu) {
+                if (value == CTRL_Z) {
+                    cmd = command.toString();
+                    command.setLength(0);
+                } else if (value == ESC) {
+                    pduCommand = null;
+                    command.setLength(0);
+                    return;
+                } else {
+                    command.append((char) value);
+                }
+            } else if (value == '\r') {
+                cmd = command.toString().trim();
+                command.setLength(0);
+            } else if (value != '\n' && value != CTRL_Z) {
+                command.append((char) value);
+            }
+            if (echo && value != CTRL_Z && value != ESC && !isGarbled()) {
+                output.add(new byte[] { value });
+            }
+        }
+        if (cmd != null) {
+            if (pdu) {
+                handlePdu(cmd);
+            } else if (cmd.length() != 0) {
+                handleCommand(cmd);
+            }
+        }
+    }
+
+    /**
+     * Send reply to the media.
+     * 
+     * @param value
+     *            Reply lines without leading and trailing line feeds.
+     */
+    private void reply(final String value) {
+        if (chain != null) {
+            chain.append(value);
+        } else if (!isGarbled()) {
+            output.add(("\r\n" + value + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Send error reply to the media.
+     * 
+     * @param error
+     *            Error code.
+     * @param sms
+     *            Is error SMS related.
+     */
+    private void error(final int error, final boolean sms) {
+        if (sms) {
+            reply("+CMS ERROR: " + error);
+        } else {
+            reply("+CME ERROR: " + error);
+        }
+    }
+
+    /**
+     * Wait given time before the reply.
+     * 
+     * @param time
+     *            Time in milliseconds.
+     * @throws InterruptedException
+     *             Simulator is closed.
+     */
+    private static void delay(final int time) throws InterruptedException {
+        if (time > 0) {
+            Thread.sleep(time);
+        }
+    }
+
+    /**
+     * Handle PDU after AT+CMGS or AT+CMGW.
+     * 
+     * @param value
+     *            PDU as hex string.
+     * @throws InterruptedException
+     *             Simulator is closed.
+     */
+    private void handlePdu(final String value) throws InterruptedException {
+        String cmd;
+        synchronized (this) {
+            cmd = pduCommand;
+            pduCommand = null;
+        }
+        byte[] pdu;
+        try {
+            pdu = GXSMSPdu.fromHex(value.trim());
+            GXSMSPdu.encode(ByteBuffer.wrap(pdu), new GXSMSMessage());
+        } catch (RuntimeException ex) {
+            delay(latency);
+            error(INVALID_PDU, true);
+            return;
+        }
+        if (cmd.startsWith("+CMGW")) {
+            delay(latency);
+            int index = store(STO_UNSENT, pdu);
+            if (index == -1) {
+                error(MEMORY_FULL, true);
+            } else {
+                reply("+CMGW: " + index + "\r\n\r\nOK");
+            }
+        } else {
+            delay(latency + sendLatency);
+            int reference = submit(pdu);
+            if (reference == -1) {
+                error(rejectError, true);
+            } else {
+                reply("+CMGS: " + reference + "\r\n\r\nOK");
+                statusReport(pdu, reference);
+            }
+        }
+    }
+
+    /**
+     * Send status report if sent message has requested it.
+     * 
+     * @param pdu
+     *            SMS-SUBMIT PDU.
+     * @param reference
+     *            Message reference.
+     */
+    // CHECKSTYLE:OFF
+    private void statusReport(final byte[] pdu, final int reference) {
+        int mode;
+        synchronized (this) {
+            mode = reportMode;
+        }
+        // Is TP-SRR set.
+        if (mode == 0 || (pdu[(pdu[0] & 0xFF) + 1] & 0x20) == 0) {
+            return;
+        }
+        GXSMSMessage msg = new GXSMSMessage();
+        GXSMSPdu.encode(ByteBuffer.wrap(pdu), msg);
+        java.util.Date now = new java.util.Date();
+        byte[] report = GXSMSPdu.codeStatusReport(reference,
+                msg.getPhoneNumber(), now, now, reportStatus);
+        Runnable task = () -> {
+            if (mode == 1) {
+                reply("+CDS: " + (report.length - 1) + "\r\n"
+                        + GXSMSPdu.toHex(report));
+            } else {
+                int index = store(REC_UNREAD, report);
+                if (index != -1) {
+                    reply("+CDSI: \"SM\"," + index);
+                }
+            }
+        };
+        if (reportLatency <= 0) {
+            task.run();
+        } else {
+            Thread t = new Thread(() -> {
+                try {
+                    Thread.sleep(reportLatency);
+                    task.run();
+                } catch (InterruptedException e) {
+                    // Report is not sent.
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Collect sent message.
+     * 
+     * @param pdu
+     *            SMS-SUBMIT PDU.
+     * @return Message reference or -1 if network rejects the message.
+     */
+    private int submit(final byte[] pdu) {
+        GXSMSMessage msg = new GXSMSMessage();
+        GXSMSPdu.encode(ByteBuffer.wrap(pdu), msg);
+        if (msg.getPhoneNumber().equals(rejectedNumber)) {
+            return -1;
+        }
+        synchronized (sent) {
+            sent.add(msg);
+            messageReference = (messageReference + 1) & 0xFF;
+            return messageReference;
+        }
+    }
+
+    /**
+     * Get integer parameter of the command.
+     * 
+     * @param cmd
+     *            Command.
+     * @param pos
+     *            Parameter index.
+     * @return Parameter value or -1 if parameter is not given.
+     */
+    private static int getParameter(final String cmd, final int pos) {
+        int start = cmd.indexOf('=');
+        if (start == -1) {
+            return -1;
+        }
+        String[] tmp = cmd.substring(start + 1).split(",", -1);
+        if (pos >= tmp.length || tmp[pos].trim().length() == 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(tmp[pos].trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Handle AT command.
+     * 
+     * @param value
+     *            Received command line.
+     * @throws InterruptedException
+     *             Simulator is closed.
+     */
+    private void handleCommand(final String value)
+            throws InterruptedException {
+        String line = value.toUpperCase();
+        if (!line.startsWith("AT")) {
+            // Escape sequences and garbage are ignored.
+            return;
+        }
+        String cmd = line.substring(2);
+        delay(latency);
+        boolean scripted;
+        synchronized (replies) {
+            scripted = replies.containsKey(cmd);
+        }
+        if (!scripted && cmd.indexOf(';') != -1) {
+            handleChain(cmd);
+        } else {
+            execute(cmd);
+        }
+    }
+
+    /**
+     * Handle chained commands, for example AT+CSQ;+CREG?. Commands are
+     * executed until the first error and replied with one final result code.
+     * 
+     * @param value
+     *            Chained commands without AT prefix.
+     * @throws InterruptedException
+     *             Simulator is closed.
+     */
+    private void handleChain(final String value) throws InterruptedException {
+        StringBuilder sb = new StringBuilder();
+        for (String it : value.split(";")) {
+            String tmp;
+            chain = new StringBuilder();
+            try {
+                execute(it.trim());
+            } finally {
+                tmp = chain.toString();
+                chain = null;
+            }
+            if (!tmp.endsWith("OK")) {
+                reply(sb.append(tmp).toString());
+                return;
+            }
+            sb.append(tmp, 0, tmp.length() - 2);
+        }
+        reply(sb.append("OK").toString());
+    }
+
+    /**
+     * Execute AT command.
+     * 
+     * @param cmd
+     *            Command without AT prefix.
+     * @throws InterruptedException
+     *             Simulator is closed.
+     */
+    private void execute(final String cmd) throws InterruptedException {
+        synchronized (commands) {
+            commands.add(cmd);
+        }
+        String scripted;
+        synchronized (replies) {
+            scripted = replies.get(cmd);
+        }
+        if (scripted != null) {
+            reply(scripted);
+            return;
+        }
+        if (cmd.equals("") || cmd.startsWith("+CMEE")
+                || cmd.startsWith("+CMGF") || cmd.startsWith("+CMMS")
+                || cmd.equals("+CMGS=?") || cmd.equals("+CMGW=?")
+                || cmd.equals("+CPIN=?") || cmd.equals("+CNMI=?")
+                || cmd.equals("^SBC=?")) {
+            reply("OK");
+        } else if (cmd.equals("E0") || cmd.equals("E1")) {
+            synchronized (this) {
+                echo = cmd.equals("E1");
+            }
+            reply("OK");
+        } else if (cmd.equals("+CPIN?")) {
+            reply("+CPIN: READY\r\n\r\nOK");
+        } else if (cmd.startsWith("+CNMI=")) {
+            synchronized (this) {
+                indications = getParameter(cmd, 1) > 0;
+                reportMode = Math.max(getParameter(cmd, 3), 0);
+            }
+            reply("OK");
+        } else if (cmd.startsWith("+CMGS=") || cmd.startsWith("+CMGW=")) {
+            synchronized (this) {
+                pduCommand = cmd;
+            }
+            if (!isGarbled()) {
+                output.add("\r\n> ".getBytes(StandardCharsets.US_ASCII));
+            }
+        } else if (cmd.startsWith("+CMSS=")) {
+            Slot slot;
+            synchronized (storage) {
+                slot = storage.get(getParameter(cmd, 0));
+            }
+            if (slot == null) {
+                error(INVALID_INDEX, true);
+            } else {
+                delay(sendLatency);
+                int reference = submit(slot.pdu);
+                if (reference == -1) {
+                    error(rejectError, true);
+                } else {
+                    slot.status = STO_SENT;
+                    reply("+CMSS: " + reference + "\r\n\r\nOK");
+                    statusReport(slot.pdu, reference);
+                }
+            }
+        } else if (cmd.startsWith("+CMGR=")) {
+            readMessage(getParameter(cmd, 0));
+        } else if (cmd.startsWith("+CMGL")) {
+            listMessages(Math.max(getParameter(cmd, 0), 0));
+        } else if (cmd.equals("+CMGD=?")) {
+            reply("+CMGD: (1-" + storageSize + "),(0-4)\r\n\r\nOK");
+        } else if (cmd.startsWith("+CMGD=")) {
+            deleteMessages(getParameter(cmd, 0), getParameter(cmd, 1));
+        } else if (cmd.equals("+CPMS?")) {
+            int count = getStoredCount();
+            String mem = "\"SM\"," + count + "," + storageSize;
+            reply("+CPMS: " + mem + "," + mem + "," + mem + "\r\n\r\nOK");
+        } else if (cmd.equals("+CREG=?")) {
+            reply("+CREG: (0-2)\r\n\r\nOK");
+        } else if (cmd.equals("+CREG?")) {
+            int mode;
+            if (networkIndications) {
+                mode = 1;
+            } else {
+                mode = 0;
+            }
+            reply("+CREG: " + mode + "," + networkState + "\r\n\r\nOK");
+        } else if (cmd.startsWith("+CREG=")) {
+            networkIndications = getParameter(cmd, 0) == 1;
+            reply("OK");
+        } else if (cmd.equals("+CSQ=?")) {
+            reply("+CSQ: (0-31,99),(0-7,99)\r\n\r\nOK");
+        } else if (cmd.equals("+CSQ")) {
+            reply("+CSQ: " + rssi + ",0\r\n\r\nOK");
+        } else if (cmd.equals("^SBC?")) {
+            reply("^SBC: 0,100,0\r\n\r\nOK");
+        } else if (cmd.equals("+CGMI")) {
+            reply("Gurux\r\n\r\nOK");
+        } else if (cmd.equals("+CGMM")) {
+            reply("GXSMSModemSimulator\r\n\r\nOK");
+        } else if (cmd.equals("+CGSN")) {
+            reply("000000000000000\r\n\r\nOK");
+        } else if (cmd.equals("+GCAP")) {
+            reply("+GCAP: +CGSM\r\n\r\nOK");
+        } else if (cmd.equals("+IPR?")) {
+            synchronized (this) {
+                reply("+IPR: " + modemBaudRate + "\r\n\r\nOK");
+            }
+        } else if (cmd.equals("+IPR=?")) {
+            reply("+IPR: (0,300,1200,2400,4800,9600,19200,38400,57600,"
+                    + "115200),()\r\n\r\nOK");
+        } else if (cmd.startsWith("+IPR=")) {
+            // Reply is sent with the old baud rate.
+            reply("OK");
+            synchronized (this) {
+                modemBaudRate = Math.max(getParameter(cmd, 0), 0);
+            }
+        } else {
+            error(NOT_SUPPORTED, false);
+        }
+    }
+
+    /**
+     * Reply to AT+CMGR.
+     * 
+     * @param index
+     *            Memory index.
+     */
+    private void readMessage(final int index) {
+        Slot slot;
+        synchronized (storage) {
+            slot = storage.get(index);
+            if (slot != null) {
+                reply("+CMGR: " + slot.status + ",," + (slot.pdu.length - 1)
+                        + "\r\n" + GXSMSPdu.toHex(slot.pdu) + "\r\n\r\nOK");
+                if (slot.status == REC_UNREAD) {
+                    slot.status = REC_READ;
+                }
+            }
+        }
+        if (slot == null) {
+            error(INVALID_INDEX, true);
+        }
+    }
+
+    /**
+     * Reply to AT+CMGL.
+     * 
+     * @param status
+     *            Status of the listed messages or 4 for all messages.
+     */
+    private void listMessages(final int status) {
+        StringBuilder sb = new StringBuilder();
+        synchronized (storage) {
+            for (Map.Entry<Integer, Slot> it : storage.entrySet()) {
+                Slot slot = it.getValue();
+                // CHECKSTYLE:OFF
+                if (status == 4 || status == slot.status) {
+                    // CHECKSTYLE:ON
+                    sb.append("+CMGL: ").append(it.getKey()).append(',')
+                            .append(slot.status).append(",,")
+                            .append(slot.pdu.length - 1).append("\r\n")
+                            .append(GXSMSPdu.toHex(slot.pdu)).append("\r\n");
+                    if (slot.status == REC_UNREAD) {
+                        slot.status = REC_READ;
+                    }
+                }
+            }
+        }
+        sb.append("\r\nOK");
+        reply(sb.toString());
+    }
+
+    /**
+     * Reply to AT+CMGD.
+     * 
+     * @param index
+     *            Memory index.
+     * @param flag
+     *            Delete flag or -1 if not given.
+     */
+    private void deleteMessages(final int index, final int flag) {
+        synchronized (storage) {
+            if (flag <= 0) {
+                if (storage.remove(index) == null && flag == -1
+                        && (index < 1 || index > storageSize)) {
+                    error(INVALID_INDEX, true);
+                    return;
+                }
+            } else {
+                // 1: read, 2: read and sent, 3: read and all stored,
+                // 4: all messages.
+                storage.values().removeIf(
+                        it -> it.status == REC_READ || flag > 1
+                                && (it.status == STO_SENT || flag > 2
+                                        && (it.status == STO_UNSENT
+                                                || flag > 3)));
+            }
+        }
+        reply("OK");
+    }
+}
@@ -32,6 +32,8 @@
 
 package gurux.sms;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.TimeZone;
 
@@ -40,6 +42,9 @@ import gurux.sms.enums.MessageCodeType;
 /**
  * This class is used to handle SMS PDU.
  * 
+ * PDU is handled as octets. It's converted to hex string only when it's sent
+ * to or received from the modem.
+ * 
  * @author Gurux Lts.
  *
  */
@@ -58,355 +63,324 @@ final class GXSMSPdu {
     static final String ERROR = "ERROR:";
 
     /**
-     * Code integer.
+     * Maximum amount of septets in one message.
+     */
+    static final int MAX_SEPTETS = 160;
+
+    /**
+     * Maximum amount of user data octets in one message.
+     */
+    static final int MAX_OCTETS = 140;
+
+    /**
+     * Maximum amount of concatenated segments.
+     */
+    static final int MAX_SEGMENTS = 255;
+
+    /**
+     * Hex characters.
+     */
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Convert octets to hex string.
      * 
      * @param value
-     *            Integer value.
-     * @return Value as coded string.
+     *            Octets.
+     * @param offset
+     *            Start offset.
+     * @param count
+     *            Amount of octets.
+     * @return Hex string.
      */
     // CHECKSTYLE:OFF
-    private static String codeInteger(final int value) {
-        char[] tmp = new char[2];
-        int b = ((byte) (value >> 4));
-        tmp[0] = (char) (b > 9 ? b + 0x37 : b + 0x30);
-        b = ((byte) (value & 0x0F));
-        tmp[1] = (char) (b > 9 ? b + 0x37 : b + 0x30);
+    static String toHex(final byte[] value, final int offset,
+            final int count) {
+        char[] tmp = new char[2 * count];
+        for (int pos = 0; pos != count; ++pos) {
+            int b = value[offset + pos] & 0xFF;
+            tmp[2 * pos] = HEX_CHARS[b >> 4];
+            tmp[2 * pos + 1] = HEX_CHARS[b & 0x0F];
+        }
         return new String(tmp);
     }
     // CHECKSTYLE:ON
 
     /**
-     * Code string.
+     * Convert octets to hex string.
      * 
-     * @param data
-     *            String value.
-     * @return Value as coded string.
+     * @param value
+     *            Octets.
+     * @return Hex string.
      */
-    private static String codeString(final String data) {
-        StringBuilder sb = new StringBuilder(data.length());
-        for (int pos = 0; pos < data.length(); pos += 2) {
-            sb.append(data.charAt(pos + 1));
-            sb.append(data.charAt(pos));
-        }
-        return sb.toString();
+    static String toHex(final byte[] value) {
+        return toHex(value, 0, value.length);
     }
 
     /**
-     * Convert SMS char to 7 bit char.
+     * Get value of hex character.
      * 
      * @param ch
-     *            Character to convert.
-     * @return ASCII char as 7 bit.
+     *            Hex character.
+     * @return Value of the character.
      */
     // CHECKSTYLE:OFF
-    private static int asciiToSMS(final int ch) {
-        int value;
-        switch (ch) {
-        case 0x40: // @
-            value = 0;
-            break;
-        case 0xA3:
-            value = 1;
-            break;
-        case 0x24: // '$'
-            value = 2;
-            break;
-        case 165:
-            value = 3;
-            break;
-        case 0xE8:
-            value = 4;
-            break;
-        case 0xE9:
-            value = 5;
-            break;
-        case 0xF9:
-            value = 6;
-            break;
-        case 0xEC:
-            value = 7;
-            break;
-        case 0xF2:
-            value = 8;
-            break;
-        case 0xC7:
-            value = 9;
-            break;
-        case 0xD8:
-            value = 11;
-            break;
-        case 0xF8:
-            value = 12;
-            break;
-        case 0xC5:
-            value = 14;
-            break;
-        case 0xE5:
-            value = 15;
-            break;
-        case 0x0394:
-            value = 16;
-            break;
-        case 0x5F: // '_'
-            value = 17;
-            break;
-        case 0x03A6:
-            value = 18;
-            break;
-        case 0x0393:
-            value = 19;
-            break;
-        case 0x039B:
-            value = 20;
-            break;
-        case 0x03A9:
-            value = 21;
-            break;
-        case 0x03A0:
-            value = 22;
-            break;
-        case 0x03A8:
-            value = 23;
-            break;
-        case 0x03A3:
-            value = 24;
-            break;
-        case 0x0398:
-            value = 25;
-            break;
-        case 0x039E:
-            value = 26;
-            break;
-        case 0xC6:
-            value = 28;
-            break;
-        case 0xE6:
-            value = 29;
-            break;
-        case 0xDF:
-            value = 30;
-            break;
-        case 0xC9:
-            value = 31;
-            break;
-        case 0xA4:
-            value = 36;
-            break;
-        case 0xA1:
-            value = 64;
-            break;
-        case 0xC4:
-            value = 91;
-            break;
-        case 0xD6:
-            value = 92;
-            break;
-        case 0xD1:
-            value = 93;
-            break;
-        case 0xDC:
-            value = 94;
-            break;
-        case 167: // Section sign
-            value = 95;
-            break;
-        case 0x00BF: // Inverted question mark.
-            value = 96;
-            break;
-        case 0xE4:
-            value = 123;
-            break;
-        case 0xF6:
-            value = 124;
-            break;
-        case 0xF1:
-            value = 125;
-            break;
-        case 0xFC:
-            value = 126;
-            break;
-        case 0xE0:
-            value = 127;
-            break;
-        case 12: // FORM FEED
-            value = 0x1B0A;
-            break;
-        case 94: // CIRCUMFLEX ACCENT ^
-            value = 0x1B14;
-            break;
-        case 123: // LEFT CURLY BRACKET {
-            value = 0x1B28;
-            break;
-        case 125: // RIGHT CURLY BRACKET }
-            value = 0x1B29;
-            break;
-        case 92: // REVERSE SOLIDUS (BACKSLASH)
-            value = 0x1B2F;
-            break;
-        case 91: // LEFT SQUARE BRACKET [
-            value = 0x1B3C;
-            break;
-        case 126: // TILDE
-            value = 0x1B3D;
-            break;
-        case 93: // RIGHT SQUARE BRACKET ]
-            value = 0x1B3E;
-            break;
-        case 124: // VERTICAL BAR |
-            value = 0x1B40;
-            break;
-        case 0x20AC: // EURO SIGN
-            value = 0x1B65;
-            break;
-        default:
-            value = 0;
-        }
-        return value;
+    private static int getHexValue(final char ch) {
+        if (ch >= '0' && ch <= '9') {
+            return ch - '0';
+        }
+        if (ch >= 'A' && ch <= 'F') {
+            return ch - 'A' + 10;
+        }
+        if (ch >= 'a' && ch <= 'f') {
+            return ch - 'a' + 10;
+        }
+        throw new IllegalArgumentException("Invalid data");
     }
-
     // CHECKSTYLE:ON
+
     /**
-     * Convert 8 bits data to the 7 bits data.
+     * Convert hex string to octets.
      * 
-     * @param data
-     *            Coded data.
-     * @return Coded PDU.
+     * @param value
+     *            Hex string.
+     * @return Octets.
      */
-    // CHECKSTYLE:OFF
-    private static String code7Bit(final String data) {
-        if (data == null || data.equals("")) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder();
-        // Convert ASCII chars to SMS chars.
-        int pos;
-        for (pos = 0; pos < data.length(); ++pos) {
-            int val = asciiToSMS(data.charAt(pos));
-            // If 16 bits.
-            if ((val & 0xFF00) != 0) {
-                sb.append((char) ((val >> 8) & 0xFF));
-                sb.append((char) (val & 0xFF));
-            } else {
-                // If 8 bits.
-                sb.append((char) val);
-            }
+    static byte[] fromHex(final CharSequence value) {
+        if (value.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid data");
         }
-        String str = sb.toString();
-        String output = "";
-        for (pos = 0; pos < str.length(); ++pos) {
-            int mask = (1 << ((pos % 8) + 1)) - 1;
-            if (mask == 0xFF) {
-                mask = 1;
-                continue;
-            }
-            int ch1 = str.charAt(pos) >> (pos % 8);
-            int ch2 = 0;
-            if (pos < str.length() - 1) {
-                ch2 = str.charAt(pos + 1) & mask;
+        byte[] tmp = new byte[value.length() / 2];
+        for (int pos = 0; pos != tmp.length; ++pos) {
+            tmp[pos] = (byte) (getHexValue(value.charAt(2 * pos)) << 4
+                    | getHexValue(value.charAt(2 * pos + 1)));
+        }
+        return tmp;
+    }
+
+    /**
+     * Pack 7 bit septets to octets.
+     * 
+     * Target octets must be zeroed.
+     * 
+     * @param septets
+     *            Septets to pack.
+     * @param start
+     *            Index of the first septet.
+     * @param count
+     *            Amount of septets.
+     * @param bitOffset
+     *            Bit offset where first septet is written.
+     * @param target
+     *            Target octets.
+     * @param offset
+     *            Offset of the first target octet.
+     * @return Amount of used octets.
+     */
+    // CHECKSTYLE:OFF
+    static int pack7Bit(final byte[] septets, final int start,
+            final int count, final int bitOffset, final byte[] target,
+            final int offset) {
+        int bitPos = bitOffset;
+        for (int pos = start; pos != start + count; ++pos) {
+            int value = septets[pos] & 0x7F;
+            int index = offset + (bitPos >> 3);
+            int shift = bitPos & 7;
+            target[index] |= (byte) (value << shift);
+            if (shift > 1) {
+                target[index + 1] |= (byte) (value >> (8 - shift));
             }
-            ch2 = ch2 << (7 - (pos % 8));
-            output += codeInteger(ch1 | ch2);
+            bitPos += 7;
         }
-        return output;
+        return (bitPos + 7) >> 3;
     }
     // CHECKSTYLE:ON
 
     /**
-     * Code 8 bit string to SMS string.
+     * Unpack octets to 7 bit septets.
      * 
      * @param data
-     *            String to convert.
-     * @return SMS string.
+     *            Packed octets.
+     * @param offset
+     *            Offset of the first packed octet.
+     * @param bitOffset
+     *            Bit offset of the first septet.
+     * @param target
+     *            Target septets.
+     * @param count
+     *            Amount of septets.
      */
-    private static String code8Bit(final String data) {
-        if (data == null || data.equals("")) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder();
-        for (int it : data.getBytes()) {
-            sb.append(codeInteger(it));
+    // CHECKSTYLE:OFF
+    static void unpack7Bit(final byte[] data, final int offset,
+            final int bitOffset, final byte[] target, final int count) {
+        int bitPos = bitOffset;
+        for (int pos = 0; pos != count; ++pos) {
+            int index = offset + (bitPos >> 3);
+            int shift = bitPos & 7;
+            int value = (data[index] & 0xFF) >> shift;
+            if (shift > 1 && index + 1 < data.length) {
+                value |= (data[index + 1] & 0xFF) << (8 - shift);
+            }
+            target[pos] = (byte) (value & 0x7F);
+            bitPos += 7;
         }
-        return sb.toString();
     }
+    // CHECKSTYLE:ON
 
     /**
-     * Code string to UNICODE string.
+     * Get amount of octets that packed septets need.
+     * 
+     * @param septets
+     *            Amount of septets.
+     * @return Amount of octets.
+     */
+    // CHECKSTYLE:OFF
+    static int getPackedLength(final int septets) {
+        return (7 * septets + 7) / 8;
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Convert string to 7 bit septets.
+     * 
+     * Characters that can't be coded are replaced with question mark.
      * 
      * @param data
      *            String to convert.
-     * @return UNICODE string.
+     * @param count
+     *            Amount of septets is returned here.
+     * @return Septets.
      */
     // CHECKSTYLE:OFF
-    private static String codeUnicode(final String data) {
-        if (data == null || data.equals("")) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder();
-        for (int ch : data.getBytes()) {
-            // Add high part.
-            sb.append(codeInteger((ch & 0xFF00) >> 8));
-            // Add low part.
-            sb.append(codeInteger(ch & 0xFF));
+    private static byte[] toSeptets(final String data, final int[] count) {
+        byte[] septets = new byte[2 * data.length()];
+        int cnt = 0;
+        for (int pos = 0; pos != data.length(); ++pos) {
+            int val = GXGsm7Charset.getCode(data.charAt(pos));
+            if (val < 0) {
+                val = GXGsm7Charset.REPLACEMENT;
+            } else if (GXGsm7Charset.isExtension(val)) {
+                // Character from the extension table.
+                septets[cnt++] = GXGsm7Charset.ESCAPE;
+            }
+            septets[cnt++] = (byte) val;
         }
-        return sb.toString();
+        count[0] = cnt;
+        return septets;
     }
     // CHECKSTYLE:ON
 
     /**
-     * Get integer as a Word.
+     * Code phone number as semi octets.
      * 
-     * @param data
-     *            SMS string.
-     * @param index
-     *            Character index.
-     * @return Encoded integer value.
+     * @param buff
+     *            Buffer where number is written.
+     * @param number
+     *            Phone number digits.
      */
     // CHECKSTYLE:OFF
-    private static int getInteger(final String data, final int index) {
-        if (data.length() < 2) {
-            throw new IllegalArgumentException("Invalid data");
+    private static void codeNumber(final ByteBuffer buff,
+            final String number) {
+        for (int pos = 0; pos < number.length(); pos += 2) {
+            int value = number.charAt(pos) - '0';
+            if (pos + 1 < number.length()) {
+                value |= (number.charAt(pos + 1) - '0') << 4;
+            } else {
+                // If the length of the phone number is odd, a trailing F is
+                // added.
+                value |= 0xF0;
+            }
+            buff.put((byte) value);
         }
-        int c = data.charAt(index);
-        int value = ((c > '9' ? (c > 'Z' ? (c - 'a' + 10) : (c - 'A' + 10))
-                : (c - '0')) << 4) & 0xF0;
-        c = data.charAt(index + 1);
-        value |= (c > '9' ? (c > 'Z' ? (c - 'a' + 10) : (c - 'A' + 10))
-                : (c - '0')) & 0xF;
-        return value;
     }
     // CHECKSTYLE:ON
 
     /**
-     * Get encoded string.
+     * Code SMS to hex string.
      * 
-     * @param data
-     *            Encoded string.
-     * @param index
-     *            Index to start.
-     * @param length
-     *            Character count.
-     * @param swap
-     *            Is data swapped.
-     * @return Encoded string.
-     */
-    private static String getString(final String data, final int index,
-            final int length, final boolean swap) {
-        if (data.length() < 0) {
-            throw new IllegalArgumentException("Invalid data");
+     * @param receiver
+     *            SMS receiver.
+     * @param message
+     *            SMS message to send.
+     * @param type
+     *            Code type.
+     * @return Coded SMS message.
+     */
+    public static String code(final String receiver, final String message,
+            final MessageCodeType type) {
+        byte[][] pdus = codeOctets(receiver, message, type, 0, false);
+        if (pdus.length != 1) {
+            throw new IllegalArgumentException("Message is too long.");
+        }
+        return toHex(pdus[0]);
+    }
+
+    /**
+     * Get segment boundaries of the user data.
+     * 
+     * @param ud
+     *            User data as septets or octets.
+     * @param count
+     *            Amount of septets or octets.
+     * @param type
+     *            Code type.
+     * @param udhLength
+     *            Length of the concatenation header in octets.
+     * @return End index of each segment.
+     */
+    // CHECKSTYLE:OFF
+    private static int[] getSegments(final byte[] ud, final int count,
+            final MessageCodeType type, final int udhLength) {
+        // Maximum size of the segment.
+        int single;
+        int size;
+        if (type == MessageCodeType.BITS_7) {
+            single = MAX_SEPTETS;
+            size = (8 * (MAX_OCTETS - udhLength)) / 7;
+        } else {
+            single = MAX_OCTETS;
+            size = MAX_OCTETS - udhLength;
+            if (type == MessageCodeType.UNICODE) {
+                size &= ~1;
+            }
         }
-        if (swap) {
-            char[] bytes = new char[length];
-            for (int pos = 0; pos < length; pos += 2) {
-                bytes[pos] = data.charAt(index + pos + 1);
-                bytes[pos + 1] = data.charAt(index + pos);
+        if (count <= single) {
+            return new int[] { count };
+        }
+        int[] ends = new int[(count + size - 1) / size + 1];
+        int cnt = 0;
+        int start = 0;
+        while (start != count) {
+            int end = Math.min(start + size, count);
+            if (end != count) {
+                if (type == MessageCodeType.BITS_7) {
+                    // Escape and the escaped character are not split.
+                    if (ud[end - 1] == GXGsm7Charset.ESCAPE) {
+                        --end;
+                    }
+                } else if (type == MessageCodeType.UNICODE) {
+                    // Surrogate pair is not split.
+                    int ch = (ud[end - 2] & 0xFF) << 8 | (ud[end - 1] & 0xFF);
+                    if (Character.isHighSurrogate((char) ch)) {
+                        end -= 2;
+                    }
+                }
+            }
+            if (cnt == ends.length) {
+                ends = java.util.Arrays.copyOf(ends, 2 * cnt);
             }
-            return new String(bytes);
+            ends[cnt++] = end;
+            start = end;
         }
-        return data.substring(index, index + length);
+        if (cnt > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("Message is too long.");
+        }
+        return java.util.Arrays.copyOf(ends, cnt);
     }
+    // CHECKSTYLE:ON
 
     /**
-     * Code SMS.
+     * Code SMS. Long message is split to the concatenated segments.
      * 
      * @param receiver
      *            SMS receiver.
@@ -414,11 +388,93 @@ final class GXSMSPdu {
      *            SMS message to send.
      * @param type
      *            Code type.
-     * @return Coded SMS message.
+     * @param reference
+     *            Concatenated message reference number.
+     * @param reference16
+     *            Is 16 bit reference number used.
+     * @return Coded SMS-SUBMIT PDUs.
+     */
+    static byte[][] codeOctets(final String receiver, final String message,
+            final MessageCodeType type, final int reference,
+            final boolean reference16) {
+        return codeOctets(receiver, message, type, reference, reference16,
+                false, null);
+    }
+
+    /**
+     * Code SMS. Long message is split to the concatenated segments.
+     * 
+     * @param receiver
+     *            SMS receiver.
+     * @param message
+     *            SMS message to send.
+     * @param type
+     *            Code type.
+     * @param reference
+     *            Concatenated message reference number.
+     * @param reference16
+     *            Is 16 bit reference number used.
+     * @param statusReport
+     *            Is status report requested from the service centre.
+     * @return Coded SMS-SUBMIT PDUs.
+     */
+    static byte[][] codeOctets(final String receiver, final String message,
+            final MessageCodeType type, final int reference,
+            final boolean reference16, final boolean statusReport) {
+        return codeOctets(receiver, message, type, reference, reference16,
+                statusReport, null);
+    }
+
+    /**
+     * Code SMS-DELIVER PDUs. Long message is split to the concatenated
+     * segments.
+     * 
+     * @param sender
+     *            SMS sender.
+     * @param message
+     *            SMS message.
+     * @param type
+     *            Code type.
+     * @param reference
+     *            Concatenated message reference number.
+     * @param reference16
+     *            Is 16 bit reference number used.
+     * @param time
+     *            Service centre time stamp.
+     * @return Coded SMS-DELIVER PDUs.
+     */
+    static byte[][] codeOctets(final String sender, final String message,
+            final MessageCodeType type, final int reference,
+            final boolean reference16, final java.util.Date time) {
+        return codeOctets(sender, message, type, reference, reference16,
+                false, time);
+    }
+
+    /**
+     * Code SMS. Long message is split to the concatenated segments.
+     * 
+     * @param receiver
+     *            SMS receiver or sender if time is given.
+     * @param message
+     *            SMS message.
+     * @param type
+     *            Code type.
+     * @param reference
+     *            Concatenated message reference number.
+     * @param reference16
+     *            Is 16 bit reference number used.
+     * @param statusReport
+     *            Is status report requested. Used only with SMS-SUBMIT.
+     * @param time
+     *            Service centre time stamp. SMS-SUBMIT PDUs are coded if
+     *            null, otherwise SMS-DELIVER PDUs.
+     * @return Coded PDUs.
      */
     // CHECKSTYLE:OFF
-    public static String code(final String receiver, final String message,
-            final MessageCodeType type) {
+    private static byte[][] codeOctets(final String receiver,
+            final String message, final MessageCodeType type,
+            final int reference, final boolean reference16,
+            final boolean statusReport, final java.util.Date time) {
         String receiver2 = receiver;
         if (receiver2 == null || receiver2.equals("")) {
             throw new IllegalArgumentException("Receiver is invalid.");
@@ -427,306 +483,352 @@ final class GXSMSPdu {
         if (receiver2.length() == 0) {
             throw new IllegalArgumentException("Receiver is invalid.");
         }
+        // Is phone number give as internal format.
+        boolean bInternational = (receiver2.charAt(0) == '+');
+        if (bInternational) {
+            receiver2 = receiver2.substring(1);
+        }
+        String text = message;
+        if (text == null) {
+            text = "";
+        }
+        // User data as septets with 7 bit data and as octets with 8 bit data
+        // or Unicode.
+        byte[] ud;
+        int count;
+        int dcs;
+        if (type == MessageCodeType.BITS_7) {
+            dcs = 0x00;
+            int[] tmp = new int[1];
+            ud = toSeptets(text, tmp);
+            count = tmp[0];
+        } else if (type == MessageCodeType.BITS_8) {
+            dcs = 0x04;
+            ud = text.getBytes(StandardCharsets.ISO_8859_1);
+            count = ud.length;
+        } else if (type == MessageCodeType.UNICODE) {
+            dcs = 0x08;
+            ud = text.getBytes(StandardCharsets.UTF_16BE);
+            count = ud.length;
+        } else {
+            throw new IllegalArgumentException("Unknown message code type.");
+        }
+        int udhLength = reference16 ? 7 : 6;
+        int[] ends = getSegments(ud, count, type, udhLength);
+        byte[][] pdus = new byte[ends.length][];
+        if (ends.length == 1) {
+            udhLength = 0;
+        }
+        // Septets that the header takes.
+        int udhSeptets = (8 * udhLength + 6) / 7;
+        int start = 0;
+        for (int pos = 0; pos != ends.length; ++pos) {
+            int len = ends[pos] - start;
+            byte[] data;
+            int udl;
+            if (type == MessageCodeType.BITS_7) {
+                udl = udhSeptets + len;
+                data = new byte[getPackedLength(udl)];
+                pack7Bit(ud, start, len, 7 * udhSeptets, data, 0);
+            } else {
+                udl = udhLength + len;
+                data = new byte[udl];
+                System.arraycopy(ud, start, data, udhLength, len);
+            }
+            if (udhLength != 0) {
+                // Concatenated short message header.
+                if (reference16) {
+                    data[0] = 6;
+                    data[1] = 8;
+                    data[2] = 4;
+                    data[3] = (byte) (reference >> 8);
+                    data[4] = (byte) reference;
+                } else {
+                    data[0] = 5;
+                    data[1] = 0;
+                    data[2] = 3;
+                    data[3] = (byte) reference;
+                }
+                data[udhLength - 2] = (byte) ends.length;
+                data[udhLength - 1] = (byte) (pos + 1);
+            }
+            if (time == null) {
+                pdus[pos] = codeSubmit(receiver2, bInternational, dcs, udl,
+                        data, udhLength != 0, statusReport);
+            } else {
+                pdus[pos] = codeDeliver(receiver2, bInternational, dcs, time,
+                        udl, data, udhLength != 0);
+            }
+            start = ends[pos];
+        }
+        return pdus;
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Code SMS-SUBMIT PDU.
+     * 
+     * @param number
+     *            Receiver phone number digits.
+     * @param international
+     *            Is number in international format.
+     * @param dcs
+     *            Data coding scheme.
+     * @param udl
+     *            User data length in septets or octets.
+     * @param ud
+     *            User data.
+     * @param udhi
+     *            Is user data header included.
+     * @param statusReport
+     *            Is status report requested.
+     * @return Coded SMS-SUBMIT PDU.
+     */
+    // CHECKSTYLE:OFF
+    private static byte[] codeSubmit(final String number,
+            final boolean international, final int dcs, final int udl,
+            final byte[] ud, final boolean udhi, final boolean statusReport) {
+        ByteBuffer buff = ByteBuffer
+                .allocate(10 + (number.length() + 1) / 2 + ud.length);
         // Length of SMSC information. Here the length is 0, which means that
         // the SMSC stored in the phone should be used.
         // Note: This OCTET is optional. On some phones this octet should be
         // omitted!
         // (Using the SMSC stored in phone is thus implicit)
-        String data = codeInteger(0x00);
+        buff.put((byte) 0x00);
         // First OCTET of the SMS-SUBMIT message.
-        data += codeInteger(0x011);
-        // TP-Message-Reference. The "00" value here lets the phone set the
-        // message reference number itself.
-        data += codeInteger(0x00);
-        // Is phone number give as internal format.
-        boolean bInternational = (receiver2.charAt(0) == '+');
-        if (bInternational) {
-            receiver2 = receiver2.substring(1);
+        int fo = 0x11;
+        if (udhi) {
+            fo |= 0x40;
         }
-        // Address-Length. Length of phone number.
-        // If the length of the phone number is odd (11), a trailing F has been
-        // added.
-        if ((receiver2.length() % 2) != 0) {
-            receiver2 += "F";
+        // TP-SRR. Status report is requested.
+        if (statusReport) {
+            fo |= 0x20;
         }
-        data += codeInteger(receiver2.length());
+        buff.put((byte) fo);
+        // TP-Message-Reference. The "00" value here lets the phone set the
+        // message reference number itself.
+        buff.put((byte) 0x00);
+        // Address-Length. Amount of digits in the phone number.
+        buff.put((byte) number.length());
         // Type-of-Address. (91 indicates international format of the phone
         // number).
-        if (bInternational) {
-            data += codeInteger(0x91);
+        if (international) {
+            buff.put((byte) 0x91);
         } else {
-            data += codeInteger(0x81);
+            buff.put((byte) 0x81);
         }
         // The phone number in semi OCTETS.
-        data += codeString(receiver2);
+        codeNumber(buff, number);
         // TP-PID. Protocol identifier
-        data += codeInteger(0x00);
-
-        // TP-DCS. Data coding scheme. This message is coded according to the
-        // 7bit default alphabet.
-        // Having "04" instead of "00" here, would indicate that the
-        // TP-User-Data field of this
-        // message should be interpreted as 8bit rather than 7bit (used in e.g.
-        // smart messaging, OTA provisioning etc).
-        String msg;
-        if (type == MessageCodeType.BITS_7) {
-            data += codeInteger(0x00);
-            msg = code7Bit(message);
-        } else if (type == MessageCodeType.BITS_8) {
-            data += codeInteger(0x04);
-            msg = code8Bit(message);
-        } else if (type == MessageCodeType.UNICODE) {
-            data += codeInteger(0x08);
-            msg = codeUnicode(message);
-        } else {
-            throw new IllegalArgumentException("Unknown message code type.");
-        }
+        buff.put((byte) 0x00);
+        // TP-DCS. Data coding scheme.
+        buff.put((byte) dcs);
         // TP-Validity-Period. "AA" means 4 days. Note: This OCTET is optional,
         // see bits 4 and 3 of the first OCTET
-        data += codeInteger(0xAA);
-        // TP-User-Data-Length. Length of message. The TP-DCS field indicated
-        // 7-bit data, so the length here is the number of OCTETS (10).
-        data += codeInteger(msg.length() / 2);
-        // If the TP-DCS field were set to 8-bit data or Unicode, the length
-        // would be the number of OCTETS.
-        data += msg;
-        return data;
+        buff.put((byte) 0xAA);
+        // TP-User-Data-Length.
+        buff.put((byte) udl);
+        buff.put(ud);
+        byte[] pdu = new byte[buff.position()];
+        buff.flip();
+        buff.get(pdu);
+        return pdu;
     }
     // CHECKSTYLE:ON
 
     /**
-     * Convert SMS char to UNICODE char.
+     * Code SMS-DELIVER PDU.
      * 
-     * @param value
-     *            SMS character.
-     * @param escch
-     *            is ESCCH character.
-     * @return Coded character.
+     * @param number
+     *            Sender phone number digits.
+     * @param international
+     *            Is number in international format.
+     * @param dcs
+     *            Data coding scheme.
+     * @param time
+     *            Service centre time stamp.
+     * @param udl
+     *            User data length in septets or octets.
+     * @param ud
+     *            User data.
+     * @param udhi
+     *            Is user data header included.
+     * @return Coded SMS-DELIVER PDU.
      */
     // CHECKSTYLE:OFF
-    private static int smsToASCII(final int value, final boolean[] escch) {
-        int ch = value;
-        if (escch[0]) {
-            ch = 0x1B << 8 | ch;
-        }
-        switch (ch) {
-        case 0:
-            ch = '@';
-            break;
-        case 1:
-            ch = 0xA3;
-            break;
-        case 2:
-            ch = '$';
-            break;
-        case 3:
-            ch = 165;
-            break;
-        case 4:
-            ch = 0xE8;
-            break;
-        case 5:
-            ch = 0xE9;
-            break;
-        case 6:
-            ch = 0xF9;
-            break;
-        case 7:
-            ch = 0xEC;
-            break;
-        case 8:
-            ch = 0xF2;
-            break;
-        case 9:
-            ch = 0xC7;
-            break;
-        case 11:
-            ch = 0xD8;
-            break;
-        case 12:
-            ch = 0xF8;
-            break;
-        case 14:
-            ch = 0xC5;
-            break;
-        case 15:
-            ch = 0xE5;
-            break;
-        case 16:
-            ch = 0x0394;
-            break;
-        case 17:
-            ch = '_';
-            break;
-        case 18:
-            ch = 0x03A6;
-            break;
-        case 19:
-            ch = 0x0393;
-            break;
-        case 20:
-            ch = 0x039B;
-            break;
-        case 21:
-            ch = 0x03A9;
-            break;
-        case 22:
-            ch = 0x03A0;
-            break;
-        case 23:
-            ch = 0x03A8;
-            break;
-        case 24:
-            ch = 0x03A3;
-            break;
-        case 25:
-            ch = 0x0398;
-            break;
-        case 26:
-            ch = 0x039E;
-            break;
-        case 28:
-            ch = 0xC6;
-            break;
-        case 29:
-            ch = 0xE6;
-            break;
-        case 30:
-            ch = 0xDF;
-            break;
-        case 31:
-            ch = 0xC9;
-            break;
-        case 36:
-            ch = 0xA4;
-            break;
-        case 64:
-            ch = 0xA1;
-            break;
-        case 91:
-            ch = 0xC4;
-            break;
-        case 92:
-            ch = 0xD6;
-            break;
-        case 93:
-            ch = 0xD1;
-            break;
-        case 94:
-            ch = 0xDC;
-            break;
-        case 95: // Section sign.
-            ch = 167;
-            break;
-        case 96: // Inverted question mark.
-            ch = 0x40;
-            break;
-        case 123:
-            ch = 0xE4;
-            break;
-        case 124:
-            ch = 0xF6;
-            break;
-        case 125:
-            ch = 0xF1;
-            break;
-        case 126:
-            ch = 0xFC;
-            break;
-        case 127:
-            ch = 0xE0;
-            break;
-        case 0x1B0A: // FORM FEED
-            ch = 12;
-            break;
-        case 0x1B14: // CIRCUMFLEX ACCENT ^
-            ch = 94;
-            break;
-        case 0x1B28: // LEFT CURLY BRACKET {
-            ch = 123;
-            break;
-        case 0x1B29: // RIGHT CURLY BRACKET }
-            ch = 125;
-            break;
-        case 0x1B2F: // REVERSE SOLIDUS (BACKSLASH)
-            ch = 92;
-            break;
-        case 0x1B3C: // LEFT SQUARE BRACKET [
-            ch = 91;
-            break;
-        case 0x1B3D: // TILDE
-            ch = 126;
-            break;
-        case 0x1B3E: // RIGHT SQUARE BRACKET ]
-            ch = 93;
-            break;
-        case 0x1B40: // VERTICAL BAR |
-            ch = 124;
-            break;
-        case 0x1B65: // EURO SIGN
-            ch = 0x20AC;
-            break;
-        default:
-            ch = 0;
-        }
-        escch[0] = ch == 27;
-        if (escch[0]) {
-            return 0;
-        }
-        if ((ch & 0xFF00) == 0xFF00) {
-            ch = ch & 0xFF;
-        }
-        return ch;
+    private static byte[] codeDeliver(final String number,
+            final boolean international, final int dcs,
+            final java.util.Date time, final int udl, final byte[] ud,
+            final boolean udhi) {
+        ByteBuffer buff = ByteBuffer
+                .allocate(16 + (number.length() + 1) / 2 + ud.length);
+        // SMSC information is not included.
+        buff.put((byte) 0x00);
+        // First OCTET of the SMS-DELIVER message. No more messages to send.
+        if (udhi) {
+            buff.put((byte) 0x44);
+        } else {
+            buff.put((byte) 0x04);
+        }
+        buff.put((byte) number.length());
+        if (international) {
+            buff.put((byte) 0x91);
+        } else {
+            buff.put((byte) 0x81);
+        }
+        codeNumber(buff, number);
+        // TP-PID. Protocol identifier
+        buff.put((byte) 0x00);
+        // TP-DCS. Data coding scheme.
+        buff.put((byte) dcs);
+        // TP-SCTS.
+        codeTime(buff, time);
+        // TP-User-Data-Length.
+        buff.put((byte) udl);
+        buff.put(ud);
+        byte[] pdu = new byte[buff.position()];
+        buff.flip();
+        buff.get(pdu);
+        return pdu;
+    }
+
+    /**
+     * Code SMS-STATUS-REPORT PDU.
+     * 
+     * @param reference
+     *            Message reference of the sent message.
+     * @param recipient
+     *            Recipient phone number.
+     * @param time
+     *            Service centre time stamp.
+     * @param discharge
+     *            Discharge time.
+     * @param status
+     *            Status of the sent message.
+     * @return Coded SMS-STATUS-REPORT PDU.
+     */
+    static byte[] codeStatusReport(final int reference,
+            final String recipient, final java.util.Date time,
+            final java.util.Date discharge, final int status) {
+        String number = recipient.trim();
+        boolean international = number.charAt(0) == '+';
+        if (international) {
+            number = number.substring(1);
+        }
+        ByteBuffer buff =
+                ByteBuffer.allocate(20 + (number.length() + 1) / 2);
+        // SMSC information is not included.
+        buff.put((byte) 0x00);
+        // First OCTET of the SMS-STATUS-REPORT message.
+        buff.put((byte) 0x06);
+        // TP-MR.
+        buff.put((byte) reference);
+        buff.put((byte) number.length());
+        if (international) {
+            buff.put((byte) 0x91);
+        } else {
+            buff.put((byte) 0x81);
+        }
+        codeNumber(buff, number);
+        codeTime(buff, time);
+        codeTime(buff, discharge);
+        // TP-ST.
+        buff.put((byte) status);
+        byte[] pdu = new byte[buff.position()];
+        buff.flip();
+        buff.get(pdu);
+        return pdu;
+    }
+
+    /**
+     * Code time stamp. Time stamp is given in UTC.
+     * 
+     * @param buff
+     *            Buffer where time stamp is written.
+     * @param time
+     *            Time stamp.
+     */
+    private static void codeTime(final ByteBuffer buff,
+            final java.util.Date time) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTime(time);
+        buff.put(toSwappedBcd(calendar.get(Calendar.YEAR) % 100));
+        buff.put(toSwappedBcd(calendar.get(Calendar.MONTH) + 1));
+        buff.put(toSwappedBcd(calendar.get(Calendar.DAY_OF_MONTH)));
+        buff.put(toSwappedBcd(calendar.get(Calendar.HOUR_OF_DAY)));
+        buff.put(toSwappedBcd(calendar.get(Calendar.MINUTE)));
+        buff.put(toSwappedBcd(calendar.get(Calendar.SECOND)));
+        buff.put((byte) 0x00);
+    }
+
+    /**
+     * Convert value to swapped BCD.
+     * 
+     * @param value
+     *            Value between 0 and 99.
+     * @return Swapped BCD.
+     */
+    private static byte toSwappedBcd(final int value) {
+        return (byte) ((value % 10) << 4 | value / 10);
     }
     // CHECKSTYLE:ON
 
     /**
-     * Convert 7 bits data to the 8 bits data.
+     * Convert 7 bit septets to string.
      * 
-     * @param data
-     *            7 bit data.
-     * @return Coded string.
+     * @param septets
+     *            7 bit septets.
+     * @param count
+     *            Amount of septets.
+     * @return Decoded string.
      */
-    // CHECKSTYLE:OFF
-    private static String decode7Bit(final String data) {
-        int[] bytes = new int[data.length() / 2];
-        // Convert data to the byte array.
-        for (int pos = 0; pos < bytes.length; ++pos) {
-            bytes[pos] = getInteger(data, 2 * pos);
-        }
-        // Get data at 7 bits at the time
-        int newData = 0;
-        int off = 0;
-        int ch = 0;
-        int mask = 1;
-        long chCnt = 0;
-        boolean[] escch = new boolean[1];
-        StringBuilder sb = new StringBuilder();
-        for (int pos = 0; pos < bytes.length; ++pos) {
-            newData = bytes[pos] << off;
-            for (long bitpos = 0; bitpos < 8; ++bitpos) {
-                if (mask == 0x80) {
-                    int newCh = smsToASCII(ch, escch);
-                    if (newCh != 0) {
-                        sb.append((char) newCh);
-                    }
-                    off = 0;
-                    ch = 0;
-                    mask = 1;
-                    newData = newData >> 7;
-                    if (++chCnt == data.length()) {
-                        break;
-                    }
-                }
-                ch |= (newData & mask);
-                mask = mask << 1;
-                ++off;
+    private static String decode7Bit(final byte[] septets, final int count) {
+        StringBuilder sb = new StringBuilder(count);
+        boolean escaped = false;
+        for (int pos = 0; pos != count; ++pos) {
+            int septet = septets[pos];
+            if (septet == GXGsm7Charset.ESCAPE && !escaped) {
+                escaped = true;
+            } else {
+                sb.append(GXGsm7Charset.getChar(septet, escaped));
+                escaped = false;
             }
         }
-        if (mask == 0x80) {
-            int newCh = smsToASCII(ch, escch);
-            if (newCh != 0) {
-                sb.append((char) newCh);
+        return sb.toString();
+    }
+
+    /**
+     * Get BCD value from swapped semi octets.
+     * 
+     * @param value
+     *            Swapped semi octets.
+     * @return Value.
+     */
+    // CHECKSTYLE:OFF
+    private static int getSwappedBcd(final int value) {
+        return 10 * (value & 0x0F) + ((value >> 4) & 0x0F);
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Get phone number from semi octets.
+     * 
+     * @param buff
+     *            PDU.
+     * @param octets
+     *            Amount of octets.
+     * @return Phone number digits.
+     */
+    // CHECKSTYLE:OFF
+    private static String getNumber(final ByteBuffer buff, final int octets) {
+        StringBuilder sb = new StringBuilder(2 * octets);
+        for (int pos = 0; pos != octets; ++pos) {
+            int value = buff.get() & 0xFF;
+            sb.append(HEX_CHARS[value & 0x0F]);
+            // Skip trailing F.
+            if ((value & 0xF0) != 0xF0) {
+                sb.append(HEX_CHARS[value >> 4]);
             }
         }
         return sb.toString();
@@ -734,147 +836,333 @@ final class GXSMSPdu {
     // CHECKSTYLE:ON
 
     /**
-     * Convert hex string to string data.
+     * Get address.
      * 
-     * @param data
-     *            Hex string to code.
-     * @return String data.
+     * @param buff
+     *            PDU.
+     * @return Address.
      */
-    private static String decode8Bit(final String data) {
-        StringBuilder sb = new StringBuilder();
-        for (int pos = 0; pos != data.length(); pos += 2) {
-            sb.append((char) getInteger(data, pos));
+    // CHECKSTYLE:OFF
+    private static String getAddress(final ByteBuffer buff) {
+        // Amount of digits.
+        int len = buff.get() & 0xFF;
+        int type = buff.get() & 0xFF;
+        int octets = (len + 1) / 2;
+        // If alphanumeric address.
+        if ((type & 0x70) == 0x50) {
+            byte[] tmp = new byte[octets];
+            buff.get(tmp);
+            int count = 8 * octets / 7;
+            byte[] septets = new byte[count];
+            unpack7Bit(tmp, 0, 0, septets, count);
+            return decode7Bit(septets, count);
         }
-        return sb.toString();
+        String number = getNumber(buff, octets);
+        // If international format.
+        if ((type & 0x70) == 0x10) {
+            return "+" + number;
+        }
+        return number;
     }
+    // CHECKSTYLE:ON
 
     /**
-     * Decode UNICODE data.
+     * Get code type from data coding scheme.
      * 
-     * @param data
-     *            UNICODE string.
-     * @return Decoded string.
+     * @param dcs
+     *            Data coding scheme.
+     * @return Message code type.
      */
     // CHECKSTYLE:OFF
-    private static String decodeUnicode(final String data) {
-        StringBuilder sb = new StringBuilder();
-        for (int pos = 0; pos != data.length(); pos += 4) {
-            int value = getInteger(data, pos) << 8;
-            value |= getInteger(data, pos + 2);
-            sb.append((char) value);
+    private static MessageCodeType getCodeType(final int dcs) {
+        int alphabet;
+        if ((dcs & 0xC0) == 0) {
+            // General data coding.
+            alphabet = (dcs >> 2) & 3;
+        } else if ((dcs & 0xF0) == 0xF0) {
+            // Data coding/message class.
+            alphabet = (dcs >> 2) & 1;
+        } else if ((dcs & 0xF0) == 0xE0) {
+            // Message waiting indication with UCS2 data.
+            alphabet = 2;
+        } else {
+            alphabet = 0;
         }
-        return sb.toString();
+        if (alphabet == 1) {
+            return MessageCodeType.BITS_8;
+        }
+        if (alphabet == 2) {
+            return MessageCodeType.UNICODE;
+        }
+        return MessageCodeType.BITS_7;
     }
     // CHECKSTYLE:ON
 
     /**
-     * Encode string to SMS message.
+     * Get service centre time stamp.
+     * 
+     * @param buff
+     *            PDU.
+     * @return Time stamp.
+     */
+    // CHECKSTYLE:OFF
+    private static java.util.Date getTime(final ByteBuffer buff) {
+        int year = 2000 + getSwappedBcd(buff.get());
+        int month = getSwappedBcd(buff.get());
+        int day = getSwappedBcd(buff.get());
+        int hour = getSwappedBcd(buff.get());
+        int minute = getSwappedBcd(buff.get());
+        int second = getSwappedBcd(buff.get());
+        // Time zone in quarters of an hour. Bit 3 is the sign.
+        int tz = buff.get();
+        int deviation = getSwappedBcd(tz & 0xF7);
+        if ((tz & 0x08) != 0) {
+            deviation = -deviation;
+        }
+        java.util.Calendar calendar =
+                Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        calendar.add(Calendar.MINUTE, -15 * deviation);
+        return calendar.getTime();
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Get concatenation information from the user data header.
+     * 
+     * @param ud
+     *            User data.
+     * @param udhLength
+     *            Length of the header including the length octet.
+     * @param msg
+     *            SMS message where concatenation information is filled.
+     */
+    // CHECKSTYLE:OFF
+    private static void getHeader(final byte[] ud, final int udhLength,
+            final GXSMSMessage msg) {
+        int pos = 1;
+        while (pos + 1 < udhLength) {
+            int iei = ud[pos] & 0xFF;
+            int len = ud[pos + 1] & 0xFF;
+            pos += 2;
+            if (pos + len > udhLength) {
+                break;
+            }
+            if (iei == 0 && len == 3) {
+                // Concatenated short message, 8 bit reference.
+                msg.setSegmentation(ud[pos] & 0xFF, ud[pos + 1] & 0xFF,
+                        ud[pos + 2] & 0xFF);
+            } else if (iei == 8 && len == 4) {
+                // Concatenated short message, 16 bit reference.
+                msg.setSegmentation(
+                        (ud[pos] & 0xFF) << 8 | (ud[pos + 1] & 0xFF),
+                        ud[pos + 2] & 0xFF, ud[pos + 3] & 0xFF);
+            }
+            pos += len;
+        }
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Encode hex string to SMS message.
      * 
      * @param data
-     *            String to encode.
+     *            Hex string to encode.
      * @param msg
      *            SMS message where data is filled.
      */
-    // CHECKSTYLE:OFF
     static void encode(final String data, final GXSMSMessage msg) {
         if (data.length() < 1) {
             throw new IllegalArgumentException("Invalid data.");
         }
-        int index = 0;
-        // Service Center Number length
-        int servCenterlen = getInteger(data, index);
-        index += 2;
-        // Type-of-address of the SMSC.
-        int smscType = getInteger(data, index);
-        index += 2;
-        // Get Service Center number
-        if (servCenterlen > 0) {
-            int sz = 2 * servCenterlen - 1;
-            if (data.length() < index + sz) {
-                throw new IllegalArgumentException("Invalid data.");
+        encode(ByteBuffer.wrap(fromHex(data)), msg);
+        msg.setHash(hash(data));
+    }
+
+    /**
+     * Get 64-bit FNV-1a hash of the PDU. Hex digits are case insensitive.
+     * 
+     * @param pdu
+     *            PDU as hex string.
+     * @return Hash. Never zero.
+     */
+    // CHECKSTYLE:OFF
+    static long hash(final String pdu) {
+        long hash = 0xcbf29ce484222325L;
+        for (int pos = 0; pos != pdu.length(); ++pos) {
+            char ch = Character.toUpperCase(pdu.charAt(pos));
+            if (!Character.isWhitespace(ch)) {
+                hash ^= ch;
+                hash *= 0x100000001b3L;
+            }
+        }
+        if (hash == 0) {
+            return 1;
+        }
+        return hash;
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Encode PDU to SMS message.
+     * 
+     * @param buff
+     *            PDU octets.
+     * @param msg
+     *            SMS message where data is filled.
+     */
+    // CHECKSTYLE:OFF
+    static void encode(final ByteBuffer buff, final GXSMSMessage msg) {
+        if (!buff.hasRemaining()) {
+            throw new IllegalArgumentException("Invalid data.");
+        }
+        try {
+            // Service Center Number length in octets.
+            int servCenterlen = buff.get() & 0xFF;
+            if (servCenterlen > 0) {
+                // Type-of-address of the SMSC.
+                int smscType = buff.get() & 0xFF;
+                String serviceCenterNumber =
+                        getNumber(buff, servCenterlen - 1);
+                // If international format.
+                if ((smscType & 0x70) == 0x10) {
+                    serviceCenterNumber = "+" + serviceCenterNumber;
+                }
+                msg.setServiceCenterNumber(serviceCenterNumber);
             }
-            String serviceCenterNumber = data.substring(index, index + sz);
-            // If international format.
-            if (smscType == 0x91) {
-                serviceCenterNumber = "+" + serviceCenterNumber;
+            // First octet of the PDU
+            int fo = buff.get() & 0xFF;
+            boolean submit = (fo & 0x03) == 1;
+            if (submit) {
+                // TP-MR. Message reference.
+                buff.get();
             }
-            msg.setServiceCenterNumber(serviceCenterNumber);
-            index += sz;
-        }
-        // First octet of the SMS-DELIVER PDU
-        getInteger(data, index);
-        index += 2;
-        // Length of the sender number
-        int senderLen = getInteger(data, index);
-        index += 2;
-        senderLen += senderLen % 2;
-        // Type-of-address of the sender number.
-        int senderType = getInteger(data, index);
-        index += 2;
-        // Get Sender number
-        String phoneNumber = getString(data, index, senderLen, true);
-        // If international format.
-        if (senderType == 0x91) {
-            phoneNumber = "+" + phoneNumber;
-        }
-        msg.setPhoneNumber(phoneNumber);
-        index += senderLen;
-        // TP-PID. Protocol identifier.
-        getInteger(data, index);
-        index += 2;
-        // TP-DCS Data coding scheme
-        MessageCodeType type =
-                MessageCodeType.forValue(getInteger(data, index));
-        msg.setCodeType(type);
-        index += 2;
-        int year = getInteger(data, index);
-        index += 2;
-        if (year != 0xAA) {
-            year += 2000;
-            int month = getInteger(data, index);
-            index += 2;
-            int day = getInteger(data, index);
-            index += 2;
-            int hour = getInteger(data, index);
-            index += 2;
-            int minute = getInteger(data, index);
-            index += 2;
-            int second = getInteger(data, index);
-            index += 2;
-            // time zone
-            getInteger(data, index);
-            index += 2;
-            java.util.Calendar calendar =
-                    Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            calendar.set(year, month, day, hour, minute, second);
-            msg.setTime(calendar.getTime());
-        }
-        // TP-UDL. User data length, length of message.
-        // The TP-DCS field indicated 7-bit data, so the length here is the
-        // number of septets (10).
-        // If the TP-DCS field were set to indicate 8-bit data or Unicode, the
-        // length would be the number of octets (9).
-        int dataLen = getInteger(data, index);
-        index += 2;
-        String buff = getString(data, index, 2 * dataLen, false);
-        index += dataLen;
-        // TP-UD. Message 8-bit octets representing 7-bit data.
-        // When DataCodingScheme = 0, PDU code is coded from 7bit charactor (see
-        // GSM 03.38).
-        if (type == MessageCodeType.BITS_7) {
-            msg.setData(decode7Bit(buff));
-        } else if (type == MessageCodeType.BITS_8) {
-            // When DataCodingScheme = 4, PDU code is coded using 8 bits
-            // codec.
-            msg.setData(decode8Bit(buff));
-        } else if (type == MessageCodeType.UNICODE) {
-            // When DataCodingScheme = 8, PDU code is coded from Unicode
-            // character
-            // (see GSM 03.38).
-            msg.setData(decodeUnicode(buff));
-        } else {
-            throw new IllegalArgumentException("Invalid data coding scheme");
+            // Sender or receiver number.
+            msg.setPhoneNumber(getAddress(buff));
+            // TP-PID. Protocol identifier.
+            buff.get();
+            // TP-DCS Data coding scheme
+            MessageCodeType type = getCodeType(buff.get() & 0xFF);
+            msg.setCodeType(type);
+            if (submit) {
+                // Skip TP-VP.
+                int vpf = (fo >> 3) & 0x03;
+                if (vpf == 2) {
+                    buff.get();
+                } else if (vpf != 0) {
+                    buff.position(buff.position() + 7);
+                }
+            } else {
+                msg.setTime(getTime(buff));
+            }
+            // TP-UDL. User data length, length of message.
+            // The TP-DCS field indicated 7-bit data, so the length here is
+            // the number of septets. If the TP-DCS field were set to indicate
+            // 8-bit data or Unicode, the length would be the number of
+            // octets.
+            int dataLen = buff.get() & 0xFF;
+            int octets = dataLen;
+            if (type == MessageCodeType.BITS_7) {
+                octets = getPackedLength(dataLen);
+            }
+            byte[] ud = new byte[Math.min(octets, buff.remaining())];
+            buff.get(ud);
+            // Length of the user data header.
+            int udhLength = 0;
+            if ((fo & 0x40) != 0 && ud.length != 0) {
+                udhLength = (ud[0] & 0xFF) + 1;
+                if (udhLength > ud.length) {
+                    throw new IllegalArgumentException("Invalid data.");
+                }
+                getHeader(ud, udhLength, msg);
+            }
+            // TP-UD.
+            if (type == MessageCodeType.BITS_7) {
+                // PDU code is coded from 7bit charactor (see GSM 03.38).
+                // Header is padded to the septet boundary.
+                int udhSeptets = (8 * udhLength + 6) / 7;
+                int count = Math.min(dataLen, 8 * ud.length / 7) - udhSeptets;
+                if (count < 0) {
+                    count = 0;
+                }
+                byte[] septets = new byte[count];
+                unpack7Bit(ud, 0, 7 * udhSeptets, septets, count);
+                msg.setData(decode7Bit(septets, count));
+            } else if (type == MessageCodeType.BITS_8) {
+                msg.setData(new String(ud, udhLength, ud.length - udhLength,
+                        StandardCharsets.ISO_8859_1));
+            } else {
+                msg.setData(new String(ud, udhLength,
+                        (ud.length - udhLength) & ~1,
+                        StandardCharsets.UTF_16BE));
+            }
+        } catch (java.nio.BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Invalid data.");
+        }
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Is PDU SMS-STATUS-REPORT. Modem saves status reports to the same
+     * memory with the received messages when they are indicated with
+     * +CDSI.
+     * 
+     * @param data
+     *            PDU as hex string.
+     * @return True, if TP-MTI of the first octet is status report.
+     */
+    // CHECKSTYLE:OFF
+    static boolean isStatusReport(final String data) {
+        String tmp = data.trim();
+        if (tmp.length() < 2) {
+            return false;
+        }
+        // Skip SMSC information.
+        int pos = 2 + 2 * ((getHexValue(tmp.charAt(0)) << 4)
+                | getHexValue(tmp.charAt(1)));
+        if (tmp.length() < pos + 2) {
+            return false;
+        }
+        // TP-MTI is in the lowest bits of the first octet.
+        return (getHexValue(tmp.charAt(pos + 1)) & 0x03) == 2;
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Decode SMS-STATUS-REPORT PDU.
+     * 
+     * @param data
+     *            PDU as hex string.
+     * @return Status report.
+     */
+    // CHECKSTYLE:OFF
+    static GXSMSDeliveryReport decodeStatusReport(final String data) {
+        ByteBuffer buff = ByteBuffer.wrap(fromHex(data.trim()));
+        try {
+            // Skip SMSC information.
+            int servCenterlen = buff.get() & 0xFF;
+            buff.position(buff.position() + servCenterlen);
+            int fo = buff.get() & 0xFF;
+            if ((fo & 0x03) != 2) {
+                throw new IllegalArgumentException(
+                        "Invalid status report.");
+            }
+            GXSMSDeliveryReport report = new GXSMSDeliveryReport();
+            // TP-MR.
+            report.setReference(buff.get() & 0xFF);
+            // TP-RA.
+            report.setRecipient(getAddress(buff));
+            // TP-SCTS.
+            report.setServiceCenterTime(getTime(buff));
+            // TP-DT.
+            report.setDischargeTime(getTime(buff));
+            // TP-ST.
+            report.setStatus(buff.get() & 0xFF);
+            return report;
+        } catch (java.nio.BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Invalid data.");
         }
     }
     // CHECKSTYLE:ON
-}
\ No newline at end of file
+}
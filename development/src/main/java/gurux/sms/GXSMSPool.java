@@ -0,0 +1,386 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import gurux.sms.enums.NetworkState;
+
+/**
+ * Modem pool sends messages using several modems.
+ * 
+ * Message is sent with the healthy modem that has the shortest expected wait
+ * time. Wait time is estimated from the send queue length and the recent send
+ * time of the modem. Send time is measured from the moment modem starts to
+ * send the message, so time in the queue is not counted twice. Modems are
+ * checked periodically and modem that is not registered to the network or
+ * has no signal is not used until it recovers. Modem that fails several
+ * sends in a row is not used until the next health check.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSPool implements AutoCloseable {
+    /**
+     * Default health check interval in seconds.
+     */
+    static final int DEFAULT_CHECK_INTERVAL = 60;
+
+    /**
+     * Signal strength is not known or detectable.
+     */
+    static final int UNKNOWN_RSSI = 99;
+
+    /**
+     * Weight of the latest send time in the average send time.
+     */
+    static final double LATENCY_WEIGHT = 0.2;
+
+    /**
+     * Amount of failed sends in a row before modem is not used.
+     */
+    static final int MAX_FAILURES = 3;
+
+    /**
+     * Modems in the pool.
+     */
+    private final List<Member> members = new ArrayList<Member>();
+
+    /**
+     * Health check interval in seconds.
+     */
+    private int checkInterval = DEFAULT_CHECK_INTERVAL;
+
+    /**
+     * Health check thread.
+     */
+    private Thread checker;
+
+    /**
+     * Modem and its state.
+     */
+    private static final class Member {
+        /**
+         * Modem.
+         */
+        private final GXSMS media;
+        /**
+         * Is modem usable.
+         */
+        private volatile boolean healthy;
+        /**
+         * Average send time in milliseconds.
+         */
+        private volatile double latency;
+        /**
+         * Time when the previous send was completed.
+         */
+        private long completed;
+        /**
+         * Amount of failed sends in a row.
+         */
+        private volatile int failures;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Modem.
+         */
+        Member(final GXSMS value) {
+            media = value;
+        }
+
+        /**
+         * Get expected wait time before new message is sent.
+         * 
+         * @return Expected wait time.
+         */
+        double getCost() {
+            return (media.getSendQueueLength() + 1) * Math.max(latency, 1)
+                    * (failures + 1);
+        }
+
+        /**
+         * Send is completed. Messages are sent one at the time in the queued
+         * order, so the send started when it was queued or when the previous
+         * send completed.
+         * 
+         * @param queued
+         *            Time when message was queued.
+         * @param failed
+         *            Did the send fail.
+         */
+        synchronized void completed(final long queued,
+                final boolean failed) {
+            long now = System.nanoTime();
+            // CHECKSTYLE:OFF
+            double time = (now - Math.max(queued, completed)) / 1000000.0;
+            // CHECKSTYLE:ON
+            completed = now;
+            latency = (1 - LATENCY_WEIGHT) * latency + LATENCY_WEIGHT * time;
+            if (failed) {
+                if (++failures >= MAX_FAILURES) {
+                    healthy = false;
+                }
+            } else {
+                failures = 0;
+            }
+        }
+    }
+
+    /**
+     * Add modem to the pool.
+     * 
+     * @param media
+     *            Modem.
+     */
+    public final void add(final GXSMS media) {
+        Member m = new Member(media);
+        m.healthy = media.isOpen();
+        synchronized (members) {
+            members.add(m);
+        }
+    }
+
+    /**
+     * Remove modem from the pool. Modem is not closed.
+     * 
+     * @param media
+     *            Modem.
+     */
+    public final void remove(final GXSMS media) {
+        synchronized (members) {
+            for (int pos = 0; pos != members.size(); ++pos) {
+                if (members.get(pos).media == media) {
+                    members.remove(pos);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get modems in the pool.
+     * 
+     * @return Modems.
+     */
+    public final GXSMS[] getMedias() {
+        synchronized (members) {
+            GXSMS[] tmp = new GXSMS[members.size()];
+            for (int pos = 0; pos != tmp.length; ++pos) {
+                tmp[pos] = members.get(pos).media;
+            }
+            return tmp;
+        }
+    }
+
+    /**
+     * Is modem used to send messages.
+     * 
+     * @param media
+     *            Modem.
+     * @return True, if modem is healthy.
+     */
+    public final boolean isHealthy(final GXSMS media) {
+        synchronized (members) {
+            for (Member it : members) {
+                if (it.media == media) {
+                    return it.healthy;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get health check interval.
+     * 
+     * @return Health check interval in seconds.
+     */
+    public final int getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Set health check interval. Zero disables health checks.
+     * 
+     * @param value
+     *            Health check interval in seconds.
+     */
+    public final void setCheckInterval(final int value) {
+        checkInterval = value;
+    }
+
+    /**
+     * Open all modems. Modem that fails to open is not used.
+     * 
+     * @throws Exception
+     *             No modem can be opened.
+     */
+    public final void open() throws Exception {
+        close();
+        Exception error = null;
+        int count = 0;
+        for (Member it : getMembers()) {
+            try {
+                it.media.open();
+                it.healthy = true;
+                ++count;
+            } catch (Exception ex) {
+                it.healthy = false;
+                error = ex;
+            }
+        }
+        if (count == 0 && error != null) {
+            throw error;
+        }
+        if (checkInterval != 0) {
+            checker = new Thread("GXSMSPool checker") {
+                @Override
+                public void run() {
+                    check();
+                }
+            };
+            checker.setDaemon(true);
+            checker.start();
+        }
+    }
+
+    @Override
+    public final void close() {
+        if (checker != null) {
+            checker.interrupt();
+            checker = null;
+        }
+        for (Member it : getMembers()) {
+            it.healthy = false;
+            it.media.close();
+        }
+    }
+
+    /**
+     * Get copy of the members.
+     * 
+     * @return Members.
+     */
+    private Member[] getMembers() {
+        synchronized (members) {
+            return members.toArray(new Member[members.size()]);
+        }
+    }
+
+    /**
+     * Queue SMS message to the modem that has the shortest expected wait
+     * time.
+     * 
+     * @param msg
+     *            SMS message to send.
+     * @return Completed with the message reference when the message is sent.
+     */
+    public final CompletableFuture<Integer> sendAsync(final GXSMSMessage msg) {
+        Member target = null;
+        double cost = 0;
+        for (Member it : getMembers()) {
+            if (it.healthy) {
+                double tmp = it.getCost();
+                if (target == null || tmp < cost) {
+                    target = it;
+                    cost = tmp;
+                }
+            }
+        }
+        if (target == null) {
+            CompletableFuture<Integer> future =
+                    new CompletableFuture<Integer>();
+            future.completeExceptionally(
+                    new IllegalStateException("No usable modem."));
+            return future;
+        }
+        final Member member = target;
+        final long start = System.nanoTime();
+        CompletableFuture<Integer> future = member.media.sendAsync(msg);
+        future.whenComplete((reference, ex) -> {
+            member.completed(start, ex != null);
+        });
+        return future;
+    }
+
+    /**
+     * Check is modem usable.
+     * 
+     * @param media
+     *            Modem.
+     * @return True, if modem is registered to the network and has signal.
+     */
+    static boolean isUsable(final GXSMS media) {
+        if (!media.isOpen()) {
+            return false;
+        }
+        NetworkState state = media.getNetworkState();
+        if (state != NetworkState.HOME && state != NetworkState.ROAMING) {
+            return false;
+        }
+        return media.getSignalQuality().getRssi() != UNKNOWN_RSSI;
+    }
+
+    /**
+     * Check modems periodically.
+     */
+    private void check() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // CHECKSTYLE:OFF
+                Thread.sleep(checkInterval * 1000L);
+                // CHECKSTYLE:ON
+                for (Member it : getMembers()) {
+                    try {
+                        it.healthy = isUsable(it.media);
+                        if (it.healthy) {
+                            // Failed modem is tried again.
+                            it.failures = 0;
+                        }
+                    } catch (RuntimeException ex) {
+                        it.healthy = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Pool is closed.
+        }
+    }
+}
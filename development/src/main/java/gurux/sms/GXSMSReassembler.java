@@ -0,0 +1,342 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class joins received concatenated message segments.
+ * 
+ * Only a limited amount of segments is buffered. When the limit is reached,
+ * the least recently updated message is dropped. Incomplete messages are
+ * dropped after time out. Segments of the dropped messages are kept until
+ * they are taken, so they can be removed from the modem memory.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSReassembler {
+    /**
+     * Default amount of buffered segments.
+     */
+    static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * Default time out in seconds.
+     */
+    static final int DEFAULT_TIMEOUT = 600;
+
+    /**
+     * Incomplete messages in least recently updated order.
+     */
+    private final Map<String, Segments> messages =
+            new LinkedHashMap<String, Segments>(16, 0.75f, true);
+
+    /**
+     * Incomplete messages in started order. Expiry stops at the first
+     * message that is not timed out.
+     */
+    private final Map<String, Segments> started =
+            new LinkedHashMap<String, Segments>();
+
+    /**
+     * Maximum amount of buffered segments.
+     */
+    private int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * Time out in seconds.
+     */
+    private int timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Amount of buffered segments.
+     */
+    private int count;
+
+    /**
+     * Segments of the dropped messages.
+     */
+    private final List<GXSMSMessage> dropped = new ArrayList<GXSMSMessage>();
+
+    /**
+     * Amount of dropped messages because capacity was exceeded.
+     */
+    private long evictions;
+
+    /**
+     * Amount of dropped messages because of time out.
+     */
+    private long timeouts;
+
+    /**
+     * Received segments of one message.
+     */
+    private static final class Segments {
+        /**
+         * Message key.
+         */
+        private final String key;
+        /**
+         * Received segments. Null if not received yet.
+         */
+        private final GXSMSMessage[] items;
+        /**
+         * Amount of received segments.
+         */
+        private int received;
+        /**
+         * When first segment was received.
+         */
+        private final long time;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Message key.
+         * @param total
+         *            Amount of segments.
+         * @param now
+         *            Current time.
+         */
+        Segments(final String value, final int total, final long now) {
+            key = value;
+            items = new GXSMSMessage[total];
+            time = now;
+        }
+    }
+
+    /**
+     * Get maximum amount of buffered segments.
+     * 
+     * @return Maximum amount of buffered segments.
+     */
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Set maximum amount of buffered segments.
+     * 
+     * @param value
+     *            Maximum amount of buffered segments.
+     */
+    synchronized void setCapacity(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        capacity = value;
+        evict();
+    }
+
+    /**
+     * Get time out in seconds.
+     * 
+     * @return Time out in seconds.
+     */
+    synchronized int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set time out in seconds.
+     * 
+     * @param value
+     *            Time out in seconds.
+     */
+    synchronized void setTimeout(final int value) {
+        timeout = value;
+    }
+
+    /**
+     * Get amount of messages dropped because capacity was exceeded.
+     * 
+     * @return Amount of dropped messages.
+     */
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get amount of messages dropped because of time out.
+     * 
+     * @return Amount of dropped messages.
+     */
+    synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Take segments of the dropped messages.
+     * 
+     * @return Dropped segments.
+     */
+    synchronized List<GXSMSMessage> takeDropped() {
+        List<GXSMSMessage> tmp = new ArrayList<GXSMSMessage>(dropped);
+        dropped.clear();
+        return tmp;
+    }
+
+    /**
+     * Drop incomplete message.
+     * 
+     * @param item
+     *            Received segments.
+     */
+    private void drop(final Segments item) {
+        count -= item.received;
+        for (GXSMSMessage it : item.items) {
+            if (it != null) {
+                dropped.add(it);
+            }
+        }
+    }
+
+    /**
+     * Add received message.
+     * 
+     * @param msg
+     *            Received message or segment.
+     * @return Complete message or null, if all segments are not received yet.
+     */
+    synchronized GXSMSMessage add(final GXSMSMessage msg) {
+        int total = msg.getSegmentCount();
+        int segment = msg.getSegment();
+        if (total < 2 || segment < 1 || segment > total) {
+            return msg;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        String key = msg.getPhoneNumber() + "/" + msg.getReference() + "/"
+                + total;
+        Segments item = messages.get(key);
+        if (item == null) {
+            item = new Segments(key, total, now);
+            messages.put(key, item);
+            started.put(key, item);
+        }
+        // Duplicate segment is ignored.
+        if (item.items[segment - 1] == null) {
+            item.items[segment - 1] = msg;
+            ++item.received;
+            ++count;
+        }
+        if (item.received == total) {
+            messages.remove(key);
+            started.remove(key);
+            count -= total;
+            return join(item.items);
+        }
+        evict();
+        return null;
+    }
+
+    /**
+     * Drop least recently updated messages until capacity is not exceeded.
+     */
+    private void evict() {
+        Iterator<Segments> it = messages.values().iterator();
+        while (count > capacity && it.hasNext()) {
+            Segments item = it.next();
+            drop(item);
+            it.remove();
+            started.remove(item.key);
+            ++evictions;
+        }
+    }
+
+    /**
+     * Drop timed out messages.
+     */
+    synchronized void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    /**
+     * Drop timed out messages.
+     * 
+     * @param now
+     *            Current time.
+     */
+    private void expire(final long now) {
+        // CHECKSTYLE:OFF
+        long limit = now - 1000L * timeout;
+        // CHECKSTYLE:ON
+        Iterator<Segments> it = started.values().iterator();
+        while (it.hasNext()) {
+            Segments item = it.next();
+            if (item.time >= limit) {
+                // Later messages are started after this one.
+                break;
+            }
+            drop(item);
+            it.remove();
+            messages.remove(item.key);
+            ++timeouts;
+        }
+    }
+
+    /**
+     * Join segments to one message.
+     * 
+     * @param items
+     *            Segments in order.
+     * @return Joined message.
+     */
+    private static GXSMSMessage join(final GXSMSMessage[] items) {
+        GXSMSMessage first = items[0];
+        StringBuilder sb = new StringBuilder();
+        for (GXSMSMessage it : items) {
+            sb.append(it.getData());
+        }
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setData(sb.toString());
+        msg.setPhoneNumber(first.getPhoneNumber());
+        msg.setServiceCenterNumber(first.getServiceCenterNumber());
+        msg.setTime(first.getTime());
+        msg.setCodeType(first.getCodeType());
+        msg.setStatus(first.getStatus());
+        msg.setIndex(first.getIndex());
+        msg.setMemory(first.getMemory());
+        msg.setSegmentation(first.getReference(), 1, 1);
+        msg.setParts(items);
+        return msg;
+    }
+}
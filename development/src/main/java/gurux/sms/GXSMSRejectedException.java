@@ -0,0 +1,76 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * Modem or network rejected the message permanently. Sending the same
+ * message again fails in the same way.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSRejectedException extends RuntimeException {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * +CMS ERROR cause.
+     */
+    private final int error;
+
+    /**
+     * Constructor.
+     * 
+     * @param message
+     *            Error message.
+     * @param errorValue
+     *            +CMS ERROR cause.
+     */
+    GXSMSRejectedException(final String message, final int errorValue) {
+        super(message);
+        error = errorValue;
+    }
+
+    /**
+     * Get +CMS ERROR cause.
+     * 
+     * @return Cause from 3GPP TS 27.005.
+     */
+    public final int getError() {
+        return error;
+    }
+}
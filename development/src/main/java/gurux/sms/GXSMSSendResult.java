@@ -0,0 +1,118 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * Result of one sent message.
+ * 
+ * @author Gurux Ltd.
+ */
+public class GXSMSSendResult {
+    /**
+     * Sent message.
+     */
+    private final GXSMSMessage message;
+    /**
+     * Message reference.
+     */
+    private final int reference;
+    /**
+     * Occurred error.
+     */
+    private final RuntimeException error;
+
+    /**
+     * Constructor.
+     * 
+     * @param msg
+     *            Sent message.
+     * @param referenceValue
+     *            Message reference.
+     * @param ex
+     *            Occurred error or null if message is sent.
+     */
+    GXSMSSendResult(final GXSMSMessage msg, final int referenceValue,
+            final RuntimeException ex) {
+        message = msg;
+        reference = referenceValue;
+        error = ex;
+    }
+
+    /**
+     * Get sent message.
+     * 
+     * @return Sent message.
+     */
+    public final GXSMSMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * Get message reference. With concatenated message, reference of the last
+     * segment.
+     * 
+     * @return Message reference.
+     */
+    public final int getReference() {
+        return reference;
+    }
+
+    /**
+     * Get occurred error.
+     * 
+     * @return Occurred error or null if message is sent.
+     */
+    public final RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Is message sent.
+     * 
+     * @return True, if message is sent.
+     */
+    public final boolean isSent() {
+        return error == null;
+    }
+
+    @Override
+    public final String toString() {
+        if (error != null) {
+            return message + " : " + error.getMessage();
+        }
+        return message + " : " + reference;
+    }
+}
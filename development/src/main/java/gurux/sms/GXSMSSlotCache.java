@@ -0,0 +1,190 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+
+import gurux.sms.enums.MemoryType;
+
+/**
+ * Occupied memory indexes of the modem.
+ * 
+ * Bitmap is kept for each memory type. It's updated when the modem
+ * indicates new messages, when messages are listed, written or deleted,
+ * so known messages can be read without scanning empty indexes. Bitmap is
+ * not known before the memory is scanned once or after it's invalidated.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSMSSlotCache {
+    /**
+     * Occupied indexes by memory type. Missing bitmap is not known.
+     */
+    private final Map<MemoryType, BitSet> slots =
+            new EnumMap<MemoryType, BitSet>(MemoryType.class);
+
+    /**
+     * Get memory type from the storage name of the modem.
+     * 
+     * @param name
+     *            Storage name, for example "SM".
+     * @param defaultValue
+     *            Memory type if the name is not known.
+     * @return Memory type.
+     */
+    static MemoryType getMemory(final String name,
+            final MemoryType defaultValue) {
+        String tmp = name.replace("\"", "").trim();
+        if (tmp.equals("SM")) {
+            return MemoryType.SIM;
+        }
+        if (tmp.equals("ME") || tmp.equals("MT")) {
+            return MemoryType.PHONE;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Get occupied indexes.
+     * 
+     * @param memory
+     *            Memory type.
+     * @return Occupied indexes in ascending order or null, if they are not
+     *         known.
+     */
+    synchronized int[] getOccupied(final MemoryType memory) {
+        BitSet tmp = slots.get(memory);
+        if (tmp == null) {
+            return null;
+        }
+        return tmp.stream().toArray();
+    }
+
+    /**
+     * Message is saved to the index. Index is ignored if the bitmap is not
+     * known, because it's found on the next scan.
+     * 
+     * @param memory
+     *            Memory type.
+     * @param index
+     *            Memory index.
+     */
+    synchronized void set(final MemoryType memory, final int index) {
+        BitSet tmp = slots.get(memory);
+        if (tmp != null && index > 0) {
+            tmp.set(index);
+        }
+    }
+
+    /**
+     * Message is deleted from the index.
+     * 
+     * @param memory
+     *            Memory type.
+     * @param index
+     *            Memory index.
+     */
+    synchronized void clear(final MemoryType memory, final int index) {
+        BitSet tmp = slots.get(memory);
+        if (tmp != null && index > 0) {
+            tmp.clear(index);
+        }
+    }
+
+    /**
+     * All messages are deleted from the memory.
+     * 
+     * @param memory
+     *            Memory type.
+     */
+    synchronized void clear(final MemoryType memory) {
+        slots.put(memory, new BitSet());
+    }
+
+    /**
+     * Memory is scanned and occupied indexes are known.
+     * 
+     * @param memory
+     *            Memory type.
+     * @param indexes
+     *            Occupied indexes.
+     */
+    synchronized void update(final MemoryType memory,
+            final Iterable<Integer> indexes) {
+        BitSet tmp = new BitSet();
+        for (int it : indexes) {
+            if (it > 0) {
+                tmp.set(it);
+            }
+        }
+        slots.put(memory, tmp);
+    }
+
+    /**
+     * Compare the bitmap to the amount of messages that the modem reports.
+     * Bitmap is invalidated on mismatch.
+     * 
+     * @param memory
+     *            Memory type.
+     * @param count
+     *            Amount of messages in the memory.
+     */
+    synchronized void check(final MemoryType memory, final int count) {
+        BitSet tmp = slots.get(memory);
+        if (tmp != null && tmp.cardinality() != count) {
+            slots.remove(memory);
+        }
+    }
+
+    /**
+     * Occupied indexes are not known anymore and memory is scanned again.
+     * 
+     * @param memory
+     *            Memory type.
+     */
+    synchronized void invalidate(final MemoryType memory) {
+        slots.remove(memory);
+    }
+
+    /**
+     * Forget all bitmaps. Used when the modem is connected again.
+     */
+    synchronized void reset() {
+        slots.clear();
+    }
+}
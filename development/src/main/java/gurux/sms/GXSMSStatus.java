@@ -0,0 +1,140 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import gurux.sms.enums.NetworkState;
+
+/**
+ * Immutable snapshot of the modem status. All values are read with one
+ * chained command. Value is null if the modem doesn't support it.
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXSMSStatus {
+    /**
+     * When status was read in milliseconds since epoch.
+     */
+    private final long time;
+
+    /**
+     * Signal quality.
+     */
+    private final GXSMSSignalQualityInfo signalQuality;
+
+    /**
+     * Network state.
+     */
+    private final NetworkState networkState;
+
+    /**
+     * Memory capacity.
+     */
+    private final GXSMSMemoryInfo memory;
+
+    /**
+     * Battery charge.
+     */
+    private final GXSMSBatteryInfo battery;
+
+    /**
+     * Constructor.
+     * 
+     * @param readTime
+     *            When status was read in milliseconds since epoch.
+     * @param quality
+     *            Signal quality.
+     * @param state
+     *            Network state.
+     * @param capacity
+     *            Memory capacity.
+     * @param charge
+     *            Battery charge.
+     */
+    GXSMSStatus(final long readTime, final GXSMSSignalQualityInfo quality,
+            final NetworkState state, final GXSMSMemoryInfo capacity,
+            final GXSMSBatteryInfo charge) {
+        time = readTime;
+        signalQuality = quality;
+        networkState = state;
+        memory = capacity;
+        battery = charge;
+    }
+
+    /**
+     * Get time when status was read.
+     * 
+     * @return Time in milliseconds since epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get signal quality.
+     * 
+     * @return Signal quality or null if it's not supported.
+     */
+    public GXSMSSignalQualityInfo getSignalQuality() {
+        return signalQuality;
+    }
+
+    /**
+     * Get network state.
+     * 
+     * @return Network state or null if it's not supported.
+     */
+    public NetworkState getNetworkState() {
+        return networkState;
+    }
+
+    /**
+     * Get used and maximum SMS capacity.
+     * 
+     * @return Memory capacity or null if it's not supported.
+     */
+    public GXSMSMemoryInfo getMemoryCapacity() {
+        return memory;
+    }
+
+    /**
+     * Get battery charge level and average power consumption.
+     * 
+     * @return Battery charge or null if it's not supported.
+     */
+    public GXSMSBatteryInfo getBatteryCharge() {
+        return battery;
+    }
+}
@@ -0,0 +1,245 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Send thread sends queued messages in order. Messages that are waiting in
+ * the queue are sent as one batch.
+ * 
+ * @author Gurux Ltd.
+ */
+class GXSendThread extends Thread {
+    /**
+     * Maximum amount of messages that are sent as one batch.
+     */
+    static final int MAX_BATCH_SIZE = 16;
+
+    /**
+     * Parent component.
+     */
+    private final GXSMS parentMedia;
+
+    /**
+     * Messages to send.
+     */
+    private final BlockingQueue<Request> queue;
+
+    /**
+     * Messages replayed from the journal. They are not limited by the queue
+     * capacity and they are sent before the queued messages.
+     */
+    private final Queue<Request> replayed =
+            new ConcurrentLinkedQueue<Request>();
+
+    /**
+     * Is sender closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Queued message.
+     */
+    private static final class Request {
+        /**
+         * Message to send.
+         */
+        private final GXSMSMessage message;
+        /**
+         * Completed when message is sent.
+         */
+        private final CompletableFuture<Integer> future;
+        /**
+         * Journal id of the message or zero if journal is not used.
+         */
+        private final long id;
+
+        /**
+         * Constructor.
+         * 
+         * @param msg
+         *            Message to send.
+         * @param value
+         *            Completed when message is sent.
+         * @param journalId
+         *            Journal id of the message or zero if journal is not
+         *            used.
+         */
+        Request(final GXSMSMessage msg,
+                final CompletableFuture<Integer> value, final long journalId) {
+            message = msg;
+            future = value;
+            id = journalId;
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent component.
+     * @param capacity
+     *            Maximum amount of queued messages.
+     */
+    GXSendThread(final GXSMS parent, final int capacity) {
+        super("GXSMS sender " + parent.getPortName());
+        parentMedia = parent;
+        queue = new ArrayBlockingQueue<Request>(capacity);
+    }
+
+    /**
+     * Add message to the send queue.
+     * 
+     * @param msg
+     *            Message to send.
+     * @param id
+     *            Journal id of the message or zero if journal is not used.
+     * @return Completed with message reference when message is sent.
+     */
+    final CompletableFuture<Integer> add(final GXSMSMessage msg,
+            final long id) {
+        CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        if (!queue.offer(new Request(msg, future, id))) {
+            if (id != 0) {
+                // Rejected message is not sent from the journal either.
+                parentMedia.completed(id);
+            }
+            future.completeExceptionally(
+                    new IllegalStateException("Send queue is full."));
+        }
+        return future;
+    }
+
+    /**
+     * Add message from the journal to the send queue. Queue capacity doesn't
+     * limit replayed messages.
+     * 
+     * @param msg
+     *            Message to send.
+     * @param id
+     *            Journal id of the message.
+     * @return Completed with message reference when message is sent.
+     */
+    final CompletableFuture<Integer> replay(final GXSMSMessage msg,
+            final long id) {
+        CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        replayed.add(new Request(msg, future, id));
+        return future;
+    }
+
+    /**
+     * Get amount of queued messages.
+     * 
+     * @return Amount of queued messages.
+     */
+    final int getQueueLength() {
+        return replayed.size() + queue.size();
+    }
+
+    /**
+     * Fail all queued messages and stop sending.
+     * 
+     * @param ex
+     *            Reason why messages are not sent.
+     */
+    final void cancel(final RuntimeException ex) {
+        closed = true;
+        List<Request> tmp = new ArrayList<Request>(replayed);
+        replayed.removeAll(tmp);
+        queue.drainTo(tmp);
+        for (Request it : tmp) {
+            it.future.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public final void run() {
+        List<Request> requests = new ArrayList<Request>();
+        List<GXSMSMessage> messages = new ArrayList<GXSMSMessage>();
+        // Interrupt is not seen if it's handled while message is sent.
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            // Replayed messages are sent first.
+            while (requests.size() != MAX_BATCH_SIZE) {
+                Request tmp = replayed.poll();
+                if (tmp == null) {
+                    break;
+                }
+                requests.add(tmp);
+            }
+            if (requests.isEmpty()) {
+                try {
+                    requests.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            // Messages that are already queued are sent as one batch.
+            queue.drainTo(requests, MAX_BATCH_SIZE - requests.size());
+            long[] ids = new long[requests.size()];
+            for (Request it : requests) {
+                ids[messages.size()] = it.id;
+                messages.add(it.message);
+            }
+            try {
+                GXSMSSendResult[] results = parentMedia.sendBatch(messages,
+                        ids);
+                for (int pos = 0; pos != results.length; ++pos) {
+                    if (results[pos].isSent()) {
+                        requests.get(pos).future
+                                .complete(results[pos].getReference());
+                    } else {
+                        requests.get(pos).future
+                                .completeExceptionally(results[pos].getError());
+                    }
+                }
+            } catch (RuntimeException ex) {
+                for (Request it : requests) {
+                    it.future.completeExceptionally(ex);
+                }
+            }
+            requests.clear();
+            messages.clear();
+        }
+        cancel(new IllegalStateException("Media is closed."));
+    }
+}
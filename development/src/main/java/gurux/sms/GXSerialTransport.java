@@ -0,0 +1,109 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import gurux.io.NativeCode;
+
+/**
+ * Serial port transport that uses Gurux native serial port library.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXSerialTransport implements IGXSMSTransport {
+    /**
+     * Serial port handle.
+     */
+    private int hWnd;
+
+    /**
+     * Serial port closing handle.
+     */
+    private long closing;
+
+    /**
+     * Get serial port handle.
+     * 
+     * @return Serial port handle or zero if port is closed.
+     */
+    int getHandle() {
+        return hWnd;
+    }
+
+    @Override
+    public void open(final String port) throws Exception {
+        GXSMS.initialize();
+        long[] tmp = new long[1];
+        hWnd = NativeCode.openSerialPort(port, tmp);
+        closing = tmp[0];
+    }
+
+    @Override
+    public void close() {
+        if (hWnd != 0) {
+            try {
+                NativeCode.closeSerialPort(hWnd, closing);
+            } finally {
+                hWnd = 0;
+                closing = 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return hWnd != 0;
+    }
+
+    @Override
+    public void write(final byte[] data, final int timeout) {
+        NativeCode.write(hWnd, data, timeout);
+    }
+
+    @Override
+    public byte[] read(final int timeout) {
+        return NativeCode.read(hWnd, timeout, closing);
+    }
+
+    @Override
+    public int getBaudRate() {
+        return NativeCode.getBaudRate(hWnd);
+    }
+
+    @Override
+    public void setBaudRate(final int value) {
+        NativeCode.setBaudRate(hWnd, value);
+    }
+}
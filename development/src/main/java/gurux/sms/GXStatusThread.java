@@ -0,0 +1,85 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * Status thread reads the modem status at the given interval, so status
+ * readers don't need to access the serial port.
+ * 
+ * @author Gurux Ltd.
+ */
+class GXStatusThread extends Thread {
+    /**
+     * Parent component.
+     */
+    private final GXSMS parentMedia;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent component.
+     */
+    GXStatusThread(final GXSMS parent) {
+        super("GXSMS status " + parent.getPortName());
+        parentMedia = parent;
+    }
+
+    @Override
+    public final void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            int interval = parentMedia.getStatusInterval();
+            if (interval == 0) {
+                break;
+            }
+            try {
+                parentMedia.getStatus();
+            } catch (RuntimeException ex) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                parentMedia.notifyError(ex);
+            }
+            try {
+                // CHECKSTYLE:OFF
+                Thread.sleep(interval * 1000L);
+                // CHECKSTYLE:ON
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+}
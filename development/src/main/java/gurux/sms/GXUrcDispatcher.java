@@ -0,0 +1,351 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unsolicited result code dispatcher.
+ * 
+ * Received data is split to lines. Line that starts with the registered
+ * prefix is held until it's completed and given to the handler. Other data is
+ * passed through directly, so partial replies like the PDU prompt are not
+ * delayed.
+ * 
+ * @author Gurux Ltd.
+ */
+final class GXUrcDispatcher {
+    /**
+     * At the start of the line.
+     */
+    private static final int LINE_START = 0;
+
+    /**
+     * Line may start with the registered prefix.
+     */
+    private static final int MATCHING = 1;
+
+    /**
+     * Line starts with the registered prefix.
+     */
+    private static final int HOLD = 2;
+
+    /**
+     * Lines that follow URC line are received.
+     */
+    private static final int BODY = 3;
+
+    /**
+     * Line is passed through.
+     */
+    private static final int PASS = 4;
+
+    /**
+     * Registered handler.
+     */
+    private static final class Registration {
+        /**
+         * Line prefix.
+         */
+        private final String prefix;
+        /**
+         * Amount of lines that follow URC line.
+         */
+        private final int bodyLines;
+        /**
+         * Handler.
+         */
+        private final IGXSMSUrcHandler handler;
+
+        /**
+         * Constructor.
+         * 
+         * @param prefixValue
+         *            Line prefix.
+         * @param bodyLinesValue
+         *            Amount of lines that follow URC line.
+         * @param handlerValue
+         *            Handler.
+         */
+        Registration(final String prefixValue, final int bodyLinesValue,
+                final IGXSMSUrcHandler handlerValue) {
+            prefix = prefixValue;
+            bodyLines = bodyLinesValue;
+            handler = handlerValue;
+        }
+    }
+
+    /**
+     * Parent component.
+     */
+    private final GXSMS parentMedia;
+
+    /**
+     * Registered handlers.
+     */
+    private volatile Registration[] handlers = new Registration[0];
+
+    /**
+     * Received line.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Data that is passed to the command waiter.
+     */
+    private final ByteArrayOutputStream solicited =
+            new ByteArrayOutputStream();
+
+    /**
+     * Parser state.
+     */
+    private int state = LINE_START;
+
+    /**
+     * Handler of the held URC.
+     */
+    private Registration current;
+
+    /**
+     * URC line.
+     */
+    private String urc;
+
+    /**
+     * Lines that follow URC line.
+     */
+    private String[] body;
+
+    /**
+     * Amount of received body lines.
+     */
+    private int bodyCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent
+     *            Parent component.
+     */
+    GXUrcDispatcher(final GXSMS parent) {
+        parentMedia = parent;
+    }
+
+    /**
+     * Add handler. Existing handler with the same prefix is replaced.
+     * 
+     * @param prefix
+     *            Line prefix.
+     * @param bodyLines
+     *            Amount of lines that follow URC line.
+     * @param handler
+     *            Handler.
+     */
+    synchronized void add(final String prefix, final int bodyLines,
+            final IGXSMSUrcHandler handler) {
+        if (prefix == null || prefix.length() == 0) {
+            throw new IllegalArgumentException("Invalid prefix.");
+        }
+        remove(prefix);
+        Registration[] tmp = java.util.Arrays.copyOf(handlers,
+                handlers.length + 1);
+        tmp[tmp.length - 1] = new Registration(prefix, bodyLines, handler);
+        handlers = tmp;
+    }
+
+    /**
+     * Remove handler.
+     * 
+     * @param prefix
+     *            Line prefix.
+     */
+    synchronized void remove(final String prefix) {
+        Registration[] tmp = handlers;
+        for (int pos = 0; pos != tmp.length; ++pos) {
+            if (tmp[pos].prefix.equals(prefix)) {
+                Registration[] copy = new Registration[tmp.length - 1];
+                System.arraycopy(tmp, 0, copy, 0, pos);
+                System.arraycopy(tmp, pos + 1, copy, pos, copy.length - pos);
+                handlers = copy;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reset parser state when connection is opened.
+     */
+    void reset() {
+        line.setLength(0);
+        solicited.reset();
+        state = LINE_START;
+        current = null;
+    }
+
+    /**
+     * Find handler for the started line.
+     * 
+     * @return MATCHING if line may start with the prefix, HOLD if handler is
+     *         found and PASS if line doesn't start with any prefix.
+     */
+    private int match() {
+        int ret = PASS;
+        for (Registration it : handlers) {
+            if (line.length() >= it.prefix.length()) {
+                if (line.indexOf(it.prefix) == 0) {
+                    current = it;
+                    return HOLD;
+                }
+            } else if (it.prefix.startsWith(line.toString())) {
+                ret = MATCHING;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Handle received data.
+     * 
+     * @param data
+     *            Received data.
+     * @return Data that is not handled as URC.
+     */
+    byte[] handle(final byte[] data) {
+        for (byte b : data) {
+            char ch = (char) (b & 0xFF);
+            boolean eol = ch == '\r' || ch == '\n';
+            switch (state) {
+            case LINE_START:
+                if (eol) {
+                    solicited.write(b);
+                } else {
+                    line.append(ch);
+                    state = match();
+                    if (state == PASS) {
+                        flush();
+                    }
+                }
+                break;
+            case MATCHING:
+                if (eol) {
+                    flush();
+                    solicited.write(b);
+                    state = LINE_START;
+                } else {
+                    line.append(ch);
+                    state = match();
+                    if (state == PASS) {
+                        flush();
+                    }
+                }
+                break;
+            case HOLD:
+                if (eol) {
+                    urc = line.toString();
+                    line.setLength(0);
+                    body = new String[current.bodyLines];
+                    bodyCount = 0;
+                    if (body.length == 0) {
+                        dispatch();
+                    } else {
+                        state = BODY;
+                    }
+                } else {
+                    line.append(ch);
+                }
+                break;
+            case BODY:
+                if (eol) {
+                    if (line.length() != 0) {
+                        body[bodyCount++] = line.toString();
+                        line.setLength(0);
+                        if (bodyCount == body.length) {
+                            dispatch();
+                        }
+                    }
+                } else {
+                    line.append(ch);
+                }
+                break;
+            default:
+                solicited.write(b);
+                if (eol) {
+                    state = LINE_START;
+                }
+                break;
+            }
+        }
+        byte[] ret = solicited.toByteArray();
+        solicited.reset();
+        return ret;
+    }
+
+    /**
+     * Pass held data through.
+     */
+    private void flush() {
+        byte[] tmp = line.toString().getBytes(StandardCharsets.ISO_8859_1);
+        solicited.write(tmp, 0, tmp.length);
+        line.setLength(0);
+    }
+
+    /**
+     * Give received URC to the handler.
+     */
+    private void dispatch() {
+        Registration tmp = current;
+        current = null;
+        state = LINE_START;
+        boolean handled;
+        try {
+            handled = tmp.handler.onUrc(urc, body);
+        } catch (RuntimeException ex) {
+            // Broken URC is not passed to the command waiter.
+            handled = true;
+            parentMedia.notifyError(ex);
+        }
+        if (!handled) {
+            // Line is reply of the command.
+            StringBuilder sb = new StringBuilder(urc).append("\r\n");
+            for (String it : body) {
+                sb.append(it).append("\r\n");
+            }
+            byte[] data = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+            solicited.write(data, 0, data.length);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * Transport is used to send bytes to the modem and receive bytes from it.
+ * 
+ * Serial port is used in default. Other transports, like the modem simulator,
+ * can be set with {@link GXSMS#setTransport(IGXSMSTransport)}.
+ * 
+ * @author Gurux Ltd.
+ */
+public interface IGXSMSTransport {
+    /**
+     * Open transport.
+     * 
+     * @param port
+     *            Port name.
+     * @throws Exception
+     *             Occurred exception.
+     */
+    void open(String port) throws Exception;
+
+    /**
+     * Close transport. Waiting read returns when transport is closed.
+     */
+    void close();
+
+    /**
+     * Is transport open.
+     * 
+     * @return True, if transport is open.
+     */
+    boolean isOpen();
+
+    /**
+     * Write bytes to the modem.
+     * 
+     * @param data
+     *            Bytes to write.
+     * @param timeout
+     *            Write timeout in milliseconds.
+     */
+    void write(byte[] data, int timeout);
+
+    /**
+     * Read bytes from the modem.
+     * 
+     * @param timeout
+     *            Read timeout in milliseconds.
+     * @return Received bytes. Empty array is returned on timeout or when
+     *         transport is closed.
+     */
+    byte[] read(int timeout);
+
+    /**
+     * Get used baud rate.
+     * 
+     * @return Baud rate.
+     */
+    int getBaudRate();
+
+    /**
+     * Set used baud rate.
+     * 
+     * @param value
+     *            Baud rate.
+     */
+    void setBaudRate(int value);
+}
@@ -0,0 +1,60 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms;
+
+/**
+ * Handler for unsolicited result codes (URC) that the modem sends without a
+ * command, like +CMTI or RING.
+ * 
+ * Handlers are registered with {@link GXSMS#addUrcHandler(String, int,
+ * IGXSMSUrcHandler)} and they are called from the receive thread. Handler must
+ * not send commands to the modem.
+ * 
+ * @author Gurux Ltd.
+ */
+public interface IGXSMSUrcHandler {
+    /**
+     * Handle unsolicited result code.
+     * 
+     * @param line
+     *            URC line.
+     * @param body
+     *            Lines that follow the URC line.
+     * @return True, if URC is handled. False, if the line is a reply of the
+     *         sent command.
+     */
+    boolean onUrc(String line, String[] body);
+}
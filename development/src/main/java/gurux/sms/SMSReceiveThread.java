@@ -32,21 +32,67 @@
 
 package gurux.sms;
 
-import gurux.common.ReceiveEventArgs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import gurux.sms.enums.MessageStatus;
 
 /**
  * This class handles received SMSs and send them to the media component.
  * 
+ * If new message indications are used, only indicated messages are read and
+ * the whole memory is checked only seldom.
+ * 
  * @author Gurux Ltd.
  *
  */
 class SMSReceiveThread extends Thread {
+    /**
+     * How often memory is checked in seconds when new message indications
+     * are used.
+     */
+    static final int NOTIFICATION_CHECK_INTERVAL = 300;
+
     /**
      * Parent component.
      */
     private GXSMS parentMedia;
 
+    /**
+     * Indicated memory indexes, direct delivered messages and status
+     * reports.
+     */
+    private final BlockingQueue<Object> indications =
+            new LinkedBlockingQueue<Object>();
+
+    /**
+     * Whole memory is checked.
+     */
+    private static final Object CHECK = new Object();
+
+    /**
+     * Memory index of the saved status report.
+     */
+    private static final class ReportIndex {
+        /**
+         * Memory index.
+         */
+        private final int index;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            Memory index.
+         */
+        ReportIndex(final int value) {
+            index = value;
+        }
+    }
+
     /**
      * Constructor.
      * 
@@ -54,35 +100,176 @@ class SMSReceiveThread extends Thread {
      *            Parent component.
      */
     SMSReceiveThread(final GXSMS parent) {
+        super("GXSMS receiver");
         parentMedia = parent;
     }
 
     /**
-     * Check are there new SMSs.
+     * New message is saved to the given memory index.
      * 
-     * @throws InterruptedException
+     * @param index
+     *            Memory index.
+     */
+    final void addIndication(final int index) {
+        indications.add(index);
+    }
+
+    /**
+     * New message is delivered directly without saving it.
+     * 
+     * @param msg
+     *            Received message.
+     */
+    final void addMessage(final GXSMSMessage msg) {
+        indications.add(msg);
+    }
+
+    /**
+     * Status report is delivered directly without saving it.
+     * 
+     * @param report
+     *            Received status report.
+     */
+    final void addReport(final GXSMSDeliveryReport report) {
+        indications.add(report);
+    }
+
+    /**
+     * Status report is saved to the given memory index.
+     * 
+     * @param index
+     *            Memory index.
+     */
+    final void addReportIndex(final int index) {
+        indications.add(new ReportIndex(index));
+    }
+
+    /**
+     * Check the whole memory for new messages.
+     */
+    final void addCheck() {
+        indications.add(CHECK);
+    }
+
+    /**
+     * Deliver message to the listeners if it's not processed before.
+     * 
+     * @param msg
+     *            Received message.
+     * @param deleted
+     *            Memory indexes of the processed messages.
+     * @return True, if message is processed.
+     */
+    private boolean notify(final GXSMSMessage msg,
+            final List<Integer> deleted) {
+        if (msg == null) {
+            return false;
+        }
+        try {
+            if (parentMedia.isProcessed(msg)) {
+                // Message was processed, but it was not deleted.
+                parentMedia.processed(msg, deleted);
+                return true;
+            }
+            if (parentMedia.isNew(msg)) {
+                GXSMSMessage tmp = parentMedia.deliver(msg);
+                if (tmp != null) {
+                    parentMedia.processed(tmp, deleted);
+                    return true;
+                }
+            }
+        } catch (RuntimeException ex) {
+            parentMedia.notifyError(ex);
+        }
+        return false;
+    }
+
+    /**
+     * Get how long is waited in seconds before whole memory is checked.
+     * 
+     * @return Check interval in seconds.
+     */
+    private int getCheckInterval() {
+        int interval = parentMedia.getSMSCheckInterval();
+        if (parentMedia.isNotificationsEnabled() || interval == 0) {
+            // Thread is running only because of indications.
+            interval = Math.max(interval, NOTIFICATION_CHECK_INTERVAL);
+        }
+        return interval;
+    }
+
+    /**
+     * Is whole memory checked for new messages.
+     * 
+     * @return True, if memory is checked.
+     */
+    private boolean isChecking() {
+        return parentMedia.getSMSCheckInterval() != 0
+                || parentMedia.isNotificationsEnabled();
+    }
+
+    @Override
+    public final void run() {
+        receive();
+    }
+
+    /**
+     * Check are there new SMSs.
      */
     public final void receive() {
         try {
+            Object it = null;
+            List<Integer> deleted = new ArrayList<Integer>();
             do {
-                for (GXSMSMessage it : parentMedia.read()) {
-                    if (it.getStatus() == MessageStatus.NOT_READ) {
-                        try {
-                            parentMedia.notifyReceived(new ReceiveEventArgs(it,
-                                    it.getPhoneNumber()));
-                        } catch (RuntimeException ex) {
-                            parentMedia.notifyError(ex);
+                try {
+                    if (it instanceof Integer) {
+                        notify(parentMedia.read((Integer) it), deleted);
+                        parentMedia.deleteProcessed(deleted, false);
+                    } else if (it instanceof GXSMSMessage) {
+                        notify((GXSMSMessage) it, deleted);
+                        parentMedia.deleteProcessed(deleted, false);
+                    } else if (it instanceof GXSMSDeliveryReport) {
+                        parentMedia.handleReport((GXSMSDeliveryReport) it);
+                    } else if (it instanceof ReportIndex) {
+                        GXSMSDeliveryReport report = parentMedia
+                                .readReport(((ReportIndex) it).index);
+                        if (report != null) {
+                            parentMedia.handleReport(report);
+                        }
+                    } else if (isChecking()) {
+                        boolean allRead = true;
+                        for (GXSMSMessage msg : parentMedia.read()) {
+                            boolean received =
+                                    msg.getStatus() == MessageStatus.NOT_READ
+                                            || msg.getStatus()
+                                                    == MessageStatus.READ;
+                            // Read messages are deleted one by one if some
+                            // of them is not processed.
+                            if (!notify(msg, deleted) && received) {
+                                allRead = false;
+                            }
                         }
+                        parentMedia.deleteProcessed(deleted, allRead);
                     }
+                } catch (RuntimeException ex) {
+                    parentMedia.notifyError(ex);
+                } finally {
+                    deleted.clear();
                 }
-                // CHECKSTYLE:OFF
-                Thread.sleep(parentMedia.getSMSCheckInterval() * 1000);
-                // CHECKSTYLE:ON
+                try {
+                    if (parentMedia.expireSegments(deleted)) {
+                        parentMedia.deleteProcessed(deleted, false);
+                    }
+                } catch (RuntimeException ex) {
+                    parentMedia.notifyError(ex);
+                } finally {
+                    deleted.clear();
+                }
+                parentMedia.expireReports();
+                it = indications.poll(getCheckInterval(), TimeUnit.SECONDS);
             } while (!Thread.currentThread().isInterrupted());
-        } catch (RuntimeException ex) {
-            parentMedia.notifyError(ex);
         } catch (InterruptedException e) {
-            parentMedia.notifyError(new RuntimeException(e.getMessage()));
+            // Thread is closed.
         }
     }
-}
\ No newline at end of file
+}
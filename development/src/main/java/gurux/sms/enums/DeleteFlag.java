@@ -0,0 +1,82 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.sms.enums;
+
+/**
+ * Which messages are deleted with one AT+CMGD command.
+ */
+public enum DeleteFlag {
+    /**
+     * Read messages are deleted.
+     */
+    READ(1),
+
+    /**
+     * Read and sent messages are deleted.
+     */
+    READ_AND_SENT(2),
+
+    /**
+     * Read, sent and unsent messages are deleted. Unread messages are kept.
+     */
+    READ_AND_STORED(3),
+
+    /**
+     * All messages are deleted.
+     */
+    ALL(4);
+
+    /**
+     * Integer value of enumerator.
+     */
+    private final int intValue;
+
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Integer value of enumerator.
+     */
+    DeleteFlag(final int value) {
+        intValue = value;
+    }
+
+    /**
+     * Get integer value for enumerator.
+     * 
+     * @return Enumerator integer value.
+     */
+    public int getValue() {
+        return intValue;
+    }
+}
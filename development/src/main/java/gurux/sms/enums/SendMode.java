@@ -0,0 +1,56 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.sms.enums;
+
+/**
+ * How SMS messages are sent to the network.
+ */
+public enum SendMode {
+    /**
+     * Messages are sent directly if the modem supports it. Otherwise store
+     * and forward is used.
+     */
+    AUTOMATIC,
+
+    /**
+     * Messages are sent directly to the network with AT+CMGS.
+     */
+    DIRECT,
+
+    /**
+     * Messages are written to the modem memory with AT+CMGW, sent from the
+     * memory with AT+CMSS and removed from the memory.
+     */
+    STORE_AND_FORWARD;
+}
@@ -0,0 +1,94 @@
+package gurux.sms;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the modem reply framer.
+ */
+public class GXReplyFramerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXReplyFramerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXReplyFramerTest.class);
+    }
+
+    /**
+     * Reply is framed when it's received in several chunks.
+     */
+    public final void testChunks() {
+        GXReplyFramer framer = new GXReplyFramer("AT+CSQ\r");
+        assertFalse(framer.append("\r\n+CS"));
+        assertFalse(framer.append("Q: 5,0\r"));
+        assertFalse(framer.append("\n\r\nO"));
+        assertTrue(framer.append("K\r\n"));
+        assertEquals(GXReplyFramer.OK, framer.getResult());
+        assertEquals(Collections.singletonList("+CSQ: 5,0"),
+                framer.getLines());
+        assertEquals("+CSQ: 5,0", framer.getReply());
+        // Framer is used again for the next command.
+        framer.reset("AT\r");
+        assertFalse(framer.isCompleted());
+        assertEquals("", framer.getReply());
+        assertTrue(framer.append("\r\nOK\r\n"));
+        assertEquals("OK", framer.getReply());
+    }
+
+    /**
+     * Echo of the command is skipped.
+     */
+    public final void testEcho() {
+        GXReplyFramer framer = new GXReplyFramer("AT+CPMS?\r");
+        assertTrue(framer.append("AT+CPMS?\r\r\n+CPMS: \"SM\",1,30\r\n"
+                + "\r\nOK\r\n"));
+        assertEquals(Collections.singletonList("+CPMS: \"SM\",1,30"),
+                framer.getLines());
+        // Only the first line can be echo.
+        framer.reset("AT+CGMI\r");
+        assertTrue(framer.append("\r\nGurux\r\nAT+CGMI\r\n\r\nOK\r\n"));
+        assertEquals(Arrays.asList("Gurux", "AT+CGMI"), framer.getLines());
+        assertEquals("Gurux\r\nAT+CGMI", framer.getReply());
+    }
+
+    /**
+     * Error reply keeps the error detail.
+     */
+    public final void testError() {
+        GXReplyFramer framer = new GXReplyFramer("AT+CMGR=5\r");
+        assertTrue(framer.append("\r\n+CMS ERROR: 321\r\n"));
+        assertEquals(GXReplyFramer.ERROR, framer.getResult());
+        assertEquals("+CMS ERROR: 321", framer.getResultCode());
+        assertEquals("ERROR: 321", framer.getReply());
+        framer.reset("AT+CMMS=1\r");
+        assertTrue(framer.append("\r\nERROR\r\n"));
+        assertEquals(GXReplyFramer.ERROR, framer.getResult());
+        assertEquals("ERROR", framer.getReply());
+    }
+
+    /**
+     * Prompt completes the reply without the line feed.
+     */
+    public final void testPrompt() {
+        GXReplyFramer framer = new GXReplyFramer("AT+CMGS=20\r");
+        assertFalse(framer.append("AT+CMGS=20\r\r\n"));
+        assertTrue(framer.append("> "));
+        assertEquals(GXReplyFramer.PROMPT, framer.getResult());
+        assertEquals(">", framer.getReply());
+        assertTrue(framer.getLines().isEmpty());
+    }
+}
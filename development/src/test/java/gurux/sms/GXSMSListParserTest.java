@@ -0,0 +1,88 @@
+package gurux.sms;
+
+import gurux.sms.enums.MessageStatus;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the AT+CMGL listing parser.
+ */
+public class GXSMSListParserTest extends TestCase {
+    /**
+     * SMS-DELIVER PDU of "How are you?" from +31641600986.
+     */
+    private static final String PDU = "07911326040000F0040B911346610089F6"
+            + "0000208062917314080CC8F71D14969741F977FD07";
+
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSListParserTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSListParserTest.class);
+    }
+
+    /**
+     * Listing is parsed line by line until the final result code.
+     */
+    public final void testParse() {
+        GXSMSListParser parser = new GXSMSListParser(null);
+        assertFalse(parser.parse("+CMGL: 1,0,,24"));
+        assertFalse(parser.parse(PDU));
+        assertFalse(parser.parse(""));
+        assertFalse(parser.parse("+CMGL: 3,\"REC READ\",,24"));
+        assertFalse(parser.parse(PDU + "\r"));
+        assertFalse(parser.isCompleted());
+        assertTrue(parser.parse("OK"));
+        assertFalse(parser.isFailed());
+        assertEquals(2, parser.getMessages().size());
+        GXSMSMessage msg = parser.getMessages().get(0);
+        assertEquals(1, msg.getIndex());
+        assertEquals(MessageStatus.NOT_READ, msg.getStatus());
+        assertEquals("How are you?", msg.getData());
+        assertEquals("+31641600986", msg.getPhoneNumber());
+        msg = parser.getMessages().get(1);
+        assertEquals(3, msg.getIndex());
+        assertEquals(MessageStatus.READ, msg.getStatus());
+    }
+
+    /**
+     * Error reply completes the listing as failed.
+     */
+    public final void testError() {
+        GXSMSListParser parser = new GXSMSListParser(null);
+        assertFalse(parser.parse("+CMGL: 1,0,,24"));
+        assertFalse(parser.parse(PDU));
+        assertTrue(parser.parse("+CMS ERROR: 302"));
+        assertTrue(parser.isCompleted());
+        assertTrue(parser.isFailed());
+        parser = new GXSMSListParser(null);
+        assertTrue(parser.parse("ERROR"));
+        assertTrue(parser.isFailed());
+        assertTrue(parser.getMessages().isEmpty());
+    }
+
+    /**
+     * Status is parsed in PDU and text mode.
+     */
+    public final void testStatus() {
+        assertEquals(MessageStatus.NOT_READ,
+                GXSMSListParser.parseStatus("0"));
+        assertEquals(MessageStatus.NOT_SENT,
+                GXSMSListParser.parseStatus("\"STO UNSENT\""));
+        assertEquals(MessageStatus.SENT,
+                GXSMSListParser.parseStatus("\"STO SENT\""));
+        assertEquals(MessageStatus.NOT_READ,
+                GXSMSListParser.parseStatus("\"REC UNREAD\""));
+    }
+}
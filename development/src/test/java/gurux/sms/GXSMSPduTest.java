@@ -0,0 +1,199 @@
+package gurux.sms;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import gurux.sms.enums.MessageCodeType;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the PDU codec.
+ */
+public class GXSMSPduTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSPduTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSPduTest.class);
+    }
+
+    /**
+     * Get 7 bit text that ends with '@', which is coded as zero septet.
+     * 
+     * @param length
+     *            Length of the text.
+     * @return Text.
+     */
+    private static String getText(final int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int pos = 1; pos < length; ++pos) {
+            sb.append((char) ('a' + pos % 26));
+        }
+        return sb.append('@').toString();
+    }
+
+    /**
+     * Get text that repeats the same character.
+     * 
+     * @param ch
+     *            Character.
+     * @param length
+     *            Length of the text.
+     * @return Text.
+     */
+    private static String repeat(final char ch, final int length) {
+        char[] tmp = new char[length];
+        Arrays.fill(tmp, ch);
+        return new String(tmp);
+    }
+
+    /**
+     * Code message and decode the segments.
+     * 
+     * @param data
+     *            Message.
+     * @param type
+     *            Code type.
+     * @param segments
+     *            Expected amount of segments.
+     * @return Data of the segments.
+     */
+    private static String[] roundTrip(final String data,
+            final MessageCodeType type, final int segments) {
+        byte[][] pdus =
+                GXSMSPdu.codeOctets("+358401234567", data, type, 1, false);
+        assertEquals(segments, pdus.length);
+        String[] parts = new String[segments];
+        StringBuilder sb = new StringBuilder();
+        for (int pos = 0; pos != segments; ++pos) {
+            GXSMSMessage msg = new GXSMSMessage();
+            GXSMSPdu.encode(ByteBuffer.wrap(pdus[pos]), msg);
+            assertEquals("+358401234567", msg.getPhoneNumber());
+            assertEquals(type, msg.getCodeType());
+            if (segments != 1) {
+                assertEquals(segments, msg.getSegmentCount());
+                assertEquals(pos + 1, msg.getSegment());
+            }
+            parts[pos] = msg.getData();
+            sb.append(parts[pos]);
+        }
+        assertEquals(data, sb.toString());
+        return parts;
+    }
+
+    /**
+     * Octets are converted to hex and back.
+     */
+    public final void testHex() {
+        byte[] value = new byte[] {0, 0x1A, (byte) 0xAB, (byte) 0xFF};
+        assertEquals("001AABFF", GXSMSPdu.toHex(value));
+        assertTrue(Arrays.equals(value, GXSMSPdu.fromHex("001aabff")));
+        assertEquals("1AAB", GXSMSPdu.toHex(value, 1, 2));
+    }
+
+    /**
+     * 7 bit messages are coded and decoded at the septet boundaries.
+     */
+    public final void testCode7Bit() {
+        // CHECKSTYLE:OFF
+        roundTrip(getText(7), MessageCodeType.BITS_7, 1);
+        roundTrip(getText(8), MessageCodeType.BITS_7, 1);
+        roundTrip(getText(153), MessageCodeType.BITS_7, 1);
+        roundTrip(getText(160), MessageCodeType.BITS_7, 1);
+        // Extension characters take two septets.
+        roundTrip("{[\u20AC]}", MessageCodeType.BITS_7, 1);
+        roundTrip(repeat('a', 158) + "{", MessageCodeType.BITS_7, 1);
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * 8 bit and UCS-2 messages are coded and decoded.
+     */
+    public final void testCodeOctets() {
+        // CHECKSTYLE:OFF
+        roundTrip("Data \u00E4", MessageCodeType.BITS_8, 1);
+        roundTrip(repeat('a', 140), MessageCodeType.BITS_8, 1);
+        roundTrip("\u4E2D\uD83D\uDE00", MessageCodeType.UNICODE, 1);
+        roundTrip(repeat('a', 68) + "\uD83D\uDE00",
+                MessageCodeType.UNICODE, 1);
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Long messages are split to the segments at the segment limits.
+     */
+    public final void testSegmentCount() {
+        // CHECKSTYLE:OFF
+        String[] parts = roundTrip(getText(161), MessageCodeType.BITS_7, 2);
+        assertEquals(153, parts[0].length());
+        roundTrip(getText(306), MessageCodeType.BITS_7, 2);
+        roundTrip(getText(307), MessageCodeType.BITS_7, 3);
+        roundTrip(repeat('a', 159) + "{", MessageCodeType.BITS_7, 2);
+        roundTrip(repeat('a', 141), MessageCodeType.BITS_8, 2);
+        roundTrip(repeat('a', 70), MessageCodeType.UNICODE, 1);
+        roundTrip(repeat('a', 71), MessageCodeType.UNICODE, 2);
+        roundTrip(repeat('a', 69) + "\uD83D\uDE00",
+                MessageCodeType.UNICODE, 2);
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Escape and the escaped character are not split to different segments.
+     */
+    public final void testSegmentEscape() {
+        // CHECKSTYLE:OFF
+        for (char ch : new char[] {'\u20AC', '[', '{', '\\'}) {
+            // Escape is the last septet of the first segment.
+            String[] parts = roundTrip(repeat('a', 152) + ch
+                    + repeat('b', 10), MessageCodeType.BITS_7, 2);
+            assertEquals(repeat('a', 152), parts[0]);
+            assertEquals(ch + repeat('b', 10), parts[1]);
+            // Escaped character fits to the first segment.
+            parts = roundTrip(repeat('a', 151) + ch + repeat('b', 10),
+                    MessageCodeType.BITS_7, 2);
+            assertEquals(repeat('a', 151) + ch, parts[0]);
+        }
+        // Boundary between the second and the third segment.
+        String[] parts = roundTrip(repeat('a', 305) + "\u20AC"
+                + repeat('b', 10), MessageCodeType.BITS_7, 3);
+        assertEquals(152, parts[1].length());
+        assertEquals('\u20AC', parts[2].charAt(0));
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * UCS-2 surrogate pairs are not split to different segments.
+     */
+    public final void testSegmentSurrogates() {
+        final String emoji = "\uD83D\uDE00";
+        // CHECKSTYLE:OFF
+        String[] parts = roundTrip(repeat('a', 66) + emoji + repeat('b', 10),
+                MessageCodeType.UNICODE, 2);
+        assertEquals(repeat('a', 66), parts[0]);
+        assertEquals(emoji + repeat('b', 10), parts[1]);
+        parts = roundTrip(repeat('a', 65) + emoji + repeat('b', 10),
+                MessageCodeType.UNICODE, 2);
+        assertEquals(repeat('a', 65) + emoji, parts[0]);
+        StringBuilder sb = new StringBuilder();
+        for (int pos = 0; pos != 40; ++pos) {
+            sb.append(emoji);
+        }
+        parts = roundTrip(sb.toString(), MessageCodeType.UNICODE, 2);
+        for (String it : parts) {
+            assertFalse(Character.isHighSurrogate(it.charAt(it.length() - 1)));
+        }
+        // CHECKSTYLE:ON
+    }
+}
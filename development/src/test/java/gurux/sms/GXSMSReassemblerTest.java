@@ -0,0 +1,113 @@
+package gurux.sms;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for joining the concatenated message segments.
+ */
+public class GXSMSReassemblerTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSReassemblerTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSReassemblerTest.class);
+    }
+
+    /**
+     * Create message segment.
+     * 
+     * @param sender
+     *            Sender phone number.
+     * @param reference
+     *            Concatenation reference.
+     * @param segment
+     *            Segment number starting from 1.
+     * @return Segment of three segment message.
+     */
+    private static GXSMSMessage getSegment(final String sender,
+            final int reference, final int segment) {
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setPhoneNumber(sender);
+        msg.setData("Part " + segment + ". ");
+        msg.setSegmentation(reference, 3, segment);
+        return msg;
+    }
+
+    /**
+     * Segments are joined in order and duplicates are ignored.
+     */
+    public final void testJoin() {
+        GXSMSReassembler target = new GXSMSReassembler();
+        assertNull(target.add(getSegment("12345", 1, 3)));
+        assertNull(target.add(getSegment("12345", 1, 1)));
+        // Duplicate segment is ignored.
+        assertNull(target.add(getSegment("12345", 1, 1)));
+        // Segments of other sender are not joined.
+        assertNull(target.add(getSegment("+358401234567", 1, 2)));
+        GXSMSMessage msg = target.add(getSegment("12345", 1, 2));
+        assertNotNull(msg);
+        assertEquals("Part 1. Part 2. Part 3. ", msg.getData());
+        assertEquals("12345", msg.getPhoneNumber());
+        // Message that is not segmented is returned as it is.
+        GXSMSMessage single = new GXSMSMessage();
+        assertSame(single, target.add(single));
+        assertEquals(0, target.getEvictions());
+        assertEquals(0, target.getTimeouts());
+    }
+
+    /**
+     * The least recently updated message is dropped when capacity is
+     * exceeded.
+     */
+    public final void testEviction() {
+        GXSMSReassembler target = new GXSMSReassembler();
+        target.setCapacity(2);
+        assertNull(target.add(getSegment("12345", 1, 1)));
+        assertNull(target.add(getSegment("12345", 2, 1)));
+        assertNull(target.add(getSegment("12345", 1, 2)));
+        assertEquals(1, target.getEvictions());
+        assertEquals(1, target.takeDropped().size());
+        assertTrue(target.takeDropped().isEmpty());
+        assertNotNull(target.add(getSegment("12345", 1, 3)));
+        // Rest of the dropped message is buffered again.
+        assertNull(target.add(getSegment("12345", 2, 2)));
+        assertNull(target.add(getSegment("12345", 2, 3)));
+        assertEquals(1, target.getEvictions());
+    }
+
+    /**
+     * Messages are timed out in the order they are started, even if a later
+     * message is updated before.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testTimeout() throws Exception {
+        GXSMSReassembler target = new GXSMSReassembler();
+        target.setTimeout(2);
+        assertNull(target.add(getSegment("12345", 1, 1)));
+        Thread.sleep(1100);
+        assertNull(target.add(getSegment("12345", 2, 1)));
+        // The first message is updated after the second one is started.
+        assertNull(target.add(getSegment("12345", 1, 2)));
+        Thread.sleep(1100);
+        target.expire();
+        assertEquals(1, target.getTimeouts());
+        assertEquals(2, target.takeDropped().size());
+        assertNull(target.add(getSegment("12345", 2, 2)));
+        assertNotNull(target.add(getSegment("12345", 2, 3)));
+        assertEquals(0, target.getEvictions());
+    }
+}
@@ -0,0 +1,104 @@
+package gurux.sms;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the send queue.
+ */
+public class GXSendThreadTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSendThreadTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSendThreadTest.class);
+    }
+
+    /**
+     * Get the reason why future failed.
+     * 
+     * @param future
+     *            Failed future.
+     * @return Reason of the failure.
+     * @throws Exception
+     *             Future didn't fail.
+     */
+    private static Throwable getError(
+            final CompletableFuture<Integer> future) throws Exception {
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+        } catch (ExecutionException ex) {
+            return ex.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * Message is rejected when the queue is full and queued messages fail
+     * when the queue is cancelled.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testCapacity() throws Exception {
+        try (GXSMS media = new GXSMS()) {
+            GXSendThread target = new GXSendThread(media, 2);
+            CompletableFuture<Integer> first =
+                    target.add(new GXSMSMessage(), 0);
+            CompletableFuture<Integer> second =
+                    target.add(new GXSMSMessage(), 0);
+            CompletableFuture<Integer> third =
+                    target.add(new GXSMSMessage(), 0);
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+            assertEquals("Send queue is full.", getError(third).getMessage());
+            assertEquals(2, target.getQueueLength());
+            RuntimeException ex = new IllegalStateException("Media is closed.");
+            target.cancel(ex);
+            assertSame(ex, getError(first));
+            assertSame(ex, getError(second));
+            assertEquals(0, target.getQueueLength());
+        }
+    }
+
+    /**
+     * Messages that are replayed from the journal are not limited by the
+     * queue capacity.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testReplay() throws Exception {
+        try (GXSMS media = new GXSMS()) {
+            GXSendThread target = new GXSendThread(media, 1);
+            CompletableFuture<Integer> queued =
+                    target.add(new GXSMSMessage(), 0);
+            CompletableFuture<Integer> replayed = null;
+            for (int pos = 0; pos != 3; ++pos) {
+                replayed = target.replay(new GXSMSMessage(), pos + 1);
+                assertFalse(replayed.isDone());
+            }
+            assertEquals(4, target.getQueueLength());
+            RuntimeException ex = new IllegalStateException("Media is closed.");
+            target.cancel(ex);
+            assertSame(ex, getError(queued));
+            assertSame(ex, getError(replayed));
+            assertEquals(0, target.getQueueLength());
+        }
+    }
+}
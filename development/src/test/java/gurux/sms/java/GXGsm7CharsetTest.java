@@ -0,0 +1,60 @@
+package gurux.sms.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import gurux.sms.GXGsm7Charset;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GSM 03.38 charset.
+ */
+public class GXGsm7CharsetTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXGsm7CharsetTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXGsm7CharsetTest.class);
+    }
+
+    /**
+     * Charset is found by name.
+     */
+    public final void testForName() {
+        assertSame(GXGsm7Charset.INSTANCE, Charset.forName("GSM-7"));
+    }
+
+    /**
+     * Default alphabet and extension table are coded and decoded.
+     */
+    public final void testCode() {
+        String value = "Hello @\u00A3$ [\u20AC]";
+        ByteBuffer bb = GXGsm7Charset.INSTANCE.encode(value);
+        // Brackets and euro sign are escaped.
+        assertEquals(value.length() + 3, bb.remaining());
+        assertEquals(0, bb.get(value.indexOf('@')));
+        assertEquals(value, GXGsm7Charset.INSTANCE.decode(bb).toString());
+    }
+
+    /**
+     * Septet count is calculated for the whole string.
+     */
+    public final void testSeptetCount() {
+        assertEquals(6, GXGsm7Charset.getSeptetCount("a{b}"));
+        assertTrue(GXGsm7Charset.isEncodable("\u0394\u00E0"));
+        assertFalse(GXGsm7Charset.isEncodable("\u00E1"));
+        assertEquals(-1, GXGsm7Charset.getSeptetCount("\u4E2D"));
+    }
+}
@@ -0,0 +1,162 @@
+package gurux.sms.java;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the queued asynchronous send.
+ */
+public class GXSMSAsyncTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSAsyncTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSAsyncTest.class);
+    }
+
+    /**
+     * Create message.
+     * 
+     * @param data
+     *            Message.
+     * @return Created message.
+     */
+    private static GXSMSMessage getMessage(final String data) {
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setPhoneNumber("+358401234567");
+        msg.setData(data);
+        return msg;
+    }
+
+    /**
+     * Wait until the sender is sending the first message. Messages that are
+     * queued after this are not sent in the same batch.
+     * 
+     * @param modem
+     *            Modem simulator.
+     * @param count
+     *            Amount of AT+CMGS commands before the message was queued.
+     * @throws InterruptedException
+     *             Wait is interrupted.
+     */
+    private static void waitSending(final GXSMSModemSimulator modem,
+            final int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (modem.getCommandCount("+CMGS") == count
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(count + 1, modem.getCommandCount("+CMGS"));
+    }
+
+    /**
+     * Future is completed with the message reference.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testReference() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            CompletableFuture<Integer> first =
+                    media.sendAsync(getMessage("First"));
+            CompletableFuture<Integer> second =
+                    media.sendAsync(getMessage("Second"));
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(2, second.get(5, TimeUnit.SECONDS).intValue());
+            GXSMSMessage[] sent = modem.getSentMessages();
+            assertEquals(2, sent.length);
+            assertEquals("First", sent[0].getData());
+            assertEquals("Second", sent[1].getData());
+        }
+    }
+
+    /**
+     * Message is rejected when the send queue is full.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testQueueFull() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setSendLatency(500);
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setSendQueueSize(1);
+            media.open();
+            int count = modem.getCommandCount("+CMGS");
+            CompletableFuture<Integer> first =
+                    media.sendAsync(getMessage("First"));
+            waitSending(modem, count);
+            CompletableFuture<Integer> second =
+                    media.sendAsync(getMessage("Second"));
+            CompletableFuture<Integer> third =
+                    media.sendAsync(getMessage("Third"));
+            assertTrue(third.isCompletedExceptionally());
+            try {
+                third.get();
+                fail("Full queue is not reported.");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(2, second.get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(2, modem.getSentMessages().length);
+        }
+    }
+
+    /**
+     * Queued messages fail when media is closed.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testClose() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setSendLatency(500);
+        GXSMS media = new GXSMS();
+        media.setTransport(modem);
+        media.open();
+        int count = modem.getCommandCount("+CMGS");
+        CompletableFuture<Integer> first =
+                media.sendAsync(getMessage("First"));
+        waitSending(modem, count);
+        CompletableFuture<Integer> second =
+                media.sendAsync(getMessage("Second"));
+        media.close();
+        try {
+            second.get(5, TimeUnit.SECONDS);
+            fail("Queued message is not failed.");
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()),
+                    ex.getCause() instanceof IllegalStateException);
+        }
+        try {
+            first.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            // Message was sent when media was closed.
+        }
+        assertTrue(media.sendAsync(getMessage("Closed"))
+                .isCompletedExceptionally());
+    }
+}
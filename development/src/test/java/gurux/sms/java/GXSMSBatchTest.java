@@ -0,0 +1,85 @@
+package gurux.sms.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.GXSMSSendResult;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the batch send.
+ */
+public class GXSMSBatchTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSBatchTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSBatchTest.class);
+    }
+
+    /**
+     * Batch is sent with the radio link kept open and failed message doesn't
+     * stop the others.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testSendBatch() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setRejectedNumber("+358409999999");
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            List<GXSMSMessage> messages = new ArrayList<GXSMSMessage>();
+            String[] numbers = {"+358401234567", "+358409999999", "12345"};
+            for (int pos = 0; pos != numbers.length; ++pos) {
+                GXSMSMessage msg = new GXSMSMessage();
+                msg.setPhoneNumber(numbers[pos]);
+                msg.setData("Batch " + pos);
+                messages.add(msg);
+            }
+            int start = modem.getCommands().length;
+            GXSMSSendResult[] results = media.send(messages);
+            assertEquals(3, results.length);
+            for (int pos = 0; pos != results.length; ++pos) {
+                assertSame(messages.get(pos), results[pos].getMessage());
+            }
+            assertTrue(results[0].isSent());
+            assertFalse(results[1].isSent());
+            assertNotNull(results[1].getError());
+            assertTrue(results[2].isSent());
+            GXSMSMessage[] sent = modem.getSentMessages();
+            assertEquals(2, sent.length);
+            assertEquals("Batch 0", sent[0].getData());
+            assertEquals("Batch 2", sent[1].getData());
+            // Sends are framed with AT+CMMS=1 and AT+CMMS=0.
+            List<String> commands = new ArrayList<String>();
+            String[] tmp = modem.getCommands();
+            for (int pos = start; pos != tmp.length; ++pos) {
+                if (tmp[pos].startsWith("+CMMS")
+                        || tmp[pos].startsWith("+CMGS=")) {
+                    commands.add(tmp[pos].startsWith("+CMGS=") ? "+CMGS"
+                            : tmp[pos]);
+                }
+            }
+            assertEquals(Arrays.asList("+CMMS=1", "+CMGS", "+CMGS", "+CMGS",
+                    "+CMMS=0"), commands);
+        }
+    }
+}
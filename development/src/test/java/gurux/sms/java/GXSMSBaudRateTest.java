@@ -0,0 +1,91 @@
+package gurux.sms.java;
+
+import gurux.io.BaudRate;
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the baud rate negotiation.
+ */
+public class GXSMSBaudRateTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSBaudRateTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSBaudRateTest.class);
+    }
+
+    /**
+     * The fastest working baud rate is negotiated and remembered.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testAutoBaudRate() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        // 115200 is supported, but it doesn't work.
+        modem.setMaximumBaudRate(57600);
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setPortName("COM5");
+            media.setCommandWaitTime(300);
+            media.setAutoBaudRate(true);
+            media.open();
+            assertEquals(BaudRate.BAUD_RATE_57600, media.getBaudRate());
+            media.send("Fast", "+358401234567");
+            media.close();
+            // Remembered baud rate is used.
+            int count = modem.getCommandCount("+IPR");
+            media.open();
+            assertEquals(BaudRate.BAUD_RATE_57600, media.getBaudRate());
+            assertEquals(count, modem.getCommandCount("+IPR"));
+            assertEquals(30, media.getMemoryCapacity().getMaximum());
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Baud rate is searched when modem doesn't answer with the configured
+     * baud rate.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testBaudRateRecovery() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setMaximumBaudRate(57600);
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setPortName("COM6");
+            media.setCommandWaitTime(300);
+            media.setAutoBaudRate(true);
+            media.open();
+            assertEquals(BaudRate.BAUD_RATE_57600, media.getBaudRate());
+            media.close();
+            // Modem keeps the baud rate, but it's not known for the port.
+            modem.setBaudRate(9600);
+            media.setPortName("COM7");
+            media.open();
+            assertEquals(BaudRate.BAUD_RATE_57600, media.getBaudRate());
+            assertEquals(30, media.getMemoryCapacity().getMaximum());
+        } finally {
+            media.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package gurux.sms.java;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import gurux.io.BaudRate;
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.SendMode;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the learned modem capabilities.
+ */
+public class GXSMSCapabilitiesTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSCapabilitiesTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSCapabilitiesTest.class);
+    }
+
+    /**
+     * Directory where capabilities are saved.
+     */
+    private File dir;
+
+    @Override
+    protected final void setUp() throws Exception {
+        dir = Files.createTempDirectory("gxsms").toFile();
+    }
+
+    @Override
+    protected final void tearDown() {
+        for (File it : dir.listFiles()) {
+            it.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Load saved capabilities.
+     * 
+     * @param file
+     *            Capability file.
+     * @return Saved capabilities.
+     * @throws Exception
+     *             Occurred exception.
+     */
+    private static Properties load(final File file) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    /**
+     * Learned capabilities are saved and probes are skipped on reconnect.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testCapabilities() throws Exception {
+        File file = new File(dir, "capabilities.properties");
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setCapabilityFile(file.getPath());
+            media.open();
+            assertEquals(20, media.getSignalQuality().getRssi());
+            media.close();
+            Properties properties = load(file);
+            String key = "modem.000000000000000/GXSMSModemSimulator.";
+            assertEquals("true", properties.getProperty(key + "cmgs"));
+            assertEquals("true", properties.getProperty(key + "csq"));
+            // Probes are not sent anymore.
+            modem.setReply("+CMGS=?", "ERROR");
+            modem.setReply("+CSQ=?", "ERROR");
+            media.open();
+            media.send("Cached", "+358401234567");
+            assertEquals(1,
+                    media.getSendLatency(SendMode.DIRECT).getCount());
+            assertEquals(20, media.getSignalQuality().getRssi());
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Capabilities of different files are not mixed.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testSeparateFiles() throws Exception {
+        File first = new File(dir, "first.properties");
+        File second = new File(dir, "second.properties");
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setCapabilityFile(first.getPath());
+            media.open();
+            media.close();
+            int count = modem.getCommandCount("+CMGS");
+            media.setCapabilityFile(second.getPath());
+            media.open();
+            media.close();
+            // Modem is probed again for the second file.
+            assertTrue(modem.getCommandCount("+CMGS") > count);
+            assertEquals(load(first).keySet(), load(second).keySet());
+            count = modem.getCommandCount("+CMGS");
+            media.setCapabilityFile(first.getPath());
+            media.open();
+            assertEquals(count, modem.getCommandCount("+CMGS"));
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Working baud rate is saved per port.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testBaudRate() throws Exception {
+        File file = new File(dir, "capabilities.properties");
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setMaximumBaudRate(57600);
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setPortName("COM8");
+            media.setCommandWaitTime(300);
+            media.setCapabilityFile(file.getPath());
+            media.setAutoBaudRate(true);
+            media.open();
+            assertEquals(BaudRate.BAUD_RATE_57600, media.getBaudRate());
+            media.close();
+            assertEquals("57600",
+                    load(file).getProperty("baudrate.COM8"));
+        } finally {
+            media.close();
+        }
+    }
+}
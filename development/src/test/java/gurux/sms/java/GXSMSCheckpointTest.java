@@ -0,0 +1,214 @@
+package gurux.sms.java;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gurux.common.IGXMediaListener;
+import gurux.common.MediaStateEventArgs;
+import gurux.common.PropertyChangedEventArgs;
+import gurux.common.ReceiveEventArgs;
+import gurux.common.TraceEventArgs;
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.MessageCodeType;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the processed message checkpoint.
+ */
+public class GXSMSCheckpointTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSCheckpointTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSCheckpointTest.class);
+    }
+
+    /**
+     * Checkpoint file.
+     */
+    private File file;
+
+    @Override
+    protected final void setUp() throws Exception {
+        file = File.createTempFile("gxsms", ".chk");
+    }
+
+    @Override
+    protected final void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Wait until all messages are deleted from the modem memory.
+     * 
+     * @param modem
+     *            Simulated modem.
+     * @throws InterruptedException
+     *             Wait is interrupted.
+     */
+    private static void waitDeleted(final GXSMSModemSimulator modem)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (modem.getStoredCount() != 0
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, modem.getStoredCount());
+    }
+
+    /**
+     * Get message that is sent as three 7 bit segments.
+     * 
+     * @return Message.
+     */
+    private static String getLongMessage() {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 400) {
+            sb.append("Concatenated ").append(sb.length()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Processed messages are not delivered again after restart and they are
+     * deleted when auto delete is used.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testCheckpoint() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.setCheckpointFile(file.getPath());
+            media.addListener(listener);
+            media.open();
+            modem.addMessage("+358401234567", "First");
+            modem.addMessage("+358401234567", "Second");
+            for (int pos = 0; pos != 2; ++pos) {
+                listener.getMessage();
+            }
+            media.close();
+            // Read messages are checked on open, but they are processed.
+            media.open();
+            assertNull(listener.poll(1000));
+            media.close();
+            media.setAutoDelete(true);
+            media.open();
+            waitDeleted(modem);
+            modem.addMessage("+358401234567", "Third");
+            assertEquals("Third", listener.getMessage().getData());
+            assertNull(listener.poll(500));
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Message that is read after the listing is not deleted with the
+     * processed messages.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testDeleteProcessedRace() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        final GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.addMessage("+358401234567", "First");
+        modem.addMessage("+358401234567", "Second");
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setCheckpointFile(file.getPath());
+            media.setAutoDelete(true);
+            media.setSMSCheckInterval(1);
+            media.addListener(listener);
+            media.addListener(new IGXMediaListener() {
+                @Override
+                public void onError(final Object sender,
+                        final Exception ex) {
+                }
+
+                @Override
+                public void onReceived(final Object sender,
+                        final ReceiveEventArgs e) {
+                    if ("First".equals(((GXSMSMessage) e.getData())
+                            .getData())) {
+                        // New message is read before processed messages
+                        // are deleted.
+                        int index = modem.addMessage("12345", "Late");
+                        media.read(index);
+                    }
+                }
+
+                @Override
+                public void onMediaStateChange(final Object sender,
+                        final MediaStateEventArgs e) {
+                }
+
+                @Override
+                public void onTrace(final Object sender,
+                        final TraceEventArgs e) {
+                }
+
+                @Override
+                public void onPropertyChanged(final Object sender,
+                        final PropertyChangedEventArgs e) {
+                }
+            });
+            media.open();
+            List<String> messages = new ArrayList<String>();
+            for (int pos = 0; pos != 3; ++pos) {
+                messages.add(listener.getMessage().getData());
+            }
+            assertEquals(Arrays.asList("First", "Second", "Late"),
+                    messages);
+            waitDeleted(modem);
+        }
+    }
+
+    /**
+     * Segments of the timed out message are deleted.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testDroppedSegments() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.setCheckpointFile(file.getPath());
+            media.setAutoDelete(true);
+            media.setReassemblyTimeout(1);
+            media.addListener(listener);
+            media.open();
+            modem.addSegments("+358401234567", getLongMessage(),
+                    MessageCodeType.BITS_7, new int[] {1});
+            Thread.sleep(2000);
+            modem.addMessage("+358401234567", "Next");
+            assertEquals("Next", listener.getMessage().getData());
+            waitDeleted(modem);
+            assertEquals(1, media.getReassemblyTimeouts());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package gurux.sms.java;
+
+import java.util.Arrays;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.DeleteFlag;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for deleting the messages.
+ */
+public class GXSMSDeleteTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSDeleteTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSDeleteTest.class);
+    }
+
+    /**
+     * Messages are deleted with the delete flag or only occupied indexes are
+     * deleted.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testDeleteAll() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        for (int pos = 0; pos != 3; ++pos) {
+            modem.addMessage("+358401234567", "Message " + pos);
+        }
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.open();
+            media.deleteAll();
+            assertEquals(0, modem.getStoredCount());
+            assertTrue(Arrays.asList(modem.getCommands())
+                    .contains("+CMGD=1,4"));
+            media.close();
+            // Modem doesn't support the delete flag.
+            modem.setReply("+CMGD=?", "+CMGD: (1-30)\r\n\r\nOK");
+            modem.addMessage("+358401234567", "Read");
+            modem.addMessage("+358401234567", "Unread");
+            media.open();
+            assertEquals("Read", media.read(1).getData());
+            media.deleteAll(DeleteFlag.READ);
+            assertEquals(1, modem.getStoredCount());
+            assertEquals("Unread", media.read(2).getData());
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Delete flag is used only if modem supports it.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testDeleteFlags() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setReply("+CMGD=?", "+CMGD: (1-30),(0-3)\r\n\r\nOK");
+        for (int pos = 0; pos != 3; ++pos) {
+            modem.addMessage("+358401234567", "Message " + pos);
+        }
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            assertEquals("Message 0", media.read(1).getData());
+            media.deleteAll(DeleteFlag.READ);
+            assertEquals(2, modem.getStoredCount());
+            media.deleteAll();
+            assertEquals(0, modem.getStoredCount());
+            String[] commands = modem.getCommands();
+            assertTrue(Arrays.asList(commands).contains("+CMGD=1,1"));
+            assertFalse(Arrays.asList(commands).contains("+CMGD=1,4"));
+            assertTrue(Arrays.asList(commands).contains("+CMGD=2"));
+        }
+    }
+}
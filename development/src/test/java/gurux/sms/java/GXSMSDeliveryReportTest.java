@@ -0,0 +1,119 @@
+package gurux.sms.java;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSDeliveryReport;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the status reports.
+ */
+public class GXSMSDeliveryReportTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSDeliveryReportTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSDeliveryReportTest.class);
+    }
+
+    /**
+     * Status reports are correlated to the sent messages.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testDeliveryReport() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setReportLatency(50);
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setDeliveryReports(true);
+            media.open();
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 200) {
+                sb.append("Concatenated ");
+            }
+            GXSMSMessage msg = new GXSMSMessage();
+            msg.setPhoneNumber("+358401234567");
+            msg.setData(sb.toString());
+            GXSMSDeliveryReport report =
+                    media.sendWithReport(msg).get(5, TimeUnit.SECONDS);
+            assertEquals(2, modem.getSentMessages().length);
+            assertTrue(report.isDelivered());
+            assertSame(msg, report.getMessage());
+            assertEquals("+358401234567", report.getRecipient());
+            assertTrue(report.getLatency() >= 0);
+            // Service centre has given up.
+            modem.setReportStatus(0x41);
+            msg = new GXSMSMessage();
+            msg.setPhoneNumber("+358401234567");
+            msg.setData("Failed");
+            report = media.sendWithReport(msg).get(5, TimeUnit.SECONDS);
+            assertFalse(report.isDelivered());
+            assertTrue(report.isFinal());
+            assertEquals(0, media.getPendingDeliveryReports());
+        }
+    }
+
+    /**
+     * Status reports that are saved to the memory are not read as received
+     * messages. They are correlated to the sent messages instead.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testStoredReports() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        // Reports are saved to the memory and indicated with +CDSI.
+        modem.setReply("+CNMI=2,0,0,1,0", "ERROR");
+        modem.setReportLatency(60000);
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setDeliveryReports(true);
+            media.open();
+            modem.addMessage("12345", "Received");
+            for (int pos = 1; pos != 3; ++pos) {
+                if (pos == 2) {
+                    // Modem doesn't support listing.
+                    modem.setReply("+CMGL=4", "ERROR");
+                }
+                GXSMSMessage msg = new GXSMSMessage();
+                msg.setPhoneNumber("+358401234567");
+                msg.setData("Report " + pos);
+                CompletableFuture<GXSMSDeliveryReport> future =
+                        media.sendWithReport(msg);
+                long end = System.currentTimeMillis() + 5000;
+                while (modem.getSentMessages().length != pos
+                        && System.currentTimeMillis() < end) {
+                    Thread.sleep(20);
+                }
+                // Indication of the report is lost.
+                modem.addStatusReport(pos, "+358401234567", 0);
+                GXSMSMessage[] messages = media.read();
+                assertEquals(1, messages.length);
+                assertEquals("Received", messages[0].getData());
+                GXSMSDeliveryReport report =
+                        future.get(5, TimeUnit.SECONDS);
+                assertTrue(report.isDelivered());
+                assertSame(msg, report.getMessage());
+                assertEquals(1, modem.getStoredCount());
+            }
+        }
+    }
+}
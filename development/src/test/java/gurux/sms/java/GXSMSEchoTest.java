@@ -0,0 +1,60 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the command echo.
+ */
+public class GXSMSEchoTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSEchoTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSEchoTest.class);
+    }
+
+    /**
+     * Echo is disabled in open, but replies are parsed also if the modem
+     * keeps echoing.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testEcho() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.open();
+            assertFalse(modem.getEcho());
+            media.send("Without echo", "+358401234567");
+            media.close();
+            // Modem ignores ATE0.
+            modem.setReply("E0", "OK");
+            media.open();
+            assertTrue(modem.getEcho());
+            media.send("With echo", "+358401234567");
+            assertEquals(0, media.getMemoryCapacity().getCount());
+            GXSMSMessage[] sent = modem.getSentMessages();
+            assertEquals(2, sent.length);
+            assertEquals("With echo", sent[1].getData());
+        } finally {
+            media.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package gurux.sms.java;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSInboundStore;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the received message store.
+ */
+public class GXSMSInboundStoreTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSInboundStoreTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSInboundStoreTest.class);
+    }
+
+    /**
+     * Store directory.
+     */
+    private File dir;
+
+    @Override
+    protected final void setUp() throws Exception {
+        dir = Files.createTempDirectory("gxsms").toFile();
+    }
+
+    @Override
+    protected final void tearDown() {
+        for (File it : dir.listFiles()) {
+            it.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Read messages are stored once and they can be scanned by sender.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testInboundStore() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.addMessage("+358401234567", "First");
+        modem.addMessage("12345", "Second");
+        Date from = new Date(0);
+        Date to = new Date(System.currentTimeMillis() + 24 * 3600000L);
+        GXSMSInboundStore store = new GXSMSInboundStore(dir.getPath());
+        try (GXSMS media = new GXSMS()) {
+            store.open();
+            media.setTransport(modem);
+            media.setInboundStore(store);
+            media.open();
+            assertEquals(2, media.read().length);
+            // Stored messages are not stored again.
+            GXSMSMessage[] messages = media.read();
+            assertEquals("First", messages[0].getData());
+            assertEquals(2, store.getCount());
+            store.close();
+            // Index is built again from the segments.
+            store.open();
+            assertEquals(2, store.getCount());
+            List<GXSMSMessage> found = new ArrayList<GXSMSMessage>();
+            store.scan("12345", from, to, found::add);
+            assertEquals(1, found.size());
+            assertEquals("Second", found.get(0).getData());
+            StringWriter sw = new StringWriter();
+            store.export(null, from, to, sw);
+            assertEquals(2, sw.toString().split("\r\n").length);
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package gurux.sms.java;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.GXSMSRejectedException;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the outbound message journal.
+ */
+public class GXSMSJournalTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSJournalTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSJournalTest.class);
+    }
+
+    /**
+     * Journal directory.
+     */
+    private File dir;
+
+    @Override
+    protected final void setUp() throws Exception {
+        dir = Files.createTempDirectory("gxsms").toFile();
+    }
+
+    @Override
+    protected final void tearDown() {
+        for (File it : dir.listFiles()) {
+            it.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Create message.
+     * 
+     * @param data
+     *            Message.
+     * @return Created message.
+     */
+    private static GXSMSMessage getMessage(final String data) {
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setPhoneNumber("+358401234567");
+        msg.setData(data);
+        return msg;
+    }
+
+    /**
+     * Wait until journal is empty.
+     * 
+     * @param media
+     *            Media.
+     * @throws InterruptedException
+     *             Wait is interrupted.
+     */
+    private static void waitJournal(final GXSMS media)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (media.getJournalCount() != 0
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, media.getJournalCount());
+    }
+
+    /**
+     * Get data of the sent messages.
+     * 
+     * @param modem
+     *            Simulated modem.
+     * @return Sent messages.
+     */
+    private static Set<String> getSent(final GXSMSModemSimulator modem) {
+        Set<String> sent = new HashSet<String>();
+        for (GXSMSMessage it : modem.getSentMessages()) {
+            sent.add(it.getData());
+        }
+        return sent;
+    }
+
+    /**
+     * Get the reason why send failed.
+     * 
+     * @param future
+     *            Failed send.
+     * @return Reason of the failure.
+     * @throws Exception
+     *             Send didn't fail.
+     */
+    private static Throwable getError(
+            final CompletableFuture<Integer> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Send didn't fail.");
+        } catch (ExecutionException ex) {
+            return ex.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * Messages that are queued when media is closed are sent from the
+     * journal when media is opened again.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testJournal() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setSendLatency(300);
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setJournalDirectory(dir.getPath());
+            media.open();
+            for (int pos = 0; pos != 3; ++pos) {
+                media.sendAsync(getMessage("Journal " + pos));
+            }
+            assertEquals(3, media.getJournalCount());
+            Thread.sleep(100);
+            media.close();
+            modem.setSendLatency(0);
+            media.open();
+            waitJournal(media);
+            Set<String> sent = getSent(modem);
+            for (int pos = 0; pos != 3; ++pos) {
+                assertTrue(sent.toString(), sent.contains("Journal " + pos));
+            }
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Message that fails temporarily is kept in the journal and it's sent
+     * again when media is opened.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testTemporaryFailure() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setRejectedNumber("+358401234567");
+        // Congestion.
+        modem.setRejectError(42);
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setJournalDirectory(dir.getPath());
+            media.open();
+            Throwable ex = getError(media.sendAsync(getMessage("Retried")));
+            assertFalse(String.valueOf(ex),
+                    ex instanceof GXSMSRejectedException);
+            assertEquals(String.valueOf(ex), 1, media.getJournalCount());
+            media.close();
+            modem.setRejectedNumber(null);
+            media.open();
+            waitJournal(media);
+            assertTrue(getSent(modem).contains("Retried"));
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Message that network rejects permanently is removed from the
+     * journal.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testRejected() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setRejectedNumber("+358401234567");
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setJournalDirectory(dir.getPath());
+            media.open();
+            Throwable ex = getError(media.sendAsync(getMessage("Rejected")));
+            assertTrue(String.valueOf(ex),
+                    ex instanceof GXSMSRejectedException);
+            assertEquals(21, ((GXSMSRejectedException) ex).getError());
+            assertEquals(0, media.getJournalCount());
+        } finally {
+            media.close();
+        }
+    }
+
+    /**
+     * Send queue size doesn't limit the messages that are sent from the
+     * journal.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testReplayQueueSize() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setSendLatency(300);
+        GXSMS media = new GXSMS();
+        try {
+            media.setTransport(modem);
+            media.setJournalDirectory(dir.getPath());
+            media.open();
+            for (int pos = 0; pos != 5; ++pos) {
+                media.sendAsync(getMessage("Journal " + pos));
+            }
+            assertEquals(5, media.getJournalCount());
+            media.close();
+            modem.setSendLatency(0);
+            media.setSendQueueSize(1);
+            media.open();
+            waitJournal(media);
+            Set<String> sent = getSent(modem);
+            for (int pos = 0; pos != 5; ++pos) {
+                assertTrue(sent.toString(), sent.contains("Journal " + pos));
+            }
+        } finally {
+            media.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for reading the messages from the modem memory.
+ */
+public class GXSMSListingTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSListingTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSListingTest.class);
+    }
+
+    /**
+     * Read messages added to the simulator.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testRead() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.addMessage("+358401234567", "First");
+        modem.addMessage("12345", "Second");
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            assertEquals(2, media.getMemoryCapacity().getCount());
+            GXSMSMessage[] messages = media.read();
+            assertEquals(2, messages.length);
+            assertEquals("First", messages[0].getData());
+            assertEquals("12345", messages[1].getPhoneNumber());
+            assertEquals("Second", media.read(2).getData());
+        }
+    }
+
+    /**
+     * Slow listing reply doesn't disable listing.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testListingTimeout() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.addMessage("+358401234567", "First");
+        modem.addMessage("12345", "Second");
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            media.setCommandWaitTime(200);
+            modem.setLatency(500);
+            try {
+                media.read();
+                fail("Timeout is not reported.");
+            } catch (RuntimeException ex) {
+                // Reply is not received in time.
+            }
+            modem.setLatency(0);
+            // Wait until the late reply is received.
+            Thread.sleep(600);
+            media.resetSynchronousBuffer();
+            assertEquals(2, media.read().length);
+            assertEquals(0, modem.getCommandCount("+CMGR"));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.NetworkState;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the modem simulator.
+ */
+public class GXSMSModemSimulatorTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSModemSimulatorTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSModemSimulatorTest.class);
+    }
+
+    /**
+     * Send message using the simulator.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testSend() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            assertTrue(media.isOpen());
+            assertEquals(NetworkState.HOME, media.getNetworkState());
+            media.send("Hello", "+358401234567");
+            GXSMSMessage[] sent = modem.getSentMessages();
+            assertEquals(1, sent.length);
+            assertEquals("Hello", sent[0].getData());
+            assertEquals("+358401234567", sent[0].getPhoneNumber());
+        }
+    }
+
+    /**
+     * Scripted reply is used instead of the simulated one.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testScriptedReply() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setReply("+CSQ", "+CSQ: 5,0\r\n\r\nOK");
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            assertEquals(5, media.getSignalQuality().getRssi());
+            modem.setReply("+CSQ", null);
+            assertEquals(20, media.getSignalQuality().getRssi());
+        }
+    }
+}
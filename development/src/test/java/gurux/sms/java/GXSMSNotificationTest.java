@@ -0,0 +1,107 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.MessageCodeType;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the new message indications.
+ */
+public class GXSMSNotificationTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSNotificationTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSNotificationTest.class);
+    }
+
+    /**
+     * Message that is indicated with +CMTI is read from the memory.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testIndication() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.addListener(listener);
+            media.open();
+            int index = modem.addMessage("+358401234567", "Notified");
+            GXSMSMessage msg = listener.getMessage();
+            assertEquals("Notified", msg.getData());
+            assertEquals("+358401234567", msg.getPhoneNumber());
+            assertEquals(index, msg.getIndex());
+            assertEquals(1, modem.getCommandCount("+CMGR"));
+            assertNull(listener.poll(500));
+        }
+    }
+
+    /**
+     * Message that is delivered directly with +CMT is received without
+     * reading or deleting it from the memory.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testDirectDelivery() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.addListener(listener);
+            media.open();
+            modem.addDirectMessage("+358401234567", "Delivered");
+            GXSMSMessage msg = listener.getMessage();
+            assertEquals("Delivered", msg.getData());
+            assertEquals("+358401234567", msg.getPhoneNumber());
+            assertNull(listener.poll(500));
+            assertEquals(0, modem.getStoredCount());
+            assertEquals(0, modem.getCommandCount("+CMGR"));
+            assertEquals(0, modem.getCommandCount("+CMGD"));
+        }
+    }
+
+    /**
+     * Segments of the indicated message are joined when all of them are
+     * received.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testConcatenated() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 400) {
+            sb.append("Concatenated ").append(sb.length()).append(' ');
+        }
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.addListener(listener);
+            media.open();
+            modem.addSegments("+358401234567", sb.toString(),
+                    MessageCodeType.BITS_7, new int[] {3, 1, 2});
+            assertEquals(sb.toString(), listener.getMessage().getData());
+            assertNull(listener.poll(500));
+        }
+    }
+}
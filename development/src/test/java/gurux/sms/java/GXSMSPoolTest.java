@@ -0,0 +1,166 @@
+package gurux.sms.java;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.GXSMSPool;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the modem pool.
+ */
+public class GXSMSPoolTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSPoolTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSPoolTest.class);
+    }
+
+    /**
+     * Create pool member that uses the simulator.
+     * 
+     * @param pool
+     *            Modem pool.
+     * @param modem
+     *            Simulated modem.
+     * @return Added modem.
+     */
+    private static GXSMS addMember(final GXSMSPool pool,
+            final GXSMSModemSimulator modem) {
+        GXSMS media = new GXSMS();
+        media.setTransport(modem);
+        pool.add(media);
+        return media;
+    }
+
+    /**
+     * Send message with the pool and wait until it's sent.
+     * 
+     * @param pool
+     *            Modem pool.
+     * @param data
+     *            Message.
+     * @return True, if message is sent.
+     * @throws Exception
+     *             Occurred exception.
+     */
+    private static boolean send(final GXSMSPool pool, final String data)
+            throws Exception {
+        GXSMSMessage msg = new GXSMSMessage();
+        msg.setPhoneNumber("+358401234567");
+        msg.setData(data);
+        try {
+            pool.sendAsync(msg).get(5, TimeUnit.SECONDS);
+            return true;
+        } catch (ExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Pool sends with the modem that has the shortest send time.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testPoolLeastLoaded() throws Exception {
+        GXSMSModemSimulator slow = new GXSMSModemSimulator();
+        slow.setSendLatency(300);
+        GXSMSModemSimulator fast = new GXSMSModemSimulator();
+        try (GXSMSPool pool = new GXSMSPool()) {
+            pool.setCheckInterval(0);
+            addMember(pool, slow);
+            addMember(pool, fast);
+            pool.open();
+            for (int pos = 0; pos != 6; ++pos) {
+                assertTrue(send(pool, "Message " + pos));
+            }
+            // Send times are measured, so only the majority is checked.
+            int count = slow.getSentMessages().length;
+            assertEquals(6, count + fast.getSentMessages().length);
+            assertTrue(String.valueOf(count), count < 3);
+        }
+    }
+
+    /**
+     * Modem that fails to send is not used anymore.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testPoolFailures() throws Exception {
+        GXSMSModemSimulator working = new GXSMSModemSimulator();
+        working.setSendLatency(100);
+        GXSMSModemSimulator failing = new GXSMSModemSimulator();
+        // Network rejects all messages of the modem.
+        failing.setRejectedNumber("+358401234567");
+        try (GXSMSPool pool = new GXSMSPool()) {
+            pool.setCheckInterval(0);
+            addMember(pool, working);
+            GXSMS media = addMember(pool, failing);
+            pool.open();
+            int sent = 0;
+            for (int pos = 0; pos != 6; ++pos) {
+                if (send(pool, "Message " + pos)) {
+                    ++sent;
+                }
+            }
+            assertFalse(pool.isHealthy(media));
+            assertEquals(3, sent);
+            assertEquals(3, working.getSentMessages().length);
+            assertEquals(0, failing.getSentMessages().length);
+        }
+    }
+
+    /**
+     * Modem that is not registered to the network or has no signal is
+     * removed from use on the health check.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testPoolHealthCheck() throws Exception {
+        GXSMSModemSimulator working = new GXSMSModemSimulator();
+        GXSMSModemSimulator noSignal = new GXSMSModemSimulator();
+        GXSMSModemSimulator notRegistered = new GXSMSModemSimulator();
+        try (GXSMSPool pool = new GXSMSPool()) {
+            pool.setCheckInterval(1);
+            GXSMS media1 = addMember(pool, working);
+            GXSMS media2 = addMember(pool, noSignal);
+            GXSMS media3 = addMember(pool, notRegistered);
+            pool.open();
+            noSignal.setRssi(99);
+            notRegistered.setNetworkState(0);
+            Thread.sleep(1500);
+            assertTrue(pool.isHealthy(media1));
+            assertFalse(pool.isHealthy(media2));
+            assertFalse(pool.isHealthy(media3));
+            for (int pos = 0; pos != 3; ++pos) {
+                assertTrue(send(pool, "Message " + pos));
+            }
+            assertEquals(3, working.getSentMessages().length);
+            // Modem is used again when it recovers.
+            noSignal.setRssi(20);
+            for (int pos = 0; pos != 30 && !pool.isHealthy(media2); ++pos) {
+                Thread.sleep(100);
+            }
+            assertTrue(pool.isHealthy(media2));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.SendMode;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the send modes.
+ */
+public class GXSMSSendModeTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSSendModeTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSSendModeTest.class);
+    }
+
+    /**
+     * Send message with store and forward. Message is not left to the
+     * memory.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testStoreAndForward() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setSendMode(SendMode.STORE_AND_FORWARD);
+            media.open();
+            media.send("Stored", "+358401234567");
+            GXSMSMessage[] sent = modem.getSentMessages();
+            assertEquals(1, sent.length);
+            assertEquals("Stored", sent[0].getData());
+            assertEquals(0, modem.getStoredCount());
+            assertEquals(1, media.getSendLatency(SendMode.STORE_AND_FORWARD)
+                    .getCount());
+            assertEquals(0,
+                    media.getSendLatency(SendMode.DIRECT).getCount());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the occupied memory index cache.
+ */
+public class GXSMSSlotCacheTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSSlotCacheTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSSlotCacheTest.class);
+    }
+
+    /**
+     * Only occupied indexes are read when they are known. Memory is scanned
+     * again when the amount of messages doesn't match.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testSlotCache() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        for (int pos = 0; pos != 10; ++pos) {
+            modem.addMessage("+358401234567", "Message " + pos);
+        }
+        // Modem doesn't support listing.
+        modem.setReply("+CMGL=4", "ERROR");
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            for (int pos = 2; pos != 10; ++pos) {
+                media.delete(pos);
+            }
+            assertEquals(2, media.read().length);
+            assertEquals(10, modem.getCommandCount("+CMGR"));
+            // Empty indexes are skipped.
+            assertEquals(2, media.read().length);
+            assertEquals(12, modem.getCommandCount("+CMGR"));
+            // Message that is not indicated is found with a new scan.
+            modem.addMessage("12345", "New");
+            GXSMSMessage[] messages = media.read();
+            assertEquals(3, messages.length);
+            assertEquals("New", messages[1].getData());
+            assertEquals(22, modem.getCommandCount("+CMGR"));
+            assertEquals(3, media.read().length);
+            assertEquals(25, modem.getCommandCount("+CMGR"));
+        }
+    }
+}
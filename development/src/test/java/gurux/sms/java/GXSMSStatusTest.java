@@ -0,0 +1,67 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.GXSMSStatus;
+import gurux.sms.enums.NetworkState;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the modem status.
+ */
+public class GXSMSStatusTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSStatusTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSStatusTest.class);
+    }
+
+    /**
+     * Status is read with one chained command.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testStatus() throws Exception {
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        modem.setRssi(17);
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.open();
+            GXSMSStatus status = media.getStatus();
+            assertEquals(17, status.getSignalQuality().getRssi());
+            assertEquals(NetworkState.HOME, status.getNetworkState());
+            assertEquals(30, status.getMemoryCapacity().getMaximum());
+            assertEquals(100, status.getBatteryCharge().getBatteryCapacity());
+            assertSame(status, media.getLastStatus());
+            // Unsupported command is left out of the chain.
+            modem.setReply("^SBC?", "ERROR");
+            status = media.getStatus();
+            assertNull(status.getBatteryCharge());
+            assertEquals(17, status.getSignalQuality().getRssi());
+            // Status is refreshed in the background.
+            modem.setRssi(5);
+            media.setStatusInterval(1);
+            long end = System.currentTimeMillis() + 5000;
+            while (media.getLastStatus().getSignalQuality().getRssi() != 5
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(50);
+            }
+            assertEquals(5,
+                    media.getLastStatus().getSignalQuality().getRssi());
+        }
+    }
+}
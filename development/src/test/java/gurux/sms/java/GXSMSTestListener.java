@@ -0,0 +1,75 @@
+package gurux.sms.java;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import gurux.common.IGXMediaListener;
+import gurux.common.MediaStateEventArgs;
+import gurux.common.PropertyChangedEventArgs;
+import gurux.common.ReceiveEventArgs;
+import gurux.common.TraceEventArgs;
+import gurux.sms.GXSMSMessage;
+import junit.framework.Assert;
+
+/**
+ * Media listener that collects received messages and errors.
+ */
+class GXSMSTestListener implements IGXMediaListener {
+    /**
+     * Received messages and errors.
+     */
+    private final BlockingQueue<Object> received =
+            new LinkedBlockingQueue<Object>();
+
+    /**
+     * Wait next received message or error.
+     *
+     * @param timeout
+     *            Timeout in milliseconds.
+     * @return Received message, error or null if nothing is received.
+     * @throws InterruptedException
+     *             Wait is interrupted.
+     */
+    final Object poll(final int timeout) throws InterruptedException {
+        return received.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait next received message. Fails if error is received or nothing is
+     * received in five seconds.
+     *
+     * @return Received message.
+     * @throws InterruptedException
+     *             Wait is interrupted.
+     */
+    final GXSMSMessage getMessage() throws InterruptedException {
+        Object msg = poll(5000);
+        Assert.assertTrue(String.valueOf(msg), msg instanceof GXSMSMessage);
+        return (GXSMSMessage) msg;
+    }
+
+    @Override
+    public void onError(final Object sender, final Exception ex) {
+        received.add(ex);
+    }
+
+    @Override
+    public void onReceived(final Object sender, final ReceiveEventArgs e) {
+        received.add(e.getData());
+    }
+
+    @Override
+    public void onMediaStateChange(final Object sender,
+            final MediaStateEventArgs e) {
+    }
+
+    @Override
+    public void onTrace(final Object sender, final TraceEventArgs e) {
+    }
+
+    @Override
+    public void onPropertyChanged(final Object sender,
+            final PropertyChangedEventArgs e) {
+    }
+}
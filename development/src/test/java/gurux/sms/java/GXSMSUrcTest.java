@@ -0,0 +1,86 @@
+package gurux.sms.java;
+
+import gurux.sms.GXSMS;
+import gurux.sms.GXSMSMessage;
+import gurux.sms.GXSMSModemSimulator;
+import gurux.sms.enums.NetworkState;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the unsolicited result codes.
+ */
+public class GXSMSUrcTest extends TestCase {
+    /**
+     * Create the test case.
+     *
+     * @param testName
+     *            Name of the test case.
+     */
+    public GXSMSUrcTest(final String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(GXSMSUrcTest.class);
+    }
+
+    /**
+     * Indicated messages are received and URCs don't break replies.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testNetworkState() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.addListener(listener);
+            media.open();
+            assertEquals(NetworkState.HOME, media.getNetworkState());
+            modem.setNetworkState(NetworkState.ROAMING.getValue());
+            modem.addMessage("+358401234567", "Notified");
+            assertEquals("Notified", listener.getMessage().getData());
+            assertEquals(NetworkState.ROAMING, media.getNetworkState());
+        }
+    }
+
+    /**
+     * Indications are enabled again when modem is restarted and messages
+     * that are received during the restart are read.
+     * 
+     * @throws Exception
+     *             Occurred exception.
+     */
+    public final void testRestart() throws Exception {
+        GXSMSTestListener listener = new GXSMSTestListener();
+        GXSMSModemSimulator modem = new GXSMSModemSimulator();
+        try (GXSMS media = new GXSMS()) {
+            media.setTransport(modem);
+            media.setNotifications(true);
+            media.addListener(listener);
+            media.open();
+            int count = modem.getCommandCount("+CNMI");
+            modem.restart();
+            modem.addMessage("+358401234567", "Restarted");
+            GXSMSMessage msg = listener.getMessage();
+            assertEquals("Restarted", msg.getData());
+            long end = System.currentTimeMillis() + 5000;
+            while (modem.getCommandCount("+CNMI") == count
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(20);
+            }
+            assertTrue(modem.getCommandCount("+CNMI") > count);
+            assertFalse(modem.getEcho());
+            modem.addMessage("+358401234567", "Notified");
+            assertEquals("Notified", listener.getMessage().getData());
+            assertNull(listener.poll(500));
+        }
+    }
+}